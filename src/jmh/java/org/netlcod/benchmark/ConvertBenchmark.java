@@ -0,0 +1,53 @@
+package org.netlcod.benchmark;
+
+import org.netlcod.convert.Convert;
+import org.netlcod.convert.FastLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decibel conversion of a mel spectrogram. The number of frames corresponds to a 16 kHz clip
+ * with a hop length of 512.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConvertBenchmark {
+    @Param({"40", "128"})
+    public int nMels;
+
+    @Param({"1", "10", "60", "600"})
+    public int seconds;
+
+    private double[][] melSpectrogram;
+    private final FastLog log = FastLog.withMaxError(1e-4);
+
+    @Setup
+    public void setUp() {
+        melSpectrogram = Signals.power(nMels, 16000 * seconds / 512 + 1);
+    }
+
+    @Benchmark
+    public double[][] powerToDB() {
+        return Convert.powerToDB(melSpectrogram, 1.0, 1e-10, 80.0);
+    }
+
+    @Benchmark
+    public double[][] fastPowerToDB() {
+        return Convert.powerToDB(melSpectrogram, 1.0, 1e-10, 80.0, log);
+    }
+}
@@ -0,0 +1,83 @@
+package org.netlcod.benchmark;
+
+import org.netlcod.feature.CompositeFeature;
+import org.netlcod.feature.MelFeature;
+import org.netlcod.feature.MfccFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end mel spectrogram and MFCC extraction with a hop length of nFft / 4, and all
+ * features of {@link CompositeFeature} in one pass.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FeatureBenchmark {
+    @Param({"8000", "16000", "22050", "44100", "48000"})
+    public int sampleRate;
+
+    @Param({"256", "512", "1024", "2048", "4096"})
+    public int nFft;
+
+    @Param({"1", "10", "60", "600"})
+    public int seconds;
+
+    private double[] y;
+    private MelFeature melFeature;
+    private MfccFeature mfccFeature;
+    private CompositeFeature compositeFeature;
+
+    @Setup
+    public void setUp() {
+        y = Signals.tones(sampleRate, seconds);
+
+        melFeature = new MelFeature();
+        melFeature.setSampleRate(sampleRate);
+        melFeature.setNFft(nFft);
+        melFeature.setHopLength(nFft / 4);
+        melFeature.setFeatureSize(128);
+
+        mfccFeature = new MfccFeature();
+        mfccFeature.setSampleRate(sampleRate);
+        mfccFeature.setNFft(nFft);
+        mfccFeature.setHopLength(nFft / 4);
+        mfccFeature.setFeatureSize(20);
+
+        compositeFeature = new CompositeFeature();
+        compositeFeature.setSampleRate(sampleRate);
+        compositeFeature.setNFft(nFft);
+        compositeFeature.setHopLength(nFft / 4);
+        compositeFeature.setFeatureSize(20);
+    }
+
+    @Benchmark
+    public double[][] melExtract() {
+        return melFeature.extract(y);
+    }
+
+    @Benchmark
+    public double[][] mfccExtract() {
+        return mfccFeature.extract(y);
+    }
+
+    @Benchmark
+    public Map<?, double[][]> compositeExtract() {
+        return compositeFeature.extractAll(y);
+    }
+}
@@ -0,0 +1,67 @@
+package org.netlcod.benchmark;
+
+import org.netlcod.filter.Filter;
+import org.netlcod.filter.SparseMelFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mel filter bank construction and projection of a power spectrogram.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+    @Param({"8000", "16000", "22050", "44100", "48000"})
+    public int sampleRate;
+
+    @Param({"256", "512", "1024", "2048", "4096"})
+    public int nFft;
+
+    @Param({"40", "128"})
+    public int nMels;
+
+    @Param({"1", "10", "60", "600"})
+    public int seconds;
+
+    private double[][] spectrogram;
+    private double[][] melFilters;
+    private SparseMelFilter sparseMelFilters;
+
+    @Setup
+    public void setUp() {
+        int nFrames = sampleRate * seconds / (nFft / 4) + 1;
+        spectrogram = Signals.power(nFft / 2 + 1, nFrames);
+        melFilters = Filter.mel(sampleRate, nFft, nMels, 0, sampleRate / 2.0, false);
+        sparseMelFilters = SparseMelFilter.fromDense(melFilters);
+    }
+
+    @Benchmark
+    public double[][] mel() {
+        return Filter.mel(sampleRate, nFft, nMels, 0, sampleRate / 2.0, false);
+    }
+
+    @Benchmark
+    public double[][] applyMelFilters() {
+        return Filter.applyMelFilters(spectrogram, melFilters, nMels, nFft);
+    }
+
+    @Benchmark
+    public double[][] applySparseMelFilters() {
+        return Filter.applyMelFilters(spectrogram, sparseMelFilters);
+    }
+}
@@ -0,0 +1,86 @@
+package org.netlcod.benchmark;
+
+import org.netlcod.kernel.Kernels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scalar versus Vector API kernels over one frame of nFft samples. The "selected" runs fail
+ * if only the scalar kernels are available.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class KernelsBenchmark {
+    @Param({"scalar", "selected"})
+    public String kernels;
+
+    @Param({"256", "1024", "4096"})
+    public int nFft;
+
+    private Kernels implementation;
+    private double[] frame;
+    private double[] window;
+    private double[] power;
+    private double[] db;
+
+    @Setup
+    public void setUp() {
+        implementation = "scalar".equals(kernels) ? Kernels.scalar() : Kernels.get();
+        if (!"scalar".equals(kernels) && "scalar".equals(implementation.getName())) {
+            // Comparing the scalar kernels with themselves would report a meaningless result
+            throw new IllegalStateException("SIMD kernels are not available: run on JDK 17+ with the vector kernels on the class path");
+        }
+        frame = Arrays.copyOf(Signals.tones(16000, 1), nFft);
+        // Unit factors keep repeated in-place products away from subnormals
+        window = new double[nFft];
+        Arrays.fill(window, 1.0);
+        power = new double[nFft / 2 + 1];
+        db = new double[nFft / 2 + 1];
+        implementation.power(frame, power);
+    }
+
+    @Benchmark
+    public double[] multiply() {
+        implementation.multiply(frame, window, nFft);
+        return frame;
+    }
+
+    @Benchmark
+    public double[] power() {
+        implementation.power(frame, power);
+        return power;
+    }
+
+    @Benchmark
+    public double dot() {
+        return implementation.dot(frame, 0, window, 0, nFft);
+    }
+
+    @Benchmark
+    public double[] axpy() {
+        implementation.axpy(1e-9, window, frame, nFft);
+        return frame;
+    }
+
+    @Benchmark
+    public double[] powerToDB() {
+        implementation.powerToDB(power, db, power.length, 1.0, 1e-10);
+        return db;
+    }
+}
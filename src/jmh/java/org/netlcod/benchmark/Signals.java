@@ -0,0 +1,50 @@
+package org.netlcod.benchmark;
+
+import java.util.Random;
+
+/**
+ * Deterministic test signals for the benchmarks.
+ */
+final class Signals {
+    private Signals() {
+    }
+
+    /**
+     * Generate a mix of three tones and white noise in [-1, 1].
+     *
+     * @param sampleRate Sampling rate.
+     * @param seconds    Duration in seconds.
+     * @return The signal.
+     */
+    static double[] tones(int sampleRate, int seconds) {
+        Random random = new Random(42);
+        double[] y = new double[sampleRate * seconds];
+        for (int i = 0; i < y.length; i++) {
+            double t = (double) i / sampleRate;
+            y[i] = 0.4 * Math.sin(2 * Math.PI * 220 * t)
+                    + 0.3 * Math.sin(2 * Math.PI * 1330 * t)
+                    + 0.2 * Math.sin(2 * Math.PI * 3510 * t)
+                    + 0.1 * (2 * random.nextDouble() - 1);
+        }
+        return y;
+    }
+
+    /**
+     * Generate a non-negative matrix resembling a power spectrogram.
+     *
+     * @param rows    Number of rows.
+     * @param columns Number of columns.
+     * @return The matrix.
+     */
+    static double[][] power(int rows, int columns) {
+        Random random = new Random(42);
+        double[][] x = new double[rows][columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                double value = random.nextGaussian();
+                x[i][j] = value * value;
+            }
+        }
+        return x;
+    }
+}
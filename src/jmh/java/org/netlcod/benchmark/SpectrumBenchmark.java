@@ -0,0 +1,74 @@
+package org.netlcod.benchmark;
+
+import org.apache.commons.math3.complex.Complex;
+import org.netlcod.spectrum.ComplexSpectrogram;
+import org.netlcod.spectrum.Spectrum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * STFT, inverse STFT and DCT over the full parameter grid. The hop length is nFft / 4 as in librosa.
+ * Ten-minute clips with small FFT sizes need a large heap for the {@link Complex} matrices.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class SpectrumBenchmark {
+    @Param({"8000", "16000", "22050", "44100", "48000"})
+    public int sampleRate;
+
+    @Param({"256", "512", "1024", "2048", "4096"})
+    public int nFft;
+
+    @Param({"1", "10", "60", "600"})
+    public int seconds;
+
+    private int hopLength;
+    private double[] y;
+    private Complex[][] stftMatrix;
+    private ComplexSpectrogram spectrogram;
+    private double[][] melSpectrogram;
+
+    @Setup
+    public void setUp() {
+        hopLength = nFft / 4;
+        y = Signals.tones(sampleRate, seconds);
+        spectrogram = Spectrum.stftSpectrogram(y, nFft, hopLength, "hann", nFft, true);
+        stftMatrix = spectrogram.toComplex();
+        melSpectrogram = Signals.power(128, spectrogram.getFrames());
+    }
+
+    @Benchmark
+    public Complex[][] stft() {
+        return Spectrum.stft(y, nFft, hopLength, "hann", nFft, true);
+    }
+
+    @Benchmark
+    public ComplexSpectrogram stftSpectrogram() {
+        return Spectrum.stftSpectrogram(y, nFft, hopLength, "hann", nFft, true);
+    }
+
+    @Benchmark
+    public double[] istft() {
+        return Spectrum.istft(stftMatrix, nFft, hopLength, "hann", nFft, true);
+    }
+
+    @Benchmark
+    public double[][] dct() {
+        return Spectrum.dct(melSpectrogram);
+    }
+}
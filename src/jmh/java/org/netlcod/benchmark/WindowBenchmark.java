@@ -0,0 +1,37 @@
+package org.netlcod.benchmark;
+
+import org.netlcod.window.Window;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Window generation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WindowBenchmark {
+    @Param({"hann", "hamming", "blackman", "bartlett", "welch"})
+    public String windowName;
+
+    @Param({"256", "512", "1024", "2048", "4096"})
+    public int size;
+
+    @Benchmark
+    public double[] getWindow() {
+        return Window.getWindow(windowName, size, true);
+    }
+}
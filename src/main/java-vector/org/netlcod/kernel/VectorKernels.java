@@ -0,0 +1,113 @@
+package org.netlcod.kernel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of the kernels on top of the incubating Vector API.
+ * Loaded reflectively by {@link KernelSupport}; compiled only by builds on JDK 17+.
+ */
+final class VectorKernels implements Kernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final int[] EVEN = new int[LANES];
+
+    static {
+        for (int i = 0; i < LANES; i++) {
+            EVEN[i] = 2 * i;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "vector";
+    }
+
+    @Override
+    public void multiply(double[] a, double[] b, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, a, i).mul(DoubleVector.fromArray(SPECIES, b, i)).intoArray(a, i);
+        }
+        for (; i < length; i++) {
+            a[i] *= b[i];
+        }
+    }
+
+    @Override
+    public void power(double[] real, double[] imag, double[] power, int length) {
+        int k = 0;
+        for (int bound = SPECIES.loopBound(length); k < bound; k += LANES) {
+            DoubleVector re = DoubleVector.fromArray(SPECIES, real, k);
+            DoubleVector im = DoubleVector.fromArray(SPECIES, imag, k);
+            re.mul(re).add(im.mul(im)).intoArray(power, k);
+        }
+        for (; k < length; k++) {
+            power[k] = real[k] * real[k] + imag[k] * imag[k];
+        }
+    }
+
+    @Override
+    public void power(double[] packed, double[] power) {
+        int half = packed.length / 2;
+        power[0] = packed[0] * packed[0];
+        int k = 1;
+        for (; k + LANES <= half; k += LANES) {
+            DoubleVector re = DoubleVector.fromArray(SPECIES, packed, 2 * k, EVEN, 0);
+            DoubleVector im = DoubleVector.fromArray(SPECIES, packed, 2 * k + 1, EVEN, 0);
+            re.mul(re).add(im.mul(im)).intoArray(power, k);
+        }
+        for (; k < half; k++) {
+            double re = packed[2 * k];
+            double im = packed[2 * k + 1];
+            power[k] = re * re + im * im;
+        }
+        power[half] = packed[1] * packed[1];
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector y = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            sum = sum.add(x.mul(y));
+        }
+        // Fixed lane order: reduceLanes may reassociate differently once intrinsified
+        double result = 0;
+        for (int lane = 0; lane < LANES; lane++) {
+            result += sum.lane(lane);
+        }
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, double[] y, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, x, i).mul(alpha).add(DoubleVector.fromArray(SPECIES, y, i)).intoArray(y, i);
+        }
+        for (; i < length; i++) {
+            y[i] += alpha * x[i];
+        }
+    }
+
+    @Override
+    public void powerToDB(double[] power, double[] db, int length, double ref, double amin) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, power, i).max(amin).div(ref).intoArray(db, i);
+        }
+        for (; i < length; i++) {
+            db[i] = Math.max(amin, power[i]) / ref;
+        }
+        // The vectorized LOG10 differs between the interpreter and compiled code, Math.log10 does not
+        for (i = 0; i < length; i++) {
+            db[i] = 10 * Math.log10(db[i]);
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package org.netlcod.convert;
 
+import org.netlcod.io.OffHeapMatrix;
+import org.netlcod.kernel.Kernels;
 
 public class Convert {
+    private static final Kernels KERNELS = Kernels.get();
+
     /**
      * Convert frame indices to audio sample indices.
      *
@@ -68,8 +72,25 @@ public class Convert {
      * @return Array of time values corresponding to each frame.
      */
     public static double[] framesToTime(int[] frames, double sr, int hopLength, int offset) {
-        int[] samples = framesToSamples(frames, hopLength, offset);
-        return samplesToTime(samples, sr);
+        return framesToTime(frames, new double[frames.length], sr, hopLength, offset);
+    }
+
+    /**
+     * Convert frame counts to time (seconds) into a caller-supplied array.
+     *
+     * @param frames    Array of frame indices.
+     * @param times     Output array of the same length as frames.
+     * @param sr        Audio sampling rate.
+     * @param hopLength Number of samples between successive frames.
+     * @param offset    Offset to counteract windowing effects when using a non-centered STFT [nFft // 2].
+     * @return The times array.
+     */
+    public static double[] framesToTime(int[] frames, double[] times, double sr, int hopLength, int offset) {
+        checkLength(frames.length, times.length);
+        for (int i = 0; i < frames.length; i++) {
+            times[i] = framesToTime(frames[i], sr, hopLength, offset);
+        }
+        return times;
     }
 
     /**
@@ -254,7 +275,19 @@ public class Convert {
      * @return Array of mel values corresponding to each frequency.
      */
     public static double[] hzToMel(double[] frequencies, boolean htk) {
-        double[] mels = new double[frequencies.length];
+        return hzToMel(frequencies, new double[frequencies.length], htk);
+    }
+
+    /**
+     * Convert frequency (Hz) to mel scale into a caller-supplied array, which may be the input itself.
+     *
+     * @param frequencies Array of frequencies (in Hz).
+     * @param mels        Output array of the same length as frequencies.
+     * @param htk         If true, use HTK formula instead of Slaney.
+     * @return The mels array.
+     */
+    public static double[] hzToMel(double[] frequencies, double[] mels, boolean htk) {
+        checkLength(frequencies.length, mels.length);
         for (int i = 0; i < frequencies.length; i++) {
             mels[i] = hzToMel(frequencies[i], htk);
         }
@@ -296,7 +329,19 @@ public class Convert {
      * @return Array of frequencies corresponding to each mel value.
      */
     public static double[] melToHz(double[] mels, boolean htk) {
-        double[] frequencies = new double[mels.length];
+        return melToHz(mels, new double[mels.length], htk);
+    }
+
+    /**
+     * Convert mel scale to frequency (Hz) into a caller-supplied array, which may be the input itself.
+     *
+     * @param mels        Array of mel values.
+     * @param frequencies Output array of the same length as mels.
+     * @param htk         If true, use HTK formula instead of Slaney.
+     * @return The frequencies array.
+     */
+    public static double[] melToHz(double[] mels, double[] frequencies, boolean htk) {
+        checkLength(mels.length, frequencies.length);
         for (int i = 0; i < mels.length; i++) {
             frequencies[i] = melToHz(mels[i], htk);
         }
@@ -332,6 +377,8 @@ public class Convert {
 
     /**
      * Convert a power spectrogram to decibel (dB) units.
+     * The conversion is element-wise with a global maximum, so the spectrogram may be in
+     * either {@link org.netlcod.spectrum.Layout} and the output keeps the input layout.
      *
      * @param S     The power spectrogram.
      * @param ref   The reference value for dB scaling.
@@ -340,26 +387,158 @@ public class Convert {
      * @return The dB-scaled spectrogram.
      */
     public static double[][] powerToDB(double[][] S, double ref, double amin, Double topDB) {
+        return powerToDB(S, ref, amin, topDB, null);
+    }
+
+    /**
+     * Convert a power spectrogram to decibel (dB) units with an approximate logarithm.
+     * Values are computed and their maximum tracked in a single pass; the topDB clipping is
+     * applied in place.
+     *
+     * @param S     The power spectrogram.
+     * @param ref   The reference value for dB scaling.
+     * @param amin  The minimum threshold for numerical stability.
+     * @param topDB The threshold for clipping the output.
+     * @param log   Approximate logarithm, or null for {@link Math#log10}.
+     * @return The dB-scaled spectrogram.
+     */
+    public static double[][] powerToDB(double[][] S, double ref, double amin, Double topDB, FastLog log) {
+        return powerToDB(S, new double[S.length][S[0].length], ref, amin, topDB, log);
+    }
+
+    /**
+     * Convert a power spectrogram to decibel (dB) units into a caller-supplied matrix.
+     * Pass S itself as SDB to convert in place.
+     *
+     * @param S     The power spectrogram.
+     * @param SDB   Output matrix of the same shape as S.
+     * @param ref   The reference value for dB scaling.
+     * @param amin  The minimum threshold for numerical stability.
+     * @param topDB The threshold for clipping the output.
+     * @return The SDB matrix.
+     */
+    public static double[][] powerToDB(double[][] S, double[][] SDB, double ref, double amin, Double topDB) {
+        return powerToDB(S, SDB, ref, amin, topDB, null);
+    }
+
+    /**
+     * Convert a power spectrogram to decibel (dB) units into a caller-supplied matrix with an
+     * approximate logarithm. Pass S itself as SDB to convert in place.
+     *
+     * @param S     The power spectrogram.
+     * @param SDB   Output matrix of the same shape as S.
+     * @param ref   The reference value for dB scaling.
+     * @param amin  The minimum threshold for numerical stability.
+     * @param topDB The threshold for clipping the output.
+     * @param log   Approximate logarithm, or null for {@link Math#log10}.
+     * @return The SDB matrix.
+     */
+    public static double[][] powerToDB(double[][] S, double[][] SDB, double ref, double amin, Double topDB, FastLog log) {
+        checkShape(S, SDB);
         int nFreq = S.length;
         int nTime = S[0].length;
-        double[][] SDB = new double[nFreq][nTime];
 
+        double maxDB = Double.NEGATIVE_INFINITY;
         for (int f = 0; f < nFreq; f++) {
+            double[] row = SDB[f];
+            if (log == null) {
+                KERNELS.powerToDB(S[f], row, nTime, ref, amin);
+            } else {
+                for (int t = 0; t < nTime; t++) {
+                    row[t] = 10 * log.log10(Math.max(amin, S[f][t]) / ref);
+                }
+            }
             for (int t = 0; t < nTime; t++) {
-                SDB[f][t] = 10 * Math.log10(Math.max(amin, S[f][t]) / ref);
+                if (row[t] > maxDB) {
+                    maxDB = row[t];
+                }
             }
         }
 
         if (topDB != null) {
-            double maxDB = Double.NEGATIVE_INFINITY;
+            clip(SDB, maxDB - topDB);
+        }
+
+        return SDB;
+    }
+
+    /**
+     * Convert an off-heap power spectrogram to decibel (dB) units, one column at a time.
+     * Pass S itself as SDB to convert in place.
+     *
+     * @param S     The power spectrogram.
+     * @param SDB   Output matrix of the same shape as S.
+     * @param ref   The reference value for dB scaling.
+     * @param amin  The minimum threshold for numerical stability.
+     * @param topDB The threshold for clipping the output.
+     * @param log   Approximate logarithm, or null for {@link Math#log10}.
+     * @return The SDB matrix.
+     */
+    public static OffHeapMatrix powerToDB(OffHeapMatrix S, OffHeapMatrix SDB, double ref, double amin, Double topDB, FastLog log) {
+        SDB.checkShape(S.getRows(), S.getColumns());
+        int nFreq = S.getRows();
+        long nTime = S.getColumns();
+        double[] column = new double[nFreq];
+
+        double maxDB = Double.NEGATIVE_INFINITY;
+        for (long t = 0; t < nTime; t++) {
+            S.getColumn(t, column);
+            if (log == null) {
+                KERNELS.powerToDB(column, column, nFreq, ref, amin);
+            } else {
+                for (int f = 0; f < nFreq; f++) {
+                    column[f] = 10 * log.log10(Math.max(amin, column[f]) / ref);
+                }
+            }
             for (int f = 0; f < nFreq; f++) {
-                for (int t = 0; t < nTime; t++) {
-                    if (SDB[f][t] > maxDB) {
-                        maxDB = SDB[f][t];
-                    }
+                if (column[f] > maxDB) {
+                    maxDB = column[f];
                 }
             }
+            SDB.setColumn(t, column);
+        }
+
+        if (topDB != null) {
             double threshold = maxDB - topDB;
+            for (long t = 0; t < nTime; t++) {
+                SDB.getColumn(t, column);
+                for (int f = 0; f < nFreq; f++) {
+                    column[f] = Math.max(column[f], threshold);
+                }
+                SDB.setColumn(t, column);
+            }
+        }
+
+        return SDB;
+    }
+
+    /**
+     * Convert a single-precision power spectrogram to decibel (dB) units.
+     * Logarithms are evaluated in double precision and rounded once.
+     *
+     * @param S     The power spectrogram.
+     * @param ref   The reference value for dB scaling.
+     * @param amin  The minimum threshold for numerical stability.
+     * @param topDB The threshold for clipping the output.
+     * @return The dB-scaled spectrogram.
+     */
+    public static float[][] powerToDB(float[][] S, double ref, double amin, Double topDB) {
+        int nFreq = S.length;
+        int nTime = S[0].length;
+        float[][] SDB = new float[nFreq][nTime];
+
+        float maxDB = Float.NEGATIVE_INFINITY;
+        for (int f = 0; f < nFreq; f++) {
+            for (int t = 0; t < nTime; t++) {
+                SDB[f][t] = (float) (10 * Math.log10(Math.max(amin, S[f][t]) / ref));
+                if (SDB[f][t] > maxDB) {
+                    maxDB = SDB[f][t];
+                }
+            }
+        }
+
+        if (topDB != null) {
+            float threshold = (float) (maxDB - topDB);
             for (int f = 0; f < nFreq; f++) {
                 for (int t = 0; t < nTime; t++) {
                     SDB[f][t] = Math.max(SDB[f][t], threshold);
@@ -378,9 +557,22 @@ public class Convert {
      * @return The power spectrogram.
      */
     public static double[][] dbToPower(double[][] SDB, double ref) {
+        return dbToPower(SDB, new double[SDB.length][SDB[0].length], ref);
+    }
+
+    /**
+     * Convert a dB-scaled spectrogram back to power units into a caller-supplied matrix.
+     * Pass SDB itself as S to convert in place.
+     *
+     * @param SDB The dB-scaled spectrogram.
+     * @param S   Output matrix of the same shape as SDB.
+     * @param ref The reference value used for dB scaling.
+     * @return The S matrix.
+     */
+    public static double[][] dbToPower(double[][] SDB, double[][] S, double ref) {
+        checkShape(SDB, S);
         int nFreq = SDB.length;
         int nTime = SDB[0].length;
-        double[][] S = new double[nFreq][nTime];
 
         for (int f = 0; f < nFreq; f++) {
             for (int t = 0; t < nTime; t++) {
@@ -401,36 +593,90 @@ public class Convert {
      * @return The dB-scaled spectrogram.
      */
     public static double[][] amplitudeToDB(double[][] S, double ref, double amin, Double topDB) {
+        return amplitudeToDB(S, ref, amin, topDB, null);
+    }
+
+    /**
+     * Convert an amplitude spectrogram to decibel (dB) units with an approximate logarithm.
+     * Values are computed and their maximum tracked in a single pass; the topDB clipping is
+     * applied in place.
+     *
+     * @param S     The amplitude spectrogram.
+     * @param ref   The reference value for dB scaling.
+     * @param amin  The minimum threshold for numerical stability.
+     * @param topDB The threshold for clipping the output.
+     * @param log   Approximate logarithm, or null for {@link Math#log10}.
+     * @return The dB-scaled spectrogram.
+     */
+    public static double[][] amplitudeToDB(double[][] S, double ref, double amin, Double topDB, FastLog log) {
+        return amplitudeToDB(S, new double[S.length][S[0].length], ref, amin, topDB, log);
+    }
+
+    /**
+     * Convert an amplitude spectrogram to decibel (dB) units into a caller-supplied matrix.
+     * Pass S itself as SDB to convert in place.
+     *
+     * @param S     The amplitude spectrogram.
+     * @param SDB   Output matrix of the same shape as S.
+     * @param ref   The reference value for dB scaling.
+     * @param amin  The minimum threshold for numerical stability.
+     * @param topDB The threshold for clipping the output.
+     * @return The SDB matrix.
+     */
+    public static double[][] amplitudeToDB(double[][] S, double[][] SDB, double ref, double amin, Double topDB) {
+        return amplitudeToDB(S, SDB, ref, amin, topDB, null);
+    }
+
+    /**
+     * Convert an amplitude spectrogram to decibel (dB) units into a caller-supplied matrix with
+     * an approximate logarithm. Pass S itself as SDB to convert in place.
+     *
+     * @param S     The amplitude spectrogram.
+     * @param SDB   Output matrix of the same shape as S.
+     * @param ref   The reference value for dB scaling.
+     * @param amin  The minimum threshold for numerical stability.
+     * @param topDB The threshold for clipping the output.
+     * @param log   Approximate logarithm, or null for {@link Math#log10}.
+     * @return The SDB matrix.
+     */
+    public static double[][] amplitudeToDB(double[][] S, double[][] SDB, double ref, double amin, Double topDB, FastLog log) {
+        checkShape(S, SDB);
         int nFreq = S.length;
         int nTime = S[0].length;
-        double[][] SDB = new double[nFreq][nTime];
 
+        double maxDB = Double.NEGATIVE_INFINITY;
         for (int f = 0; f < nFreq; f++) {
+            double[] row = SDB[f];
             for (int t = 0; t < nTime; t++) {
-                SDB[f][t] = 20 * Math.log10(Math.max(amin, S[f][t]) / ref);
+                double value = Math.max(amin, S[f][t]) / ref;
+                row[t] = 20 * (log == null ? Math.log10(value) : log.log10(value));
+                if (row[t] > maxDB) {
+                    maxDB = row[t];
+                }
             }
         }
 
         if (topDB != null) {
-            double maxDB = Double.NEGATIVE_INFINITY;
-            for (int f = 0; f < nFreq; f++) {
-                for (int t = 0; t < nTime; t++) {
-                    if (SDB[f][t] > maxDB) {
-                        maxDB = SDB[f][t];
-                    }
-                }
-            }
-            double threshold = maxDB - topDB;
-            for (int f = 0; f < nFreq; f++) {
-                for (int t = 0; t < nTime; t++) {
-                    SDB[f][t] = Math.max(SDB[f][t], threshold);
-                }
-            }
+            clip(SDB, maxDB - topDB);
         }
 
         return SDB;
     }
 
+    /**
+     * Raise every value below a threshold to the threshold, in place.
+     *
+     * @param SDB       The dB-scaled spectrogram.
+     * @param threshold The lowest value kept.
+     */
+    private static void clip(double[][] SDB, double threshold) {
+        for (double[] row : SDB) {
+            for (int t = 0; t < row.length; t++) {
+                row[t] = Math.max(row[t], threshold);
+            }
+        }
+    }
+
     /**
      * Convert a dB-scaled spectrogram back to amplitude units.
      *
@@ -439,9 +685,22 @@ public class Convert {
      * @return The amplitude spectrogram.
      */
     public static double[][] dbToAmplitude(double[][] SDB, double ref) {
+        return dbToAmplitude(SDB, new double[SDB.length][SDB[0].length], ref);
+    }
+
+    /**
+     * Convert a dB-scaled spectrogram back to amplitude units into a caller-supplied matrix.
+     * Pass SDB itself as S to convert in place.
+     *
+     * @param SDB The dB-scaled spectrogram.
+     * @param S   Output matrix of the same shape as SDB.
+     * @param ref The reference value used for dB scaling.
+     * @return The S matrix.
+     */
+    public static double[][] dbToAmplitude(double[][] SDB, double[][] S, double ref) {
+        checkShape(SDB, S);
         int nFreq = SDB.length;
         int nTime = SDB[0].length;
-        double[][] S = new double[nFreq][nTime];
 
         for (int f = 0; f < nFreq; f++) {
             for (int t = 0; t < nTime; t++) {
@@ -451,4 +710,21 @@ public class Convert {
 
         return S;
     }
+
+    private static void checkLength(int expected, int actual) {
+        if (actual != expected) {
+            throw new IllegalArgumentException("Output length must be " + expected + ": " + actual);
+        }
+    }
+
+    private static void checkShape(double[][] input, double[][] output) {
+        if (output.length != input.length) {
+            throw new IllegalArgumentException("Output rows must be " + input.length + ": " + output.length);
+        }
+        for (int i = 0; i < input.length; i++) {
+            if (output[i].length != input[i].length) {
+                throw new IllegalArgumentException("Output row " + i + " length must be " + input[i].length + ": " + output[i].length);
+            }
+        }
+    }
 }
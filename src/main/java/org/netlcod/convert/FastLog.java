@@ -0,0 +1,134 @@
+package org.netlcod.convert;
+
+/**
+ * Table-based logarithm with a bounded error, for decibel conversion.
+ * <p>
+ * The exponent of the argument is taken from its bit pattern and log2 of the mantissa is
+ * linearly interpolated in a table of 2^bits + 1 entries over [1, 2]. Linear interpolation of
+ * log2(1 + x) with step h is off by at most h^2 / (8 ln 2), so the table size follows from the
+ * requested error. The approximation is exact at powers of two and never above the true value.
+ * Zero, negative, subnormal and non-finite arguments fall back to {@link Math#log10}.
+ * <p>
+ * Instances are immutable and shared per table size.
+ */
+public final class FastLog {
+    /**
+     * Largest table size, 2^20 entries; smaller errors are better served by {@link Math#log10}.
+     */
+    public static final int MAX_TABLE_BITS = 20;
+
+    private static final double LOG10_2 = Math.log10(2);
+    // Maximum error of 20 * log10 per squared table step
+    private static final double DB_ERROR_PER_STEP2 = 20 * LOG10_2 / (8 * Math.log(2));
+    private static final FastLog[] INSTANCES = new FastLog[MAX_TABLE_BITS + 1];
+
+    private final int tableBits;
+    private final int shift;
+    private final long mask;
+    private final double scale;
+    private final double[] table;
+    private final double[] slope;
+
+    private FastLog(int tableBits) {
+        this.tableBits = tableBits;
+        this.shift = 52 - tableBits;
+        this.mask = (1L << shift) - 1;
+        this.scale = 1.0 / (1L << shift);
+
+        int size = 1 << tableBits;
+        this.table = new double[size];
+        this.slope = new double[size];
+        double previous = 0;
+        for (int i = 0; i < size; i++) {
+            double next = Math.log1p((double) (i + 1) / size) / Math.log(2);
+            table[i] = previous;
+            slope[i] = next - previous;
+            previous = next;
+        }
+    }
+
+    /**
+     * Returns a logarithm whose dB values are within the given error: {@code 20 * log10(x)}
+     * (amplitude to dB) is off by at most maxErrorDB, {@code 10 * log10(x)} (power to dB) by
+     * at most half of it.
+     *
+     * @param maxErrorDB Maximum absolute error in dB, e.g. 1e-4.
+     * @return The logarithm.
+     */
+    public static FastLog withMaxError(double maxErrorDB) {
+        if (!(maxErrorDB > 0)) {
+            throw new IllegalArgumentException("Maximum error must be positive: " + maxErrorDB);
+        }
+        // step = 2^-bits with DB_ERROR_PER_STEP2 * step^2 <= maxErrorDB
+        int bits = Math.max(1, (int) Math.ceil(0.5 * Math.log(DB_ERROR_PER_STEP2 / maxErrorDB) / Math.log(2)));
+        if (bits > MAX_TABLE_BITS) {
+            throw new IllegalArgumentException("Maximum error is too small for a table, use the exact logarithm: " + maxErrorDB);
+        }
+        return withTableBits(bits);
+    }
+
+    /**
+     * Returns a logarithm with a table of 2^tableBits intervals.
+     *
+     * @param tableBits Number of mantissa bits used for the table lookup, 1 to {@link #MAX_TABLE_BITS}.
+     * @return The logarithm.
+     */
+    public static FastLog withTableBits(int tableBits) {
+        if (tableBits < 1 || tableBits > MAX_TABLE_BITS) {
+            throw new IllegalArgumentException("Table bits must be between 1 and " + MAX_TABLE_BITS + ": " + tableBits);
+        }
+        synchronized (INSTANCES) {
+            FastLog log = INSTANCES[tableBits];
+            if (log == null) {
+                log = new FastLog(tableBits);
+                INSTANCES[tableBits] = log;
+            }
+            return log;
+        }
+    }
+
+    /**
+     * Returns the number of mantissa bits used for the table lookup.
+     *
+     * @return the number of table bits
+     */
+    public int getTableBits() {
+        return tableBits;
+    }
+
+    /**
+     * Returns the maximum absolute error of {@code 20 * log10(x)} in dB.
+     *
+     * @return the maximum error in dB
+     */
+    public double getMaxError() {
+        return DB_ERROR_PER_STEP2 / (1L << 2 * tableBits);
+    }
+
+    /**
+     * Approximate base-2 logarithm.
+     *
+     * @param x Argument.
+     * @return log2(x).
+     */
+    public double log2(double x) {
+        long bits = Double.doubleToRawLongBits(x);
+        int exponent = ((int) (bits >>> 52) & 0x7FF) - 1023;
+        if (!(x >= Double.MIN_NORMAL) || exponent == 1024) {
+            return Math.log10(x) / LOG10_2;
+        }
+        int index = (int) ((bits & 0xFFFFFFFFFFFFFL) >>> shift);
+        double t = (bits & mask) * scale;
+        return exponent + (table[index] + slope[index] * t);
+    }
+
+    /**
+     * Approximate base-10 logarithm.
+     *
+     * @param x Argument.
+     * @return log10(x).
+     */
+    public double log10(double x) {
+        return log2(x) * LOG10_2;
+    }
+}
@@ -1,5 +1,14 @@
 package org.netlcod.feature;
 
+import org.netlcod.convert.FastLog;
+import org.netlcod.filter.Resample;
+import org.netlcod.filter.ResampleType;
+import org.netlcod.filter.StreamingResampler;
+import org.netlcod.io.SampleSource;
+import org.netlcod.spectrum.Layout;
+
+import java.util.concurrent.Executor;
+
 public abstract class AudioFeatureConfiguration {
     protected int sampleRate;
     protected double fMin;
@@ -7,6 +16,15 @@ public abstract class AudioFeatureConfiguration {
     protected int nFft;
     protected int hopLength;
     protected int featureSize;
+    protected boolean htk;
+    protected Executor executor;
+    protected Precision precision = Precision.DOUBLE;
+    protected Layout layout = Layout.FREQUENCY_MAJOR;
+    protected FastLog log;
+    protected PipelineListener listener;
+    protected int inputSampleRate;
+    protected ResampleType resampleType = ResampleType.KAISER_BEST;
+    private volatile FeaturePlan lastPlan;
 
     public int getSampleRate() {
         return sampleRate;
@@ -17,6 +35,50 @@ public abstract class AudioFeatureConfiguration {
         this.fMax = sampleRate / 2.0;
     }
 
+    /**
+     * Returns the sampling rate of the input signals, or 0 if it equals the sample rate.
+     *
+     * @return the input sampling rate
+     */
+    public int getInputSampleRate() {
+        return inputSampleRate;
+    }
+
+    /**
+     * Sets the sampling rate of the input signals. When it differs from the sample rate, signals
+     * are resampled to the sample rate (see {@link Resample}) before extraction, and the
+     * features describe the resampled signal.
+     *
+     * @param inputSampleRate the input sampling rate, or 0 if signals already have the sample rate (default)
+     */
+    public void setInputSampleRate(int inputSampleRate) {
+        if (inputSampleRate < 0) {
+            throw new IllegalArgumentException("Input sampling rate must not be negative: " + inputSampleRate);
+        }
+        this.inputSampleRate = inputSampleRate;
+    }
+
+    /**
+     * Returns the filter used to resample the input signals.
+     *
+     * @return the resampling filter
+     */
+    public ResampleType getResampleType() {
+        return resampleType;
+    }
+
+    /**
+     * Sets the filter used to resample the input signals (see {@link #setInputSampleRate(int)}).
+     *
+     * @param resampleType the resampling filter (default {@link ResampleType#KAISER_BEST})
+     */
+    public void setResampleType(ResampleType resampleType) {
+        if (resampleType == null) {
+            throw new IllegalArgumentException("Resample type must not be null");
+        }
+        this.resampleType = resampleType;
+    }
+
     /**
      * Returns the minimum frequency (fMin) used in the filter bank.
      *
@@ -106,4 +168,236 @@ public abstract class AudioFeatureConfiguration {
     public void setFeatureSize(int featureSize) {
         this.featureSize = featureSize;
     }
+
+    /**
+     * Returns whether the HTK formula is used for mel scale conversion.
+     *
+     * @return true if the HTK formula is used, false for the Slaney formula
+     */
+    public boolean isHtk() {
+        return htk;
+    }
+
+    /**
+     * Sets whether the HTK formula is used for mel scale conversion.
+     *
+     * @param htk if true, use the HTK formula instead of the Slaney formula
+     */
+    public void setHtk(boolean htk) {
+        this.htk = htk;
+    }
+
+    /**
+     * Returns the executor used to process frames in parallel.
+     *
+     * @return the executor, or null if frames are processed sequentially
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor used to process frames in parallel (e.g. {@link java.util.concurrent.ForkJoinPool#commonPool()}).
+     * Results do not depend on the executor; short signals are always processed sequentially.
+     *
+     * @param executor the executor, or null to process frames sequentially
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the arithmetic precision of the extraction.
+     *
+     * @return the precision
+     */
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Sets the arithmetic precision of the extraction. It applies to both {@code extract}
+     * overloads: the input is converted to the chosen precision and the result back to the
+     * type of the input.
+     *
+     * @param precision the precision (default {@link Precision#DOUBLE})
+     */
+    public void setPrecision(Precision precision) {
+        if (precision == null) {
+            throw new IllegalArgumentException("Precision must not be null");
+        }
+        this.precision = precision;
+    }
+
+    /**
+     * Returns the layout of the extracted features.
+     *
+     * @return the layout
+     */
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Sets the layout of the extracted features: [featureSize][frames] as in librosa, or
+     * [frames][featureSize] with one contiguous row per frame.
+     *
+     * @param layout the layout (default {@link Layout#FREQUENCY_MAJOR})
+     */
+    public void setLayout(Layout layout) {
+        if (layout == null) {
+            throw new IllegalArgumentException("Layout must not be null");
+        }
+        this.layout = layout;
+    }
+
+    /**
+     * Returns the maximum error of the dB conversion, or 0 when the exact logarithm is used.
+     *
+     * @return the maximum error in dB
+     */
+    public double getLogMaxError() {
+        return log == null ? 0 : log.getMaxError();
+    }
+
+    /**
+     * Sets the maximum error of the dB conversion of features that use it (MFCC). A positive value
+     * replaces {@link Math#log10} by a {@link FastLog} table whose error is at most the given
+     * value; the bound of the chosen table, which may be smaller, is returned by {@link #getLogMaxError()}.
+     *
+     * @param maxErrorDB the maximum error in dB, e.g. 1e-4, or 0 for the exact logarithm (default)
+     */
+    public void setLogMaxError(double maxErrorDB) {
+        if (maxErrorDB < 0 || Double.isNaN(maxErrorDB)) {
+            throw new IllegalArgumentException("Maximum error must not be negative: " + maxErrorDB);
+        }
+        this.log = maxErrorDB == 0 ? null : FastLog.withMaxError(maxErrorDB);
+    }
+
+    /**
+     * Returns the listener of the per-stage extraction costs.
+     *
+     * @return the listener, or null if nothing is measured
+     */
+    public PipelineListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Sets a listener that receives the time and heap allocation of every extraction stage
+     * after each call, e.g. a {@link PipelineMetrics}. Nothing is measured without a listener.
+     *
+     * @param listener the listener, or null to disable measurement (default)
+     */
+    public void setListener(PipelineListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the cached extraction plan for the current configuration.
+     *
+     * @param nMels Number of mel bands.
+     * @return the extraction plan
+     */
+    protected FeaturePlan plan(int nMels) {
+        FeaturePlan plan = lastPlan;
+        if (plan == null || !plan.matches(sampleRate, nFft, hopLength, nMels, fMin, fMax, htk)) {
+            plan = FeaturePlan.of(sampleRate, nFft, hopLength, nMels, fMin, fMax, htk);
+            lastPlan = plan;
+        }
+        return plan;
+    }
+
+    /**
+     * Returns a signal at the sample rate: the source itself, or the source resampled from the
+     * input sampling rate. Frames are resampled as they are read (see {@link Resample#lazy}), so
+     * neither the input nor the resampled signal is copied.
+     *
+     * @param source Input signal.
+     * @return Signal at the sample rate.
+     */
+    protected SampleSource resampled(SampleSource source) {
+        if (inputSampleRate == 0 || inputSampleRate == sampleRate) {
+            return source;
+        }
+        return Resample.lazy(source, inputSampleRate, sampleRate, resampleType);
+    }
+
+    /**
+     * Returns a streaming resampler from the input sampling rate to the sample rate.
+     *
+     * @return The resampler, or null if no resampling is needed.
+     */
+    StreamingResampler streamingResampler() {
+        if (inputSampleRate == 0 || inputSampleRate == sampleRate) {
+            return null;
+        }
+        return new StreamingResampler(inputSampleRate, sampleRate, resampleType);
+    }
+
+    /**
+     * Returns a description of every parameter that affects the extracted values, used to key
+     * cached results (see {@link FeatureCache}). Subclasses with additional parameters must
+     * append them. The executor and listener are not part of it, since they do not change the results.
+     *
+     * @return the configuration fingerprint
+     */
+    protected String fingerprint() {
+        return getClass().getName()
+                + ";sampleRate=" + sampleRate
+                + ";fMin=" + fMin
+                + ";fMax=" + fMax
+                + ";nFft=" + nFft
+                + ";hopLength=" + hopLength
+                + ";featureSize=" + featureSize
+                + ";htk=" + htk
+                + ";precision=" + precision
+                + ";layout=" + layout
+                + ";logMaxError=" + getLogMaxError()
+                + ";inputSampleRate=" + inputSampleRate
+                + ";resampleType=" + resampleType;
+    }
+
+    /**
+     * Returns the configuration reported to the listener, computed only when a listener is set.
+     *
+     * @return the fingerprint, or null without a listener
+     */
+    String metricsKey() {
+        return listener == null ? null : fingerprint();
+    }
+
+    /**
+     * Compute the features of a signal.
+     *
+     * @param y Input signal.
+     * @return Array of features with shape [featureSize][frames] (or [frames][featureSize], see {@link #getLayout()}).
+     */
+    public double[][] extract(double[] y) {
+        return extract(SampleSource.of(y));
+    }
+
+    /**
+     * Compute the features of a single-precision signal. The default implementation extracts in
+     * double precision and narrows the result; subclasses may honour {@link Precision#FLOAT} directly.
+     *
+     * @param y Input signal.
+     * @return Array of features with shape [featureSize][frames] (or [frames][featureSize], see {@link #getLayout()}).
+     */
+    public float[][] extract(float[] y) {
+        return FeaturePipeline.narrow(extract(SampleSource.of(y)));
+    }
+
+    /**
+     * Compute the features of a lazily decoded signal. The array overloads delegate to this
+     * method; subclasses written before it existed may override {@link #extract(double[])}
+     * instead and keep this default.
+     *
+     * @param source Input signal.
+     * @return Array of features with shape [featureSize][frames] (or [frames][featureSize], see {@link #getLayout()}).
+     * @throws UnsupportedOperationException if the subclass does not extract from a sample source.
+     */
+    public double[][] extract(SampleSource source) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not extract from a sample source");
+    }
 }
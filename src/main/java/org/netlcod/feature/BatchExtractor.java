@@ -0,0 +1,123 @@
+package org.netlcod.feature;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Extracts features from many signals concurrently with one configuration.
+ * <p>
+ * Every signal is processed by one task; the compiled plan (window, FFT tables, filter bank)
+ * is shared by all of them and per-frame scratch buffers are reused per worker thread.
+ * The configuration must not be modified while a batch is running.
+ */
+public class BatchExtractor {
+    private final AudioFeatureConfiguration feature;
+    private final Executor executor;
+    private final int maxInFlight;
+
+    /**
+     * Receives the features of one signal.
+     */
+    public interface ResultCallback {
+        /**
+         * Accept the features of one signal.
+         *
+         * @param index    Position of the signal in the input.
+         * @param features Extracted features.
+         */
+        void accept(int index, double[][] features);
+    }
+
+    /**
+     * Create a batch extractor running on the common work-stealing pool.
+     *
+     * @param feature Feature configuration (e.g. {@link MfccFeature}).
+     */
+    public BatchExtractor(AudioFeatureConfiguration feature) {
+        this(feature, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a batch extractor running on the given executor.
+     *
+     * @param feature  Feature configuration (e.g. {@link MfccFeature}).
+     * @param executor Executor running one task per signal.
+     */
+    public BatchExtractor(AudioFeatureConfiguration feature, Executor executor) {
+        this.feature = feature;
+        this.executor = executor;
+        int parallelism = executor instanceof ForkJoinPool
+                ? ((ForkJoinPool) executor).getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        this.maxInFlight = 2 * Math.max(1, parallelism);
+    }
+
+    /**
+     * Extract features from all signals.
+     *
+     * @param signals Input signals.
+     * @return Features of every signal, in input order.
+     */
+    public List<double[][]> extract(List<double[]> signals) {
+        final double[][][] results = new double[signals.size()][][];
+        extract(signals.iterator(), (index, features) -> results[index] = features);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Extract features from all signals and hand each result to the callback as soon as it is ready.
+     * At most twice the executor parallelism signals are held in memory at once. The callback is
+     * never invoked concurrently; the method returns after the last callback.
+     *
+     * @param signals  Input signals.
+     * @param callback Receiver of the results, in completion order.
+     */
+    public void extract(Iterator<double[]> signals, ResultCallback callback) {
+        final Semaphore permits = new Semaphore(maxInFlight);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Object lock = new Object();
+
+        int index = 0;
+        while (signals.hasNext() && failure.get() == null) {
+            final double[] y = signals.next();
+            final int position = index++;
+            permits.acquireUninterruptibly();
+            try {
+                executor.execute(() -> {
+                    try {
+                        double[][] features = feature.extract(y);
+                        synchronized (lock) {
+                            callback.accept(position, features);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        permits.acquireUninterruptibly(maxInFlight);
+        permits.release(maxInFlight);
+
+        Throwable e = failure.get();
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        if (e != null) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package org.netlcod.feature;
+
+import org.netlcod.io.SampleSource;
+import org.netlcod.spectrum.Layout;
+import org.netlcod.spectrum.ParallelFrames;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.DoubleAccumulator;
+
+import static org.netlcod.spectrum.Spectrum.frameCount;
+
+/**
+ * Extracts several features of a signal in one pass over its frames.
+ * <p>
+ * Every frame is read, windowed and transformed once; its power spectrum is then reduced by
+ * each requested feature (see {@link FeatureType}), and the mel projection is shared by the mel
+ * spectrogram and the MFCC. With the default 128 mel bands the mel spectrogram and MFCC equal
+ * those of {@link MelFeature} and {@link MfccFeature} with the same parameters. Spectral
+ * features use the magnitude spectrum, as librosa; RMS and zero-crossing rate use the
+ * unwindowed frames of length nFft, centered as the STFT frames.
+ * <p>
+ * Extraction runs in double precision; the single-precision {@code extract} rounds the result.
+ */
+public class CompositeFeature extends AudioFeatureConfiguration {
+    private static final double ZERO_CROSSING_THRESHOLD = 1e-10;
+
+    private EnumSet<FeatureType> features = EnumSet.allOf(FeatureType.class);
+    private int nMels = MfccFeature.N_MELS;
+    private double rollPercent = 0.85;
+
+    /**
+     * Returns the features to extract.
+     *
+     * @return the features
+     */
+    public Set<FeatureType> getFeatures() {
+        return EnumSet.copyOf(features);
+    }
+
+    /**
+     * Sets the features to extract.
+     *
+     * @param features the features (default all)
+     */
+    public void setFeatures(Collection<FeatureType> features) {
+        if (features.isEmpty()) {
+            throw new IllegalArgumentException("At least one feature is required");
+        }
+        this.features = EnumSet.copyOf(features);
+    }
+
+    /**
+     * Returns the number of mel bands of the mel spectrogram and of the MFCC.
+     *
+     * @return the number of mel bands
+     */
+    public int getNMels() {
+        return nMels;
+    }
+
+    /**
+     * Sets the number of mel bands of the mel spectrogram and of the MFCC; the number of MFCC
+     * coefficients is the feature size.
+     *
+     * @param nMels the number of mel bands (default 128)
+     */
+    public void setNMels(int nMels) {
+        if (nMels <= 0) {
+            throw new IllegalArgumentException("Number of mel bands must be positive: " + nMels);
+        }
+        this.nMels = nMels;
+    }
+
+    /**
+     * Returns the fraction of the spectral energy below the roll-off frequency.
+     *
+     * @return the roll percent
+     */
+    public double getRollPercent() {
+        return rollPercent;
+    }
+
+    /**
+     * Sets the fraction of the spectral energy below the roll-off frequency.
+     *
+     * @param rollPercent the roll percent in (0, 1) (default 0.85)
+     */
+    public void setRollPercent(double rollPercent) {
+        if (!(rollPercent > 0 && rollPercent < 1)) {
+            throw new IllegalArgumentException("Roll percent must be in (0, 1): " + rollPercent);
+        }
+        this.rollPercent = rollPercent;
+    }
+
+    /**
+     * Compute the requested features of a lazily decoded signal, stacked in the order of
+     * {@link FeatureType}.
+     *
+     * @param source Input signal.
+     * @return Array of features with shape [rows][frames] (or [frames][rows], see {@link #getLayout()}).
+     */
+    public double[][] extract(SampleSource source) {
+        Map<FeatureType, double[][]> result = extractAll(source);
+        if (result.size() == 1) {
+            return result.values().iterator().next();
+        }
+
+        if (layout == Layout.FRAME_MAJOR) {
+            int nFrames = result.values().iterator().next().length;
+            int rows = 0;
+            for (double[][] feature : result.values()) {
+                rows += nFrames == 0 ? 0 : feature[0].length;
+            }
+            double[][] stacked = new double[nFrames][rows];
+            for (int t = 0; t < nFrames; t++) {
+                int offset = 0;
+                for (double[][] feature : result.values()) {
+                    System.arraycopy(feature[t], 0, stacked[t], offset, feature[t].length);
+                    offset += feature[t].length;
+                }
+            }
+            return stacked;
+        }
+
+        int rows = 0;
+        for (double[][] feature : result.values()) {
+            rows += feature.length;
+        }
+        double[][] stacked = new double[rows][];
+        int offset = 0;
+        for (double[][] feature : result.values()) {
+            System.arraycopy(feature, 0, stacked, offset, feature.length);
+            offset += feature.length;
+        }
+        return stacked;
+    }
+
+    /**
+     * Compute the requested features.
+     *
+     * @param y Input signal.
+     * @return Map from feature to its array with shape [rows][frames] (or [frames][rows], see {@link #getLayout()}).
+     */
+    public Map<FeatureType, double[][]> extractAll(double[] y) {
+        return extractAll(SampleSource.of(y));
+    }
+
+    /**
+     * Compute the requested features of a lazily decoded signal.
+     * <p>
+     * The first pass computes every frame-local feature and, for the MFCC, stores the dB-scaled
+     * mel frames and tracks their maximum; the second pass applies the global {@code topDB}
+     * clipping and the DCT. Both MFCC passes are those of {@link FeaturePipeline#mfcc(SampleSource, int)}.
+     * Stage costs are reported to the listener, if one is set; RMS and zero-crossing rate count
+     * towards reading the frames, and the spectral features towards the power spectrum.
+     *
+     * @param source Input signal.
+     * @return Map from feature to its array with shape [rows][frames] (or [frames][rows], see {@link #getLayout()}).
+     */
+    public Map<FeatureType, double[][]> extractAll(SampleSource source) {
+        EnumSet<FeatureType> requested = EnumSet.copyOf(features);
+        if (requested.contains(FeatureType.MFCC) && featureSize > nMels) {
+            throw new IllegalArgumentException("Number of coefficients must not exceed the number of mel bands: "
+                    + featureSize + " > " + nMels);
+        }
+        SampleSource signal = resampled(source);
+        FeaturePlan plan = plan(nMels);
+        FeaturePipeline pipeline = new FeaturePipeline(plan, executor, layout, log, listener, metricsKey());
+        int nFft = plan.getNFft();
+        int hopLength = plan.getHopLength();
+        long length = signal.getLength();
+        int nFrames = frameCount(length, nFft, hopLength, true);
+        Instrumentation instrumentation = Instrumentation.start(listener, metricsKey());
+        boolean frameMajor = layout == Layout.FRAME_MAJOR;
+
+        Map<FeatureType, double[][]> result = new EnumMap<>(FeatureType.class);
+        for (FeatureType type : requested) {
+            int rows = type == FeatureType.MEL ? nMels : type == FeatureType.MFCC ? featureSize : 1;
+            result.put(type, frameMajor ? new double[nFrames][rows] : new double[rows][nFrames]);
+        }
+        double[][] mel = result.get(FeatureType.MEL);
+        double[][] mfcc = result.get(FeatureType.MFCC);
+        double[][] centroid = result.get(FeatureType.SPECTRAL_CENTROID);
+        double[][] bandwidth = result.get(FeatureType.SPECTRAL_BANDWIDTH);
+        double[][] rolloff = result.get(FeatureType.SPECTRAL_ROLLOFF);
+        double[][] flatness = result.get(FeatureType.SPECTRAL_FLATNESS);
+        double[][] rms = result.get(FeatureType.RMS);
+        double[][] zeroCrossingRate = result.get(FeatureType.ZERO_CROSSING_RATE);
+        boolean magnitudes = centroid != null || bandwidth != null || rolloff != null;
+        boolean spectrum = magnitudes || flatness != null || mel != null || mfcc != null;
+        FeaturePipeline.Columns melDB = mfcc == null ? null : FeaturePipeline.columns(new double[nFrames * nMels], nMels);
+        double[] frequencies = fftFrequencies(plan.getSampleRate(), nFft);
+
+        // 1
+        DoubleAccumulator maxDB = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+        ParallelFrames.forEach(nFrames, executor, ParallelFrames.DEFAULT_THRESHOLD, (from, to) -> {
+            FeaturePipeline.Workspace workspace = FeaturePipeline.workspace(plan);
+            Instrumentation.Timer timer = instrumentation == null ? null : instrumentation.timer();
+            double[] frame = workspace.frame;
+            double[] power = workspace.power;
+            double rangeMax = Double.NEGATIVE_INFINITY;
+            for (int t = from; t < to; t++) {
+                long start = (long) t * hopLength - nFft / 2;
+                signal.read(start, frame);
+                if (rms != null) {
+                    set(rms, 0, t, frameMajor, rms(frame));
+                }
+                if (zeroCrossingRate != null) {
+                    set(zeroCrossingRate, 0, t, frameMajor, zeroCrossingRate(frame, start, length));
+                }
+                if (!spectrum) {
+                    continue;
+                }
+                pipeline.powerFrame(workspace, timer);
+
+                if (mel != null || mfcc != null) {
+                    plan.melFilter().apply(power, workspace.mel);
+                    if (mel != null) {
+                        for (int m = 0; m < nMels; m++) {
+                            set(mel, m, t, frameMajor, workspace.mel[m]);
+                        }
+                    }
+                    if (timer != null) {
+                        timer.mark(Stage.MEL);
+                    }
+                    if (mfcc != null) {
+                        double frameMax = pipeline.melDBFrame(t, workspace, melDB, timer);
+                        if (frameMax > rangeMax) {
+                            rangeMax = frameMax;
+                        }
+                    }
+                }
+
+                if (flatness != null) {
+                    set(flatness, 0, t, frameMajor, flatness(power));
+                }
+                if (magnitudes) {
+                    // The power spectrum is no longer needed, so it becomes the magnitude spectrum
+                    double[] magnitude = power;
+                    double total = 0;
+                    double weighted = 0;
+                    for (int k = 0; k < magnitude.length; k++) {
+                        magnitude[k] = Math.sqrt(magnitude[k]);
+                        total += magnitude[k];
+                        weighted += frequencies[k] * magnitude[k];
+                    }
+                    // As librosa.util.normalize, spectra summing below the smallest normal number are not scaled
+                    double norm = total < Double.MIN_NORMAL ? 1 : total;
+                    double frameCentroid = weighted / norm;
+                    if (centroid != null) {
+                        set(centroid, 0, t, frameMajor, frameCentroid);
+                    }
+                    if (bandwidth != null) {
+                        set(bandwidth, 0, t, frameMajor, bandwidth(magnitude, frequencies, frameCentroid, norm));
+                    }
+                    if (rolloff != null) {
+                        set(rolloff, 0, t, frameMajor, rolloff(magnitude, frequencies, rollPercent * total));
+                    }
+                }
+                if (timer != null && (flatness != null || magnitudes)) {
+                    timer.mark(Stage.POWER);
+                }
+            }
+            if (timer != null) {
+                timer.finish();
+            }
+            maxDB.accumulate(rangeMax);
+        });
+
+        // 2
+        if (mfcc != null) {
+            pipeline.cepstra(melDB, nFrames, maxDB.get(), featureSize, FeaturePipeline.columns(mfcc, featureSize, layout), instrumentation);
+        }
+
+        if (instrumentation != null) {
+            instrumentation.report(nFrames);
+        }
+        return result;
+    }
+
+    @Override
+    protected String fingerprint() {
+        return super.fingerprint()
+                + ";features=" + features
+                + ";nMels=" + nMels
+                + ";rollPercent=" + rollPercent;
+    }
+
+    private static void set(double[][] feature, int row, int t, boolean frameMajor, double value) {
+        if (frameMajor) {
+            feature[t][row] = value;
+        } else {
+            feature[row][t] = value;
+        }
+    }
+
+    /**
+     * Frequencies of the FFT bins, as {@code librosa.fft_frequencies}.
+     */
+    private static double[] fftFrequencies(int sampleRate, int nFft) {
+        double[] frequencies = new double[nFft / 2 + 1];
+        double step = (double) sampleRate / nFft;
+        for (int k = 0; k < frequencies.length; k++) {
+            frequencies[k] = k * step;
+        }
+        return frequencies;
+    }
+
+    /**
+     * Spectral bandwidth of order 2 of a magnitude spectrum.
+     *
+     * @param magnitude   Magnitude spectrum.
+     * @param frequencies Frequencies of the bins.
+     * @param centroid    Spectral centroid.
+     * @param norm        Sum of the magnitudes.
+     * @return The bandwidth in Hz.
+     */
+    static double bandwidth(double[] magnitude, double[] frequencies, double centroid, double norm) {
+        double variance = 0;
+        for (int k = 0; k < magnitude.length; k++) {
+            double deviation = frequencies[k] - centroid;
+            variance += magnitude[k] * (deviation * deviation);
+        }
+        return Math.sqrt(variance / norm);
+    }
+
+    /**
+     * Roll-off frequency of a magnitude spectrum: the frequency of the first bin at which the
+     * cumulative magnitude reaches the threshold.
+     *
+     * @param magnitude   Magnitude spectrum.
+     * @param frequencies Frequencies of the bins.
+     * @param threshold   Fraction of the total magnitude.
+     * @return The roll-off frequency in Hz.
+     */
+    static double rolloff(double[] magnitude, double[] frequencies, double threshold) {
+        double cumulative = 0;
+        for (int k = 0; k < magnitude.length; k++) {
+            cumulative += magnitude[k];
+            if (cumulative >= threshold) {
+                return frequencies[k];
+            }
+        }
+        return frequencies[frequencies.length - 1];
+    }
+
+    /**
+     * Spectral flatness of a power spectrum: the ratio of its geometric and arithmetic means.
+     * The logarithm of the product is taken once, with the binary exponent split off every
+     * few bins so that the product stays in range.
+     *
+     * @param power Power spectrum.
+     * @return The flatness in [0, 1].
+     */
+    static double flatness(double[] power) {
+        double product = 1;
+        long exponent = 0;
+        double sum = 0;
+        for (int k = 0; k < power.length; k++) {
+            double clipped = Math.max(FeaturePipeline.AMIN, power[k]);
+            sum += clipped;
+            product *= clipped;
+            if ((k & 7) == 7) {
+                // Move the binary exponent of the (normal, positive) product to the counter
+                long bits = Double.doubleToRawLongBits(product);
+                exponent += (bits >>> 52) - 1023;
+                product = Double.longBitsToDouble((bits & 0x000FFFFFFFFFFFFFL) | 0x3FF0000000000000L);
+            }
+        }
+        double logMean = (Math.log(product) + exponent * Math.log(2)) / power.length;
+        return Math.exp(logMean) / (sum / power.length);
+    }
+
+    static double rms(double[] frame) {
+        double sum = 0;
+        for (double value : frame) {
+            sum += value * value;
+        }
+        return Math.sqrt(sum / frame.length);
+    }
+
+    /**
+     * Zero-crossing rate of a frame starting at sample {@code start}. The signal is padded at its
+     * ends by repeating the edge samples, as librosa, so the padding adds no crossings.
+     */
+    static double zeroCrossingRate(double[] frame, long start, long length) {
+        int from = (int) Math.min(frame.length, Math.max(0, -start));
+        int to = (int) Math.max(from, Math.min(frame.length, length - start));
+        int crossings = 0;
+        int previous = from < to && frame[from] < -ZERO_CROSSING_THRESHOLD ? 1 : 0;
+        for (int j = from + 1; j < to; j++) {
+            int negative = frame[j] < -ZERO_CROSSING_THRESHOLD ? 1 : 0;
+            crossings += negative ^ previous;
+            previous = negative;
+        }
+        return (double) crossings / frame.length;
+    }
+}
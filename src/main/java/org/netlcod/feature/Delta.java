@@ -0,0 +1,269 @@
+package org.netlcod.feature;
+
+import org.netlcod.spectrum.Layout;
+
+/**
+ * Delta features, as {@code librosa.feature.delta} with {@code mode='interp'}.
+ * <p>
+ * The delta of order n at a frame is the n-th derivative of the least-squares polynomial of
+ * degree n fitted to the {@code width} frames centered on it (a Savitzky-Golay filter). The
+ * first and last {@code width / 2} frames take the value of the nearest full window, which is
+ * what fitting the polynomial to the edge window gives for a derivative of the same order as
+ * the polynomial.
+ * <p>
+ * Stacked outputs hold the features followed by their deltas of order 1 to n, as
+ * {@code np.vstack([mfcc, delta(mfcc), delta(mfcc, order=2)])}.
+ */
+public final class Delta {
+    /**
+     * Default window width, as librosa.
+     */
+    public static final int DEFAULT_WIDTH = 9;
+
+    private Delta() {
+    }
+
+    /**
+     * Returns the filter of a delta: the weights of the frames {@code -width / 2 .. width / 2}
+     * around the center.
+     *
+     * @param width Odd window width, at least 3.
+     * @param order Derivative order, 1 or 2.
+     * @return The weights.
+     */
+    public static double[] coefficients(int width, int order) {
+        checkWidth(width);
+        int half = width / 2;
+        double[] coefficients = new double[width];
+        if (order == 1) {
+            // Slope of the linear fit: j / sum(j^2)
+            double sum = 0;
+            for (int j = -half; j <= half; j++) {
+                sum += (double) j * j;
+            }
+            for (int j = -half; j <= half; j++) {
+                coefficients[j + half] = j / sum;
+            }
+        } else if (order == 2) {
+            // Twice the leading coefficient of the quadratic fit: 2 (j^2 - mean) / sum((j^2 - mean)^2)
+            double mean = 0;
+            for (int j = -half; j <= half; j++) {
+                mean += (double) j * j;
+            }
+            mean /= width;
+            double sum = 0;
+            for (int j = -half; j <= half; j++) {
+                double centered = (double) j * j - mean;
+                sum += centered * centered;
+            }
+            for (int j = -half; j <= half; j++) {
+                coefficients[j + half] = 2 * ((double) j * j - mean) / sum;
+            }
+        } else {
+            throw new IllegalArgumentException("Delta order must be 1 or 2: " + order);
+        }
+        return coefficients;
+    }
+
+    /**
+     * Compute the delta of a feature matrix along its frames.
+     *
+     * @param data  Features of shape [features][frames].
+     * @param width Odd window width, at least 3 and at most the number of frames.
+     * @param order Derivative order, 1 or 2.
+     * @return Delta features of shape [features][frames].
+     */
+    public static double[][] delta(double[][] data, int width, int order) {
+        int nFeatures = data.length;
+        int nFrames = nFeatures == 0 ? 0 : data[0].length;
+        double[][] stacked = new double[2 * nFeatures][];
+        double[][] result = new double[nFeatures][nFrames];
+        System.arraycopy(data, 0, stacked, 0, nFeatures);
+        System.arraycopy(result, 0, stacked, nFeatures, nFeatures);
+        derive(new DoubleMatrix(stacked, false), nFrames, nFeatures, nFeatures, coefficients(width, order));
+        return result;
+    }
+
+    /**
+     * Append the deltas of order 1 to n to a feature matrix.
+     *
+     * @param data   Features of shape [features][frames] (or [frames][features], see layout).
+     * @param order  Highest delta order, 0 to 2.
+     * @param width  Odd window width, at least 3 and at most the number of frames.
+     * @param layout Layout of data and of the result.
+     * @return Stacked features of shape [features * (order + 1)][frames] (or transposed), or
+     *         data itself if order is 0.
+     */
+    public static double[][] stack(double[][] data, int order, int width, Layout layout) {
+        checkOrder(order);
+        if (order == 0) {
+            return data;
+        }
+        boolean frameMajor = layout == Layout.FRAME_MAJOR;
+        int nFeatures = frameMajor ? (data.length == 0 ? 0 : data[0].length) : data.length;
+        int nFrames = frameMajor ? data.length : (data.length == 0 ? 0 : data[0].length);
+        int rows = nFeatures * (order + 1);
+        double[][] stacked = frameMajor ? new double[nFrames][rows] : new double[rows][nFrames];
+        for (int i = 0; i < data.length; i++) {
+            System.arraycopy(data[i], 0, stacked[i], 0, data[i].length);
+        }
+        fill(stacked, nFeatures, order, width, layout);
+        return stacked;
+    }
+
+    /**
+     * Compute in place the deltas of a stacked matrix whose first nFeatures rows (or columns) hold
+     * the features.
+     *
+     * @param stacked   Matrix of shape [nFeatures * (order + 1)][frames] (or transposed).
+     * @param nFeatures Number of features.
+     * @param order     Highest delta order, 0 to 2.
+     * @param width     Odd window width, at least 3 and at most the number of frames.
+     * @param layout    Layout of the matrix.
+     */
+    static void fill(double[][] stacked, int nFeatures, int order, int width, Layout layout) {
+        boolean frameMajor = layout == Layout.FRAME_MAJOR;
+        int nFrames = frameMajor ? stacked.length : (stacked.length == 0 ? 0 : stacked[0].length);
+        fill(new DoubleMatrix(stacked, frameMajor), nFrames, nFeatures, order, width);
+    }
+
+    /**
+     * Compute in place the deltas of a stacked single-precision matrix whose first nFeatures
+     * rows (or columns) hold the features. Sums are accumulated in double precision.
+     *
+     * @param stacked   Matrix of shape [nFeatures * (order + 1)][frames] (or transposed).
+     * @param nFeatures Number of features.
+     * @param order     Highest delta order, 0 to 2.
+     * @param width     Odd window width, at least 3 and at most the number of frames.
+     * @param layout    Layout of the matrix.
+     */
+    static void fill(float[][] stacked, int nFeatures, int order, int width, Layout layout) {
+        boolean frameMajor = layout == Layout.FRAME_MAJOR;
+        int nFrames = frameMajor ? stacked.length : (stacked.length == 0 ? 0 : stacked[0].length);
+        fill(new FloatMatrix(stacked, frameMajor), nFrames, nFeatures, order, width);
+    }
+
+    private static void fill(Matrix stacked, int nFrames, int nFeatures, int order, int width) {
+        for (int level = 1; level <= order; level++) {
+            derive(stacked, nFrames, nFeatures, level * nFeatures, coefficients(width, level));
+        }
+    }
+
+    /**
+     * Filter the first nFeatures rows (or columns) of a matrix into the rows (or columns) from
+     * offset.
+     */
+    private static void derive(Matrix stacked, int nFrames, int nFeatures, int offset, double[] coefficients) {
+        int width = coefficients.length;
+        checkFrames(width, nFrames);
+        int half = width / 2;
+        for (int t = 0; t < nFrames; t++) {
+            int center = Math.min(Math.max(t, half), nFrames - 1 - half);
+            for (int i = 0; i < nFeatures; i++) {
+                double sum = 0;
+                for (int j = -half; j <= half; j++) {
+                    sum += coefficients[j + half] * stacked.get(i, center + j);
+                }
+                stacked.set(offset + i, t, sum);
+            }
+        }
+    }
+
+    /**
+     * Element access to a stacked matrix by feature row and frame, whatever its precision and layout.
+     */
+    private interface Matrix {
+        double get(int row, int t);
+
+        void set(int row, int t, double value);
+    }
+
+    private static final class DoubleMatrix implements Matrix {
+        private final double[][] values;
+        private final boolean frameMajor;
+
+        DoubleMatrix(double[][] values, boolean frameMajor) {
+            this.values = values;
+            this.frameMajor = frameMajor;
+        }
+
+        @Override
+        public double get(int row, int t) {
+            return frameMajor ? values[t][row] : values[row][t];
+        }
+
+        @Override
+        public void set(int row, int t, double value) {
+            if (frameMajor) {
+                values[t][row] = value;
+            } else {
+                values[row][t] = value;
+            }
+        }
+    }
+
+    private static final class FloatMatrix implements Matrix {
+        private final float[][] values;
+        private final boolean frameMajor;
+
+        FloatMatrix(float[][] values, boolean frameMajor) {
+            this.values = values;
+            this.frameMajor = frameMajor;
+        }
+
+        @Override
+        public double get(int row, int t) {
+            return frameMajor ? values[t][row] : values[row][t];
+        }
+
+        @Override
+        public void set(int row, int t, double value) {
+            if (frameMajor) {
+                values[t][row] = (float) value;
+            } else {
+                values[row][t] = (float) value;
+            }
+        }
+    }
+
+    /**
+     * Compute one delta of the frames held in a ring buffer.
+     *
+     * @param ring         Ring of width frames.
+     * @param center       Index of the center frame in the stream; frames center - width / 2 to
+     *                     center + width / 2 must be in the ring, at their index modulo width.
+     * @param coefficients Filter weights (see {@link #coefficients(int, int)}).
+     * @param output       Output buffer.
+     * @param offset       Index of the first delta in output.
+     */
+    static void ring(double[][] ring, long center, double[] coefficients, double[] output, int offset) {
+        int width = ring.length;
+        int half = width / 2;
+        int nFeatures = ring[0].length;
+        for (int i = 0; i < nFeatures; i++) {
+            double sum = 0;
+            for (int j = -half; j <= half; j++) {
+                sum += coefficients[j + half] * ring[(int) ((center + j) % width)][i];
+            }
+            output[offset + i] = sum;
+        }
+    }
+
+    static void checkOrder(int order) {
+        if (order < 0 || order > 2) {
+            throw new IllegalArgumentException("Delta order must be between 0 and 2: " + order);
+        }
+    }
+
+    static void checkWidth(int width) {
+        if (width < 3 || width % 2 == 0) {
+            throw new IllegalArgumentException("Delta width must be odd and at least 3: " + width);
+        }
+    }
+
+    private static void checkFrames(int width, int nFrames) {
+        if (nFrames < width) {
+            throw new IllegalArgumentException("Delta width must not exceed the number of frames: " + width + " > " + nFrames);
+        }
+    }
+}
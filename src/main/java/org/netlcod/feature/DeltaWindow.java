@@ -0,0 +1,105 @@
+package org.netlcod.feature;
+
+/**
+ * Streaming deltas: a ring of the last {@code width} feature columns from which each column is
+ * emitted with its deltas appended (see {@link Delta}).
+ * <p>
+ * A column needs the {@code width / 2} columns after it, so output lags input by that many
+ * frames. The first columns are emitted once the ring is full and the last ones on
+ * {@link #flush}, with the deltas of the nearest full window, as the batch deltas. Columns are
+ * emitted in a reused buffer and nothing is allocated per frame.
+ */
+final class DeltaWindow {
+    private final int nFeatures;
+    private final int order;
+    private final double[][] ring;
+    private final double[][] coefficients;
+    private final double[] output;
+    private long count;
+    private long emitted;
+
+    /**
+     * Create a window.
+     *
+     * @param nFeatures Number of features per column.
+     * @param order     Highest delta order, 1 or 2.
+     * @param width     Odd window width, at least 3.
+     */
+    DeltaWindow(int nFeatures, int order, int width) {
+        Delta.checkWidth(width);
+        this.nFeatures = nFeatures;
+        this.order = order;
+        this.ring = new double[width][nFeatures];
+        this.coefficients = new double[order][];
+        for (int level = 1; level <= order; level++) {
+            coefficients[level - 1] = Delta.coefficients(width, level);
+        }
+        this.output = new double[nFeatures * (order + 1)];
+    }
+
+    /**
+     * Add a column and emit every column whose window is complete.
+     *
+     * @param column   Feature column of the next frame.
+     * @param consumer Receiver of the stacked columns.
+     */
+    void push(double[] column, FeatureConsumer consumer) {
+        int width = ring.length;
+        int half = width / 2;
+        System.arraycopy(column, 0, ring[(int) (count % width)], 0, nFeatures);
+        count++;
+        if (count == width) {
+            // The first frames take the deltas of the first full window
+            for (long t = 0; t <= half; t++) {
+                emit(t, half, consumer);
+            }
+        } else if (count > width) {
+            emit(count - 1 - half, count - 1 - half, consumer);
+        }
+    }
+
+    /**
+     * Emit the remaining columns with the deltas of the last full window.
+     *
+     * @param consumer Receiver of the stacked columns.
+     */
+    void flush(FeatureConsumer consumer) {
+        int width = ring.length;
+        if (count == 0) {
+            return;
+        }
+        if (count < width) {
+            throw new IllegalStateException("Delta width must not exceed the number of frames: " + width + " > " + count);
+        }
+        long center = count - 1 - width / 2;
+        for (long t = center + 1; t < count; t++) {
+            emit(t, center, consumer);
+        }
+    }
+
+    /**
+     * Discard all buffered columns.
+     */
+    void reset() {
+        count = 0;
+        emitted = 0;
+    }
+
+    /**
+     * Returns the number of columns emitted since the last reset.
+     *
+     * @return the number of emitted columns
+     */
+    long getEmitted() {
+        return emitted;
+    }
+
+    private void emit(long t, long center, FeatureConsumer consumer) {
+        System.arraycopy(ring[(int) (t % ring.length)], 0, output, 0, nFeatures);
+        for (int level = 1; level <= order; level++) {
+            Delta.ring(ring, center, coefficients[level - 1], output, level * nFeatures);
+        }
+        emitted++;
+        consumer.accept(output);
+    }
+}
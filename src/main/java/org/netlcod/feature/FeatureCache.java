@@ -0,0 +1,362 @@
+package org.netlcod.feature;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed cache of extracted features.
+ * <p>
+ * Results are keyed by a 64-bit hash of the signal, its length and the configuration
+ * fingerprint of the extractor (see {@link AudioFeatureConfiguration#fingerprint()}). They are
+ * kept in a bounded in-memory LRU tier and in a directory on disk, one little-endian binary file
+ * per result, whose total size is bounded by evicting the least recently used files. The full
+ * key is stored in every file and checked on read, and the access order on disk survives
+ * restarts through the file modification times. Callers receive copies, so cached results
+ * cannot be modified.
+ * <p>
+ * Instances are thread-safe; concurrent misses of the same key may both extract.
+ */
+public final class FeatureCache {
+    private static final int MAGIC = 0x4A4C4643;
+    private static final String SUFFIX = ".feat";
+
+    private final Path directory;
+    private final long maxDiskBytes;
+    private final long maxMemoryBytes;
+
+    private final LinkedHashMap<String, double[][]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Open a cache directory, creating it if needed. Existing entries are kept.
+     *
+     * @param directory      Directory of the disk tier.
+     * @param maxDiskBytes   Maximum total size of the files on disk.
+     * @param maxMemoryBytes Maximum size of the results kept in memory, or 0 to disable the memory tier.
+     * @throws IOException if the directory cannot be created or listed.
+     */
+    public FeatureCache(Path directory, long maxDiskBytes, long maxMemoryBytes) throws IOException {
+        if (maxDiskBytes < 0 || maxMemoryBytes < 0) {
+            throw new IllegalArgumentException("Cache sizes must not be negative: " + maxDiskBytes + ", " + maxMemoryBytes);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxDiskBytes = maxDiskBytes;
+        this.maxMemoryBytes = maxMemoryBytes;
+
+        // Oldest first, so the insertion order is the access order of earlier runs
+        Map<Path, FileTime> times = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                times.put(file, Files.getLastModifiedTime(file));
+            }
+        }
+        List<Path> files = new ArrayList<>(times.keySet());
+        files.sort(Comparator.comparing(times::get));
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long size = Files.size(file);
+            disk.put(name.substring(0, name.length() - SUFFIX.length()), size);
+            diskBytes += size;
+        }
+        synchronized (this) {
+            evictDisk();
+        }
+    }
+
+    /**
+     * Returns the features of a signal, extracting and caching them on a miss.
+     *
+     * @param feature Feature extractor.
+     * @param y       Input signal.
+     * @return Array of features as returned by {@link AudioFeatureConfiguration#extract(double[])}.
+     */
+    public double[][] extract(AudioFeatureConfiguration feature, double[] y) {
+        String fingerprint = feature.fingerprint();
+        long signalHash = hash(y);
+        String key = key(fingerprint, signalHash, y.length);
+
+        // 1
+        synchronized (this) {
+            double[][] cached = memory.get(key);
+            if (cached != null) {
+                memoryHits.incrementAndGet();
+                return copy(cached);
+            }
+        }
+
+        // 2
+        double[][] features = read(key, fingerprint, signalHash, y.length);
+        if (features != null) {
+            diskHits.incrementAndGet();
+            remember(key, features);
+            return copy(features);
+        }
+
+        // 3
+        misses.incrementAndGet();
+        features = feature.extract(y);
+        double[][] stored = copy(features);
+        write(key, fingerprint, signalHash, y.length, stored);
+        remember(key, stored);
+        return features;
+    }
+
+    /**
+     * Remove every entry from memory and disk.
+     *
+     * @throws IOException if a file cannot be deleted.
+     */
+    public synchronized void clear() throws IOException {
+        memory.clear();
+        memoryBytes = 0;
+        for (String key : disk.keySet()) {
+            Files.deleteIfExists(file(key));
+        }
+        disk.clear();
+        diskBytes = 0;
+    }
+
+    /**
+     * Returns the number of results served from memory.
+     *
+     * @return the number of memory hits
+     */
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    /**
+     * Returns the number of results served from disk.
+     *
+     * @return the number of disk hits
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Returns the number of results that had to be extracted.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of files evicted from disk.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the total size of the files on disk.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    /**
+     * Returns the total size of the results in memory.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * Compute a 64-bit hash of a signal from the bit patterns of its samples.
+     *
+     * @param y Input signal.
+     * @return The hash.
+     */
+    static long hash(double[] y) {
+        long h = 0x9E3779B97F4A7C15L ^ y.length;
+        for (double sample : y) {
+            h = Long.rotateLeft(h ^ Double.doubleToLongBits(sample), 27) * 0xBF58476D1CE4E5B9L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    private static String key(String fingerprint, long signalHash, int length) {
+        long h = signalHash;
+        for (byte b : fingerprint.getBytes(StandardCharsets.UTF_8)) {
+            h = Long.rotateLeft(h ^ b, 27) * 0x94D049BB133111EBL;
+        }
+        return String.format("%016x%08x", mix(h), length);
+    }
+
+    private static long sizeOf(double[][] features) {
+        long size = 16;
+        for (double[] row : features) {
+            size += 16 + 8L * row.length;
+        }
+        return size;
+    }
+
+    private static double[][] copy(double[][] features) {
+        double[][] result = new double[features.length][];
+        for (int i = 0; i < features.length; i++) {
+            result[i] = features[i].clone();
+        }
+        return result;
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    private synchronized void remember(String key, double[][] features) {
+        long size = sizeOf(features);
+        if (size > maxMemoryBytes) {
+            return;
+        }
+        double[][] previous = memory.put(key, features);
+        if (previous != null) {
+            memoryBytes -= sizeOf(previous);
+        }
+        memoryBytes += size;
+        Iterator<double[][]> iterator = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes) {
+            memoryBytes -= sizeOf(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    private double[][] read(String key, String fingerprint, long signalHash, int length) {
+        Path file = file(key);
+        synchronized (this) {
+            if (disk.get(key) == null) {
+                return null;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read the whole file
+            }
+            buffer.flip();
+
+            byte[] expected = fingerprint.getBytes(StandardCharsets.UTF_8);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != expected.length) {
+                return null;
+            }
+            byte[] actual = new byte[expected.length];
+            buffer.get(actual);
+            if (!Arrays.equals(expected, actual) || buffer.getLong() != signalHash || buffer.getInt() != length) {
+                return null;
+            }
+            int rows = buffer.getInt();
+            int columns = buffer.getInt();
+            double[][] features = new double[rows][columns];
+            for (double[] row : features) {
+                buffer.asDoubleBuffer().get(row);
+                buffer.position(buffer.position() + 8 * columns);
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return features;
+        } catch (IOException | RuntimeException e) {
+            // Missing, truncated or foreign file: extract again and overwrite it
+            return null;
+        }
+    }
+
+    private void write(String key, String fingerprint, long signalHash, int length, double[][] features) {
+        byte[] name = fingerprint.getBytes(StandardCharsets.UTF_8);
+        int rows = features.length;
+        int columns = rows == 0 ? 0 : features[0].length;
+        long size = 4 + 4 + name.length + 8 + 4 + 4 + 4 + 8L * rows * columns;
+        if (size > maxDiskBytes || size > Integer.MAX_VALUE) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(name.length).put(name).putLong(signalHash).putInt(length);
+        buffer.putInt(rows).putInt(columns);
+        for (double[] row : features) {
+            buffer.asDoubleBuffer().put(row);
+            buffer.position(buffer.position() + 8 * columns);
+        }
+        buffer.flip();
+
+        Path file = file(key);
+        try {
+            // Written to a temporary file first, so readers never see a partial result
+            Path temporary = Files.createTempFile(directory, key, ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        synchronized (this) {
+            Long previous = disk.put(key, size);
+            if (previous != null) {
+                diskBytes -= previous;
+            }
+            diskBytes += size;
+            evictDisk();
+        }
+    }
+
+    private void evictDisk() {
+        Iterator<Map.Entry<String, Long>> iterator = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            try {
+                Files.deleteIfExists(file(eldest.getKey()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            diskBytes -= eldest.getValue();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.netlcod.feature;
+
+/**
+ * Receives feature columns from a streaming extractor.
+ */
+public interface FeatureConsumer {
+    /**
+     * Accept the features of one frame. The array is reused between calls and must not be retained.
+     *
+     * @param column Feature values of one frame.
+     */
+    void accept(double[] column);
+}
@@ -0,0 +1,1009 @@
+package org.netlcod.feature;
+
+import org.netlcod.convert.FastLog;
+import org.netlcod.io.OffHeapMatrix;
+import org.netlcod.io.SampleSource;
+import org.netlcod.kernel.Kernels;
+import org.netlcod.spectrum.Dct;
+import org.netlcod.spectrum.Layout;
+import org.netlcod.spectrum.ParallelFrames;
+import org.netlcod.spectrum.RealFFT;
+import org.netlcod.spectrum.Spectrum;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.function.Supplier;
+
+import static org.netlcod.spectrum.Spectrum.frameCount;
+
+/**
+ * Fused frame-at-a-time mel/MFCC engine.
+ * <p>
+ * Each frame goes through window, FFT, power, mel projection, log and DCT in small reusable
+ * buffers; only the final values are written to the output. Memory is proportional to
+ * frames x feature size instead of frames x nFft.
+ */
+public final class FeaturePipeline {
+    static final double REF = 1.0;
+    static final double AMIN = 1e-10;
+    static final double TOP_DB = 80.0;
+
+    private static final Kernels KERNELS = Kernels.get();
+    private static final ThreadLocal<Workspace> WORKSPACE = new ThreadLocal<>();
+    private static final ThreadLocal<FloatWorkspace> FLOAT_WORKSPACE = new ThreadLocal<>();
+
+    private final FeaturePlan plan;
+    private final Executor executor;
+    private final Layout layout;
+    private final FastLog log;
+    private final PipelineListener listener;
+    private final String configuration;
+
+    /**
+     * Create a sequential pipeline for the given plan.
+     *
+     * @param plan Extraction plan.
+     */
+    public FeaturePipeline(FeaturePlan plan) {
+        this(plan, null);
+    }
+
+    /**
+     * Create a pipeline that splits frames across an executor. Results are identical to the
+     * sequential pipeline; inputs shorter than {@link ParallelFrames#DEFAULT_THRESHOLD} frames
+     * are processed sequentially.
+     *
+     * @param plan     Extraction plan.
+     * @param executor Executor for frame ranges, or null to run sequentially.
+     */
+    public FeaturePipeline(FeaturePlan plan, Executor executor) {
+        this(plan, executor, Layout.FREQUENCY_MAJOR);
+    }
+
+    /**
+     * Create a pipeline with the given output layout. In {@link Layout#FRAME_MAJOR} layout every
+     * frame is written to its own contiguous row as soon as it is computed.
+     *
+     * @param plan     Extraction plan.
+     * @param executor Executor for frame ranges, or null to run sequentially.
+     * @param layout   Output layout.
+     */
+    public FeaturePipeline(FeaturePlan plan, Executor executor, Layout layout) {
+        this(plan, executor, layout, null);
+    }
+
+    /**
+     * Create a pipeline whose MFCC dB conversion uses an approximate logarithm.
+     *
+     * @param plan     Extraction plan.
+     * @param executor Executor for frame ranges, or null to run sequentially.
+     * @param layout   Output layout.
+     * @param log      Approximate logarithm, or null for {@link Math#log10}.
+     */
+    public FeaturePipeline(FeaturePlan plan, Executor executor, Layout layout, FastLog log) {
+        this(plan, executor, layout, log, null);
+    }
+
+    /**
+     * Create a pipeline that reports the cost of its stages to a listener after every call.
+     * Without a listener nothing is measured.
+     *
+     * @param plan     Extraction plan.
+     * @param executor Executor for frame ranges, or null to run sequentially.
+     * @param layout   Output layout.
+     * @param log      Approximate logarithm, or null for {@link Math#log10}.
+     * @param listener Listener of the stage costs, or null.
+     */
+    public FeaturePipeline(FeaturePlan plan, Executor executor, Layout layout, FastLog log, PipelineListener listener) {
+        this(plan, executor, layout, log, listener, null);
+    }
+
+    /**
+     * Create a pipeline that reports its stage costs under the fingerprint of an extractor.
+     *
+     * @param plan          Extraction plan.
+     * @param executor      Executor for frame ranges, or null to run sequentially.
+     * @param layout        Output layout.
+     * @param log           Approximate logarithm, or null for {@link Math#log10}.
+     * @param listener      Listener of the stage costs, or null.
+     * @param configuration Configuration reported to the listener, or null to describe each call
+     *                      by the plan and the call parameters.
+     */
+    FeaturePipeline(FeaturePlan plan, Executor executor, Layout layout, FastLog log, PipelineListener listener, String configuration) {
+        this.plan = plan;
+        this.executor = executor;
+        this.layout = layout;
+        this.log = log;
+        this.listener = listener;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Returns the extraction plan.
+     *
+     * @return the extraction plan
+     */
+    public FeaturePlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Returns the output layout.
+     *
+     * @return the output layout
+     */
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Returns the approximate logarithm of the dB conversion.
+     *
+     * @return the logarithm, or null for {@link Math#log10}
+     */
+    public FastLog getLog() {
+        return log;
+    }
+
+    /**
+     * Returns the listener of the stage costs.
+     *
+     * @return the listener, or null if nothing is measured
+     */
+    public PipelineListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Compute a mel spectrogram.
+     *
+     * @param y Input signal.
+     * @return Mel spectrogram of shape [nMels][frames] (or [frames][nMels], see {@link #getLayout()}).
+     */
+    public double[][] melSpectrogram(double[] y) {
+        return melSpectrogram(SampleSource.of(y));
+    }
+
+    /**
+     * Compute a mel spectrogram of a lazily decoded signal.
+     *
+     * @param source Input signal.
+     * @return Mel spectrogram of shape [nMels][frames] (or [frames][nMels], see {@link #getLayout()}).
+     */
+    public double[][] melSpectrogram(SampleSource source) {
+        int nMels = plan.getNMels();
+        int nFrames = frameCount(source.getLength(), plan.getNFft(), plan.getHopLength(), true);
+        Instrumentation instrumentation = instrument("mel;precision=DOUBLE");
+        boolean frameMajor = layout == Layout.FRAME_MAJOR;
+        double[][] result = frameMajor ? new double[nFrames][nMels] : new double[nMels][nFrames];
+
+        ParallelFrames.forEach(nFrames, executor, ParallelFrames.DEFAULT_THRESHOLD, (from, to) -> {
+            Workspace workspace = workspace(plan);
+            Instrumentation.Timer timer = instrumentation == null ? null : instrumentation.timer();
+            for (int t = from; t < to; t++) {
+                melFrame(source, t, workspace, timer);
+                if (frameMajor) {
+                    System.arraycopy(workspace.mel, 0, result[t], 0, nMels);
+                    continue;
+                }
+                for (int m = 0; m < nMels; m++) {
+                    result[m][t] = workspace.mel[m];
+                }
+            }
+            if (timer != null) {
+                timer.finish();
+            }
+        });
+
+        if (instrumentation != null) {
+            instrumentation.report(nFrames);
+        }
+        return result;
+    }
+
+    /**
+     * Compute mel-frequency cepstral coefficients.
+     * <p>
+     * The first pass stores the dB-scaled mel frames and tracks their maximum; the second pass
+     * applies the global {@code topDB} clipping and the DCT.
+     *
+     * @param y     Input signal.
+     * @param nMfcc Number of coefficients.
+     * @return Coefficients of shape [nMfcc][frames] (or [frames][nMfcc], see {@link #getLayout()}).
+     */
+    public double[][] mfcc(double[] y, int nMfcc) {
+        return mfcc(SampleSource.of(y), nMfcc);
+    }
+
+    /**
+     * Compute mel-frequency cepstral coefficients of a lazily decoded signal.
+     *
+     * @param source Input signal.
+     * @param nMfcc  Number of coefficients.
+     * @return Coefficients of shape [nMfcc][frames] (or [frames][nMfcc], see {@link #getLayout()}).
+     */
+    public double[][] mfcc(SampleSource source, int nMfcc) {
+        return mfcc(source, nMfcc, 0, Delta.DEFAULT_WIDTH);
+    }
+
+    /**
+     * Compute mel-frequency cepstral coefficients of a lazily decoded signal followed by their
+     * deltas, as {@code np.vstack([mfcc, delta(mfcc), delta(mfcc, order=2)])}. The deltas are
+     * computed in place in the rows of the output after the coefficients.
+     *
+     * @param source     Input signal.
+     * @param nMfcc      Number of coefficients.
+     * @param deltaOrder Highest delta order, 0 to 2.
+     * @param deltaWidth Odd delta window width, at least 3 and at most the number of frames.
+     * @return Coefficients of shape [nMfcc * (deltaOrder + 1)][frames] (or transposed, see {@link #getLayout()}).
+     */
+    public double[][] mfcc(SampleSource source, int nMfcc, int deltaOrder, int deltaWidth) {
+        Delta.checkOrder(deltaOrder);
+        Delta.checkWidth(deltaWidth);
+        int nMels = plan.getNMels();
+        int nFrames = frameCount(source.getLength(), plan.getNFft(), plan.getHopLength(), true);
+        Instrumentation instrumentation = instrument("mfcc;nMfcc=" + nMfcc + ";deltaOrder=" + deltaOrder + ";deltaWidth=" + deltaWidth + ";precision=DOUBLE");
+        Columns melDB = columns(new double[nFrames * nMels], nMels);
+        boolean frameMajor = layout == Layout.FRAME_MAJOR;
+        int rows = nMfcc * (deltaOrder + 1);
+        double[][] result = frameMajor ? new double[nFrames][rows] : new double[rows][nFrames];
+
+        // 1
+        double maxDB = melDBPass(source, nFrames, melDB, instrumentation);
+
+        // 2
+        cepstra(melDB, nFrames, maxDB, nMfcc, columns(result, nMfcc, layout), instrumentation);
+
+        // 3
+        if (deltaOrder > 0) {
+            Instrumentation.Timer timer = instrumentation == null ? null : instrumentation.timer();
+            Delta.fill(result, nMfcc, deltaOrder, deltaWidth, layout);
+            if (instrumentation != null) {
+                instrumentation.stage(Stage.DELTA, timer);
+            }
+        }
+
+        if (instrumentation != null) {
+            instrumentation.report(nFrames);
+        }
+        return result;
+    }
+
+    /**
+     * Compute a mel spectrogram into an off-heap matrix, one column per frame, so that heap
+     * usage does not grow with the signal length. The pipeline layout does not apply.
+     *
+     * @param source Input signal.
+     * @param mel    Output mel spectrogram of shape [nMels][frames].
+     */
+    public void melSpectrogram(SampleSource source, OffHeapMatrix mel) {
+        int nFrames = frameCount(source.getLength(), plan.getNFft(), plan.getHopLength(), true);
+        Instrumentation instrumentation = instrument("mel;precision=DOUBLE;output=offHeap");
+        mel.checkShape(plan.getNMels(), nFrames);
+
+        ParallelFrames.forEach(nFrames, executor, ParallelFrames.DEFAULT_THRESHOLD, (from, to) -> {
+            Workspace workspace = workspace(plan);
+            Instrumentation.Timer timer = instrumentation == null ? null : instrumentation.timer();
+            for (int t = from; t < to; t++) {
+                melFrame(source, t, workspace, timer);
+                mel.setColumn(t, workspace.mel);
+            }
+            if (timer != null) {
+                timer.finish();
+            }
+        });
+
+        if (instrumentation != null) {
+            instrumentation.report(nFrames);
+        }
+    }
+
+    /**
+     * Start measuring a call, if a listener is set.
+     *
+     * @param call Feature and parameters of the call, used when the pipeline has no configuration.
+     * @return The measurements, or null if nothing is measured.
+     */
+    private Instrumentation instrument(String call) {
+        if (listener == null) {
+            return null;
+        }
+        String key = configuration;
+        if (key == null) {
+            key = plan + ";feature=" + call + ";layout=" + layout + ";logMaxError=" + (log == null ? 0 : log.getMaxError());
+        }
+        return Instrumentation.start(listener, key);
+    }
+
+    /**
+     * Compute mel-frequency cepstral coefficients into an off-heap matrix, one column per frame.
+     * The dB-scaled mel frames of the first pass are kept in a temporary off-heap matrix (see
+     * {@link OffHeapMatrix#allocate(int, long)}). The pipeline layout does not apply.
+     *
+     * @param source Input signal.
+     * @param nMfcc  Number of coefficients.
+     * @param mfcc   Output coefficients of shape [nMfcc][frames].
+     */
+    public void mfcc(SampleSource source, int nMfcc, OffHeapMatrix mfcc) {
+        int nMels = plan.getNMels();
+        int nFrames = frameCount(source.getLength(), plan.getNFft(), plan.getHopLength(), true);
+        Instrumentation instrumentation = instrument("mfcc;nMfcc=" + nMfcc + ";precision=DOUBLE;output=offHeap");
+        mfcc.checkShape(nMfcc, nFrames);
+
+        try (OffHeapMatrix melDB = OffHeapMatrix.allocate(nMels, nFrames)) {
+            Columns melDBColumns = columns(melDB);
+
+            // 1
+            double maxDB = melDBPass(source, nFrames, melDBColumns, instrumentation);
+
+            // 2
+            cepstra(melDBColumns, nFrames, maxDB, nMfcc, columns(mfcc), instrumentation);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (instrumentation != null) {
+            instrumentation.report(nFrames);
+        }
+    }
+
+    /**
+     * Compute a mel spectrogram in single precision.
+     * <p>
+     * Window, FFT, power and mel projection run in float arithmetic. The mel energies match
+     * librosa to within 1e-5 relative.
+     *
+     * @param y Input signal.
+     * @return Mel spectrogram of shape [nMels][frames] (or [frames][nMels], see {@link #getLayout()}).
+     */
+    public float[][] melSpectrogram(float[] y) {
+        return melSpectrogramFloat(SampleSource.of(y));
+    }
+
+    /**
+     * Compute a mel spectrogram of a lazily decoded signal in single precision.
+     *
+     * @param source Input signal.
+     * @return Mel spectrogram of shape [nMels][frames] (or [frames][nMels], see {@link #getLayout()}).
+     */
+    public float[][] melSpectrogramFloat(SampleSource source) {
+        int nMels = plan.getNMels();
+        int nFrames = frameCount(source.getLength(), plan.getNFft(), plan.getHopLength(), true);
+        Instrumentation instrumentation = instrument("mel;precision=FLOAT");
+        boolean frameMajor = layout == Layout.FRAME_MAJOR;
+        float[][] result = frameMajor ? new float[nFrames][nMels] : new float[nMels][nFrames];
+
+        ParallelFrames.forEach(nFrames, executor, ParallelFrames.DEFAULT_THRESHOLD, (from, to) -> {
+            FloatWorkspace workspace = floatWorkspace(plan);
+            Instrumentation.Timer timer = instrumentation == null ? null : instrumentation.timer();
+            for (int t = from; t < to; t++) {
+                melFrame(source, t, workspace, timer);
+                if (frameMajor) {
+                    System.arraycopy(workspace.mel, 0, result[t], 0, nMels);
+                    continue;
+                }
+                for (int m = 0; m < nMels; m++) {
+                    result[m][t] = workspace.mel[m];
+                }
+            }
+            if (timer != null) {
+                timer.finish();
+            }
+        });
+
+        if (instrumentation != null) {
+            instrumentation.report(nFrames);
+        }
+        return result;
+    }
+
+    /**
+     * Compute mel-frequency cepstral coefficients in single precision.
+     * <p>
+     * The spectral stages and the DCT run in float arithmetic; logarithms are evaluated in double
+     * precision and rounded once. The coefficients match librosa to within 1e-3 absolute for
+     * signals normalized to [-1, 1].
+     *
+     * @param y     Input signal.
+     * @param nMfcc Number of coefficients.
+     * @return Coefficients of shape [nMfcc][frames] (or [frames][nMfcc], see {@link #getLayout()}).
+     */
+    public float[][] mfcc(float[] y, int nMfcc) {
+        return mfccFloat(SampleSource.of(y), nMfcc);
+    }
+
+    /**
+     * Compute mel-frequency cepstral coefficients of a lazily decoded signal in single precision.
+     *
+     * @param source Input signal.
+     * @param nMfcc  Number of coefficients.
+     * @return Coefficients of shape [nMfcc][frames] (or [frames][nMfcc], see {@link #getLayout()}).
+     */
+    public float[][] mfccFloat(SampleSource source, int nMfcc) {
+        return mfccFloat(source, nMfcc, 0, Delta.DEFAULT_WIDTH);
+    }
+
+    /**
+     * Compute mel-frequency cepstral coefficients of a lazily decoded signal followed by their
+     * deltas in single precision. The delta filters accumulate in double precision.
+     *
+     * @param source     Input signal.
+     * @param nMfcc      Number of coefficients.
+     * @param deltaOrder Highest delta order, 0 to 2.
+     * @param deltaWidth Odd delta window width, at least 3 and at most the number of frames.
+     * @return Coefficients of shape [nMfcc * (deltaOrder + 1)][frames] (or transposed, see {@link #getLayout()}).
+     */
+    public float[][] mfccFloat(SampleSource source, int nMfcc, int deltaOrder, int deltaWidth) {
+        Delta.checkOrder(deltaOrder);
+        Delta.checkWidth(deltaWidth);
+        int nMels = plan.getNMels();
+        int nFrames = frameCount(source.getLength(), plan.getNFft(), plan.getHopLength(), true);
+        Instrumentation instrumentation = instrument("mfcc;nMfcc=" + nMfcc + ";deltaOrder=" + deltaOrder + ";deltaWidth=" + deltaWidth + ";precision=FLOAT");
+        float[] melDB = new float[nFrames * nMels];
+        boolean frameMajor = layout == Layout.FRAME_MAJOR;
+        int rows = nMfcc * (deltaOrder + 1);
+        float[][] result = frameMajor ? new float[nFrames][rows] : new float[rows][nFrames];
+
+        // 1
+        double maxDB = framePass(nFrames, instrumentation, () -> {
+            FloatWorkspace workspace = floatWorkspace(plan);
+            return (t, timer) -> {
+                melFrame(source, t, workspace, timer);
+                return melDBFrame(t, workspace, melDB, timer);
+            };
+        });
+
+        // 2
+        float threshold = (float) (maxDB - TOP_DB);
+        Dct dct = plan.dct(nMfcc);
+        framePass(nFrames, instrumentation, () -> {
+            FloatWorkspace workspace = floatWorkspace(plan);
+            return (t, timer) -> {
+                cepstrum(t, workspace, melDB, threshold, dct, timer);
+                if (frameMajor) {
+                    System.arraycopy(workspace.coefficients, 0, result[t], 0, nMfcc);
+                } else {
+                    for (int k = 0; k < nMfcc; k++) {
+                        result[k][t] = workspace.coefficients[k];
+                    }
+                }
+                return Double.NEGATIVE_INFINITY;
+            };
+        });
+
+        // 3
+        if (deltaOrder > 0) {
+            Instrumentation.Timer timer = instrumentation == null ? null : instrumentation.timer();
+            Delta.fill(result, nMfcc, deltaOrder, deltaWidth, layout);
+            if (instrumentation != null) {
+                instrumentation.stage(Stage.DELTA, timer);
+            }
+        }
+
+        if (instrumentation != null) {
+            instrumentation.report(nFrames);
+        }
+        return result;
+    }
+
+    /**
+     * Compute the mel energies of one frame into {@code workspace.mel}.
+     *
+     * @param source    Input signal.
+     * @param t         Frame index.
+     * @param workspace Scratch buffers.
+     * @param timer     Stage clock of the frame range, or null.
+     */
+    void melFrame(SampleSource source, int t, Workspace workspace, Instrumentation.Timer timer) {
+        source.read((long) t * plan.getHopLength() - plan.getNFft() / 2, workspace.frame);
+        powerFrame(workspace, timer);
+        plan.melFilter().apply(workspace.power, workspace.mel);
+        if (timer != null) {
+            timer.mark(Stage.MEL);
+        }
+    }
+
+    /**
+     * Window and transform the frame read into {@code workspace.frame} and compute its power
+     * spectrum into {@code workspace.power}. The frame buffer is overwritten.
+     *
+     * @param workspace Scratch buffers.
+     * @param timer     Stage clock of the frame range, or null.
+     */
+    void powerFrame(Workspace workspace, Instrumentation.Timer timer) {
+        int nFft = plan.getNFft();
+        double[] frame = workspace.frame;
+
+        KERNELS.multiply(frame, plan.window(), nFft);
+
+        plan.fft().forward(frame);
+        if (timer != null) {
+            timer.mark(Stage.STFT);
+        }
+        powerSpectrum(frame, workspace.power);
+        if (timer != null) {
+            timer.mark(Stage.POWER);
+        }
+    }
+
+    /**
+     * First MFCC pass: compute the dB-scaled mel frames of a signal.
+     *
+     * @param source          Input signal.
+     * @param nFrames         Number of frames.
+     * @param melDB           Output dB-scaled mel frames.
+     * @param instrumentation Measurements of the call, or null.
+     * @return The largest dB value of all frames.
+     */
+    double melDBPass(SampleSource source, int nFrames, Columns melDB, Instrumentation instrumentation) {
+        return framePass(nFrames, instrumentation, () -> {
+            Workspace workspace = workspace(plan);
+            return (t, timer) -> {
+                melFrame(source, t, workspace, timer);
+                return melDBFrame(t, workspace, melDB, timer);
+            };
+        });
+    }
+
+    /**
+     * First MFCC pass on one frame: convert the mel energies in {@code workspace.mel} to dB in
+     * place and store them as frame t of {@code melDB}.
+     *
+     * @param t         Frame index.
+     * @param workspace Scratch buffers holding the mel energies of the frame.
+     * @param melDB     Output dB-scaled mel frames.
+     * @param timer     Stage clock of the frame range, or null.
+     * @return The largest dB value of the frame.
+     */
+    double melDBFrame(int t, Workspace workspace, Columns melDB, Instrumentation.Timer timer) {
+        double[] mel = workspace.mel;
+        powerToDB(mel, log);
+        double frameMax = Double.NEGATIVE_INFINITY;
+        for (double value : mel) {
+            if (value > frameMax) {
+                frameMax = value;
+            }
+        }
+        melDB.set(t, mel);
+        if (timer != null) {
+            timer.mark(Stage.POWER_TO_DB);
+        }
+        return frameMax;
+    }
+
+    /**
+     * Second MFCC pass: clip the dB-scaled mel frames of the first pass at
+     * {@code maxDB - topDB} and transform them into the coefficients.
+     *
+     * @param melDB           dB-scaled mel frames.
+     * @param nFrames         Number of frames.
+     * @param maxDB           Largest dB value of all frames.
+     * @param nMfcc           Number of coefficients.
+     * @param result          Output coefficients.
+     * @param instrumentation Measurements of the call, or null.
+     */
+    void cepstra(Columns melDB, int nFrames, double maxDB, int nMfcc, Columns result, Instrumentation instrumentation) {
+        double threshold = maxDB - TOP_DB;
+        Dct dct = plan.dct(nMfcc);
+        framePass(nFrames, instrumentation, () -> {
+            Workspace workspace = workspace(plan);
+            double[] mel = workspace.mel;
+            double[] coefficients = workspace.coefficients(nMfcc);
+            return (t, timer) -> {
+                melDB.get(t, mel);
+                for (int m = 0; m < mel.length; m++) {
+                    mel[m] = Math.max(mel[m], threshold);
+                }
+                if (timer != null) {
+                    timer.mark(Stage.POWER_TO_DB);
+                }
+                dct.transform(mel, coefficients, workspace.dctWork);
+                result.set(t, coefficients);
+                if (timer != null) {
+                    timer.mark(Stage.DCT);
+                }
+                return Double.NEGATIVE_INFINITY;
+            };
+        });
+    }
+
+    /**
+     * Run one pass over all frames, splitting them across the executor. Each frame range gets
+     * its own stage clock and the frame function of its thread.
+     *
+     * @param nFrames         Number of frames.
+     * @param instrumentation Measurements of the call, or null.
+     * @param range           Creates the frame function of a range, on the thread running it.
+     * @return The largest value returned by the frame function.
+     */
+    double framePass(int nFrames, Instrumentation instrumentation, Supplier<FrameFunction> range) {
+        DoubleAccumulator max = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+        ParallelFrames.forEach(nFrames, executor, ParallelFrames.DEFAULT_THRESHOLD, (from, to) -> {
+            FrameFunction function = range.get();
+            Instrumentation.Timer timer = instrumentation == null ? null : instrumentation.timer();
+            double rangeMax = Double.NEGATIVE_INFINITY;
+            for (int t = from; t < to; t++) {
+                double frameMax = function.apply(t, timer);
+                if (frameMax > rangeMax) {
+                    rangeMax = frameMax;
+                }
+            }
+            if (timer != null) {
+                timer.finish();
+            }
+            max.accumulate(rangeMax);
+        });
+        return max.get();
+    }
+
+    /**
+     * Work on one frame of a pass.
+     */
+    interface FrameFunction {
+        /**
+         * Process frame t.
+         *
+         * @param t     Frame index.
+         * @param timer Stage clock of the frame range, or null.
+         * @return The largest value of the frame, or negative infinity if the pass has none.
+         */
+        double apply(int t, Instrumentation.Timer timer);
+    }
+
+    /**
+     * Storage of a matrix frame by frame: a flat heap array, a heap matrix in either layout or
+     * an off-heap matrix. Distinct frames may be accessed concurrently.
+     */
+    interface Columns {
+        /**
+         * Copy frame t into column.
+         *
+         * @param t      Frame index.
+         * @param column Output of length rows.
+         */
+        void get(int t, double[] column);
+
+        /**
+         * Copy the first rows values of column into frame t.
+         *
+         * @param t      Frame index.
+         * @param column Values of length rows.
+         */
+        void set(int t, double[] column);
+    }
+
+    /**
+     * Frames stored one after the other in a flat array.
+     *
+     * @param values Array of rows values per frame.
+     * @param rows   Values per frame.
+     * @return The frames.
+     */
+    static Columns columns(double[] values, int rows) {
+        return new Columns() {
+            @Override
+            public void get(int t, double[] column) {
+                System.arraycopy(values, t * rows, column, 0, rows);
+            }
+
+            @Override
+            public void set(int t, double[] column) {
+                System.arraycopy(column, 0, values, t * rows, rows);
+            }
+        };
+    }
+
+    /**
+     * Frames of the first rows rows (or columns, in frame-major layout) of a heap matrix.
+     *
+     * @param matrix Matrix of shape [at least rows][frames] or [frames][at least rows].
+     * @param rows   Values per frame.
+     * @param layout Layout of the matrix.
+     * @return The frames.
+     */
+    static Columns columns(double[][] matrix, int rows, Layout layout) {
+        if (layout == Layout.FRAME_MAJOR) {
+            return new Columns() {
+                @Override
+                public void get(int t, double[] column) {
+                    System.arraycopy(matrix[t], 0, column, 0, rows);
+                }
+
+                @Override
+                public void set(int t, double[] column) {
+                    System.arraycopy(column, 0, matrix[t], 0, rows);
+                }
+            };
+        }
+        return new Columns() {
+            @Override
+            public void get(int t, double[] column) {
+                for (int i = 0; i < rows; i++) {
+                    column[i] = matrix[i][t];
+                }
+            }
+
+            @Override
+            public void set(int t, double[] column) {
+                for (int i = 0; i < rows; i++) {
+                    matrix[i][t] = column[i];
+                }
+            }
+        };
+    }
+
+    /**
+     * Columns of an off-heap matrix.
+     *
+     * @param matrix Matrix with one column per frame.
+     * @return The frames.
+     */
+    static Columns columns(OffHeapMatrix matrix) {
+        return new Columns() {
+            @Override
+            public void get(int t, double[] column) {
+                matrix.getColumn(t, column);
+            }
+
+            @Override
+            public void set(int t, double[] column) {
+                matrix.setColumn(t, column);
+            }
+        };
+    }
+
+    /**
+     * Compute the mel energies of one frame into {@code workspace.mel} in single precision.
+     *
+     * @param source    Input signal.
+     * @param t         Frame index.
+     * @param workspace Scratch buffers.
+     * @param timer     Stage clock of the frame range, or null.
+     */
+    void melFrame(SampleSource source, int t, FloatWorkspace workspace, Instrumentation.Timer timer) {
+        source.read((long) t * plan.getHopLength() - plan.getNFft() / 2, workspace.frame);
+        powerFrame(workspace, timer);
+        plan.melFilter().apply(workspace.power, workspace.mel);
+        if (timer != null) {
+            timer.mark(Stage.MEL);
+        }
+    }
+
+    /**
+     * Window and transform the frame read into {@code workspace.frame} and compute its power
+     * spectrum into {@code workspace.power} in single precision. The frame buffer is overwritten.
+     *
+     * @param workspace Scratch buffers.
+     * @param timer     Stage clock of the frame range, or null.
+     */
+    void powerFrame(FloatWorkspace workspace, Instrumentation.Timer timer) {
+        Spectrum.windowedFft(workspace.frame, plan.floatWindow(), plan.floatFft());
+        if (timer != null) {
+            timer.mark(Stage.STFT);
+        }
+        Spectrum.power(workspace.frame, workspace.power);
+        if (timer != null) {
+            timer.mark(Stage.POWER);
+        }
+    }
+
+    /**
+     * First MFCC pass on one frame in single precision: convert the mel energies in
+     * {@code workspace.mel} to dB and store them as frame t of {@code melDB}. Logarithms are
+     * evaluated in double precision and rounded once.
+     *
+     * @param t         Frame index.
+     * @param workspace Scratch buffers holding the mel energies of the frame.
+     * @param melDB     Output dB-scaled mel frames, stored one after the other.
+     * @param timer     Stage clock of the frame range, or null.
+     * @return The largest dB value of the frame.
+     */
+    double melDBFrame(int t, FloatWorkspace workspace, float[] melDB, Instrumentation.Timer timer) {
+        float[] mel = workspace.mel;
+        int offset = t * mel.length;
+        float frameMax = Float.NEGATIVE_INFINITY;
+        for (int m = 0; m < mel.length; m++) {
+            float value = (float) powerToDB(mel[m], log);
+            melDB[offset + m] = value;
+            if (value > frameMax) {
+                frameMax = value;
+            }
+        }
+        if (timer != null) {
+            timer.mark(Stage.POWER_TO_DB);
+        }
+        return frameMax;
+    }
+
+    /**
+     * Second MFCC pass on one frame in single precision: clip frame t of {@code melDB} at the
+     * threshold and transform it into {@code workspace.coefficients}.
+     *
+     * @param t         Frame index.
+     * @param workspace Scratch buffers.
+     * @param melDB     dB-scaled mel frames, stored one after the other.
+     * @param threshold Lowest dB value kept.
+     * @param dct       Transform to the coefficients.
+     * @param timer     Stage clock of the frame range, or null.
+     */
+    void cepstrum(int t, FloatWorkspace workspace, float[] melDB, float threshold, Dct dct, Instrumentation.Timer timer) {
+        float[] mel = workspace.mel;
+        int offset = t * mel.length;
+        for (int m = 0; m < mel.length; m++) {
+            mel[m] = Math.max(melDB[offset + m], threshold);
+        }
+        if (timer != null) {
+            timer.mark(Stage.POWER_TO_DB);
+        }
+        dct.transform(mel, workspace.coefficients, workspace.dctWork);
+        if (timer != null) {
+            timer.mark(Stage.DCT);
+        }
+    }
+
+    /**
+     * Convert a power value to decibels with the MFCC reference and threshold.
+     *
+     * @param power Power value.
+     * @param log   Approximate logarithm, or null for {@link Math#log10}.
+     * @return Value in dB.
+     */
+    static double powerToDB(double power, FastLog log) {
+        double value = Math.max(AMIN, power) / REF;
+        return 10 * (log == null ? Math.log10(value) : log.log10(value));
+    }
+
+    /**
+     * Convert power values to decibels in place with the MFCC reference and threshold.
+     *
+     * @param values Power values, overwritten with dB values.
+     * @param log    Approximate logarithm, or null for {@link Math#log10}.
+     */
+    static void powerToDB(double[] values, FastLog log) {
+        if (log == null) {
+            KERNELS.powerToDB(values, values, values.length, REF, AMIN);
+            return;
+        }
+        for (int m = 0; m < values.length; m++) {
+            values[m] = 10 * log.log10(Math.max(AMIN, values[m]) / REF);
+        }
+    }
+
+    /**
+     * Compute the power spectrum from separate real and imaginary parts.
+     *
+     * @param real  Real parts.
+     * @param imag  Imaginary parts.
+     * @param power Output power.
+     */
+    static void powerSpectrum(double[] real, double[] imag, double[] power) {
+        KERNELS.power(real, imag, power, power.length);
+    }
+
+    /**
+     * Compute the power spectrum from a packed real FFT result.
+     *
+     * @param packed Packed spectrum of length n (see {@link RealFFT}).
+     * @param power  Output power, length n / 2 + 1.
+     */
+    static void powerSpectrum(double[] packed, double[] power) {
+        KERNELS.power(packed, power);
+    }
+
+    /**
+     * Round a matrix to single precision.
+     *
+     * @param x Input matrix.
+     * @return Matrix in single precision.
+     */
+    static float[][] narrow(double[][] x) {
+        float[][] result = new float[x.length][];
+        for (int i = 0; i < x.length; i++) {
+            result[i] = new float[x[i].length];
+            for (int j = 0; j < x[i].length; j++) {
+                result[i][j] = (float) x[i][j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Widen a single-precision matrix.
+     *
+     * @param x Input matrix.
+     * @return Matrix in double precision.
+     */
+    static double[][] widen(float[][] x) {
+        double[][] result = new double[x.length][];
+        for (int i = 0; i < x.length; i++) {
+            result[i] = new double[x[i].length];
+            for (int j = 0; j < x[i].length; j++) {
+                result[i][j] = x[i][j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the scratch buffers of the current thread, reallocating them only when the
+     * plan dimensions change. A workspace is used by one frame range at a time.
+     *
+     * @param plan Extraction plan.
+     * @return Scratch buffers sized for the plan.
+     */
+    static Workspace workspace(FeaturePlan plan) {
+        Workspace workspace = WORKSPACE.get();
+        if (workspace == null || workspace.frame.length != plan.getNFft() || workspace.mel.length != plan.getNMels()) {
+            workspace = new Workspace(plan);
+            WORKSPACE.set(workspace);
+        }
+        return workspace;
+    }
+
+    /**
+     * Per-thread scratch buffers of one frame.
+     */
+    static final class Workspace {
+        final double[] frame;
+        final double[] power;
+        final double[] mel;
+        final double[] dctWork;
+        private double[] coefficients = new double[0];
+
+        Workspace(FeaturePlan plan) {
+            frame = new double[plan.getNFft()];
+            power = new double[plan.getNFft() / 2 + 1];
+            mel = new double[plan.getNMels()];
+            dctWork = new double[plan.getNMels()];
+        }
+
+        /**
+         * Returns the coefficient buffer, of exactly nMfcc values so that it can be copied as a
+         * whole column.
+         *
+         * @param nMfcc Number of coefficients.
+         * @return The buffer.
+         */
+        double[] coefficients(int nMfcc) {
+            if (coefficients.length != nMfcc) {
+                coefficients = new double[nMfcc];
+            }
+            return coefficients;
+        }
+    }
+
+    /**
+     * Returns the single-precision scratch buffers of the current thread.
+     *
+     * @param plan Extraction plan.
+     * @return Scratch buffers sized for the plan.
+     */
+    static FloatWorkspace floatWorkspace(FeaturePlan plan) {
+        FloatWorkspace workspace = FLOAT_WORKSPACE.get();
+        if (workspace == null || workspace.frame.length != plan.getNFft() || workspace.mel.length != plan.getNMels()) {
+            workspace = new FloatWorkspace(plan);
+            FLOAT_WORKSPACE.set(workspace);
+        }
+        return workspace;
+    }
+
+    /**
+     * Per-thread single-precision scratch buffers of one frame.
+     */
+    static final class FloatWorkspace {
+        final float[] frame;
+        final float[] power;
+        final float[] mel;
+        final float[] coefficients;
+        final float[] dctWork;
+
+        FloatWorkspace(FeaturePlan plan) {
+            frame = new float[plan.getNFft()];
+            power = new float[plan.getNFft() / 2 + 1];
+            mel = new float[plan.getNMels()];
+            coefficients = new float[plan.getNMels()];
+            dctWork = new float[plan.getNMels()];
+        }
+    }
+}
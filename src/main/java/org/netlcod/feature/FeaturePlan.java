@@ -0,0 +1,300 @@
+package org.netlcod.feature;
+
+import org.netlcod.filter.SparseMelFilter;
+import org.netlcod.spectrum.ComplexSpectrogram;
+import org.netlcod.spectrum.Dct;
+import org.netlcod.spectrum.FloatRealFFT;
+import org.netlcod.spectrum.Layout;
+import org.netlcod.spectrum.RealFFT;
+import org.netlcod.spectrum.Spectrum;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.netlcod.filter.Filter.applyMelFilters;
+import static org.netlcod.filter.Filter.melSparse;
+import static org.netlcod.spectrum.Spectrum.stftSpectrogram;
+
+/**
+ * Precomputed, immutable state of a mel/MFCC extraction: the analysis window, the FFT engine,
+ * the mel filter bank and the DCT engines (built on first use for each number of coefficients).
+ * The single-precision window and FFT engine are built on first single-precision use.
+ * <p>
+ * Plans are cached process-wide (see {@link #of}), so repeated extraction with the same
+ * configuration only pays for the signal-dependent work.
+ */
+public final class FeaturePlan {
+    /**
+     * Maximum number of plans kept in the process-wide cache.
+     */
+    public static final int CACHE_SIZE = 64;
+
+    private static final Map<Key, FeaturePlan> CACHE = new LinkedHashMap<Key, FeaturePlan>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, FeaturePlan> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final Key key;
+    private final double[] window;
+    private final RealFFT fft;
+    private volatile FloatTables floatTables;
+    private final SparseMelFilter melBasis;
+    private final ConcurrentMap<Integer, Dct> dct = new ConcurrentHashMap<>();
+
+    private FeaturePlan(Key key) {
+        this.key = key;
+        this.window = Spectrum.window("hann", key.nFft, key.nFft);
+        this.fft = new RealFFT(key.nFft);
+        this.melBasis = melSparse(key.sampleRate, key.nFft, key.nMels, key.fMin, key.fMax, key.htk);
+    }
+
+    /**
+     * Returns the plan for the given parameters, building and caching it on first use.
+     *
+     * @param sampleRate Sampling rate of the incoming signal.
+     * @param nFft       Number of FFT components.
+     * @param hopLength  Number of samples between successive frames.
+     * @param nMels      Number of mel bands.
+     * @param fMin       Lowest frequency (in Hz).
+     * @param fMax       Highest frequency (in Hz).
+     * @param htk        If true, use the HTK formula for mel scale conversion.
+     * @return The extraction plan.
+     */
+    public static FeaturePlan of(int sampleRate, int nFft, int hopLength, int nMels, double fMin, double fMax, boolean htk) {
+        Key key = new Key(sampleRate, nFft, hopLength, nMels, fMin, fMax, htk);
+        synchronized (CACHE) {
+            FeaturePlan plan = CACHE.get(key);
+            if (plan != null) {
+                return plan;
+            }
+        }
+
+        FeaturePlan plan = new FeaturePlan(key);
+        synchronized (CACHE) {
+            FeaturePlan existing = CACHE.putIfAbsent(key, plan);
+            return existing != null ? existing : plan;
+        }
+    }
+
+    /**
+     * Remove all plans from the process-wide cache.
+     */
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    public int getSampleRate() {
+        return key.sampleRate;
+    }
+
+    public int getNFft() {
+        return key.nFft;
+    }
+
+    public int getHopLength() {
+        return key.hopLength;
+    }
+
+    public int getNMels() {
+        return key.nMels;
+    }
+
+    public double getFMin() {
+        return key.fMin;
+    }
+
+    public double getFMax() {
+        return key.fMax;
+    }
+
+    public boolean isHtk() {
+        return key.htk;
+    }
+
+    /**
+     * Check whether the plan was built for the given parameters.
+     *
+     * @param sampleRate Sampling rate of the incoming signal.
+     * @param nFft       Number of FFT components.
+     * @param hopLength  Number of samples between successive frames.
+     * @param nMels      Number of mel bands.
+     * @param fMin       Lowest frequency (in Hz).
+     * @param fMax       Highest frequency (in Hz).
+     * @param htk        If true, use the HTK formula for mel scale conversion.
+     * @return true if the parameters match
+     */
+    public boolean matches(int sampleRate, int nFft, int hopLength, int nMels, double fMin, double fMax, boolean htk) {
+        return key.equals(new Key(sampleRate, nFft, hopLength, nMels, fMin, fMax, htk));
+    }
+
+    @Override
+    public String toString() {
+        return "FeaturePlan[sampleRate=" + key.sampleRate
+                + ", nFft=" + key.nFft
+                + ", hopLength=" + key.hopLength
+                + ", nMels=" + key.nMels
+                + ", fMin=" + key.fMin
+                + ", fMax=" + key.fMax
+                + ", htk=" + key.htk + "]";
+    }
+
+    double[] window() {
+        return window;
+    }
+
+    RealFFT fft() {
+        return fft;
+    }
+
+    float[] floatWindow() {
+        return floatTables().window;
+    }
+
+    FloatRealFFT floatFft() {
+        return floatTables().fft;
+    }
+
+    /**
+     * Returns the single-precision window and FFT engine, built on first use so that plans only
+     * used in double precision do not carry them.
+     */
+    private FloatTables floatTables() {
+        FloatTables tables = floatTables;
+        if (tables == null) {
+            tables = new FloatTables(window, key.nFft);
+            floatTables = tables;
+        }
+        return tables;
+    }
+
+    SparseMelFilter melFilter() {
+        return melBasis;
+    }
+
+    /**
+     * Returns the DCT engine computing the first coefficients along the mel axis.
+     *
+     * @param nCoefficients Number of coefficients.
+     * @return the DCT engine
+     */
+    Dct dct(int nCoefficients) {
+        return dct.computeIfAbsent(nCoefficients, k -> new Dct(key.nMels, k));
+    }
+
+    /**
+     * Compute the centered STFT of the signal with the plan's window and FFT engine.
+     *
+     * @param y Input signal.
+     * @return The complex STFT spectrogram.
+     */
+    public ComplexSpectrogram stft(double[] y) {
+        return stftSpectrogram(y, window, fft, key.hopLength, true);
+    }
+
+    /**
+     * Project the power of a spectrogram onto the mel basis.
+     *
+     * @param spectrogram Complex spectrogram with 1 + nFft / 2 bins.
+     * @return Mel spectrogram of shape [nMels][frames].
+     */
+    public double[][] melSpectrogram(ComplexSpectrogram spectrogram) {
+        return applyMelFilters(spectrogram.power(), melBasis);
+    }
+
+    /**
+     * Project the power of a spectrogram onto the mel basis.
+     *
+     * @param spectrogram Complex spectrogram with 1 + nFft / 2 bins.
+     * @param layout      Output layout.
+     * @return Mel spectrogram of shape [nMels][frames] or [frames][nMels].
+     */
+    public double[][] melSpectrogram(ComplexSpectrogram spectrogram, Layout layout) {
+        return applyMelFilters(spectrogram.power(layout), melBasis, layout);
+    }
+
+    /**
+     * Compute the first coefficients of the orthonormal DCT-II along the mel axis.
+     *
+     * @param melSpectrogram Matrix of shape [nMels][frames].
+     * @param nCoefficients  Number of coefficients to keep.
+     * @return Matrix of shape [nCoefficients][frames].
+     */
+    public double[][] dct(double[][] melSpectrogram, int nCoefficients) {
+        return dct(nCoefficients).transform(melSpectrogram);
+    }
+
+    /**
+     * Compute the first coefficients of the orthonormal DCT-II along the mel axis.
+     *
+     * @param melSpectrogram Matrix of shape [nMels][frames] or [frames][nMels].
+     * @param nCoefficients  Number of coefficients to keep.
+     * @param layout         Layout of the input and the output.
+     * @return Matrix of shape [nCoefficients][frames] or [frames][nCoefficients].
+     */
+    public double[][] dct(double[][] melSpectrogram, int nCoefficients, Layout layout) {
+        return dct(nCoefficients).transform(melSpectrogram, layout);
+    }
+
+    private static final class FloatTables {
+        private final float[] window;
+        private final FloatRealFFT fft;
+
+        FloatTables(double[] window, int nFft) {
+            this.window = new float[window.length];
+            for (int i = 0; i < window.length; i++) {
+                this.window[i] = (float) window[i];
+            }
+            this.fft = new FloatRealFFT(nFft);
+        }
+    }
+
+    private static final class Key {
+        private final int sampleRate;
+        private final int nFft;
+        private final int hopLength;
+        private final int nMels;
+        private final double fMin;
+        private final double fMax;
+        private final boolean htk;
+
+        private Key(int sampleRate, int nFft, int hopLength, int nMels, double fMin, double fMax, boolean htk) {
+            this.sampleRate = sampleRate;
+            this.nFft = nFft;
+            this.hopLength = hopLength;
+            this.nMels = nMels;
+            this.fMin = fMin;
+            this.fMax = fMax;
+            this.htk = htk;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return sampleRate == other.sampleRate
+                    && nFft == other.nFft
+                    && hopLength == other.hopLength
+                    && nMels == other.nMels
+                    && Double.compare(fMin, other.fMin) == 0
+                    && Double.compare(fMax, other.fMax) == 0
+                    && htk == other.htk;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sampleRate, nFft, hopLength, nMels, fMin, fMax, htk);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.netlcod.feature;
+
+/**
+ * Features computed by {@link CompositeFeature}, with the librosa function each one follows.
+ */
+public enum FeatureType {
+    /**
+     * Mel spectrogram ({@code librosa.feature.melspectrogram}), nMels rows.
+     */
+    MEL,
+    /**
+     * Mel-frequency cepstral coefficients ({@code librosa.feature.mfcc}), featureSize rows.
+     */
+    MFCC,
+    /**
+     * Spectral centroid in Hz ({@code librosa.feature.spectral_centroid}), one row.
+     */
+    SPECTRAL_CENTROID,
+    /**
+     * Spectral bandwidth of order 2 in Hz ({@code librosa.feature.spectral_bandwidth}), one row.
+     */
+    SPECTRAL_BANDWIDTH,
+    /**
+     * Roll-off frequency in Hz ({@code librosa.feature.spectral_rolloff}), one row.
+     */
+    SPECTRAL_ROLLOFF,
+    /**
+     * Spectral flatness of the power spectrum ({@code librosa.feature.spectral_flatness}), one row.
+     */
+    SPECTRAL_FLATNESS,
+    /**
+     * Root-mean-square of the unwindowed frames ({@code librosa.feature.rms}), one row.
+     */
+    RMS,
+    /**
+     * Fraction of sign changes in the frames ({@code librosa.feature.zero_crossing_rate}), one row.
+     */
+    ZERO_CROSSING_RATE
+}
@@ -0,0 +1,162 @@
+package org.netlcod.feature;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of stage durations in nanoseconds.
+ * <p>
+ * Values are counted in log-linear buckets, 16 per power of two, so a percentile is returned with
+ * a relative error below 1/16 (about 6%); values below 16 ns are exact. The frames and heap bytes
+ * of the recorded calls are summed alongside.
+ */
+public final class Histogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder totalFrames = new LongAdder();
+    private final AtomicLong allocatedBytes = new AtomicLong(-1);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record one call.
+     *
+     * @param nanos          Duration in nanoseconds.
+     * @param frames         Number of frames processed.
+     * @param allocatedBytes Bytes allocated on the heap, or -1 if not measured.
+     */
+    public void record(long nanos, long frames, long allocatedBytes) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        totalNanos.add(value);
+        totalFrames.add(frames);
+        max.accumulate(value);
+        if (allocatedBytes >= 0) {
+            this.allocatedBytes.accumulateAndGet(allocatedBytes, (sum, bytes) -> Math.max(0, sum) + bytes);
+        }
+    }
+
+    /**
+     * Returns the number of recorded calls.
+     *
+     * @return the number of calls
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the total duration of the recorded calls.
+     *
+     * @return the total duration in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Returns the total number of frames of the recorded calls.
+     *
+     * @return the number of frames
+     */
+    public long getTotalFrames() {
+        return totalFrames.sum();
+    }
+
+    /**
+     * Returns the total heap allocation of the recorded calls.
+     *
+     * @return the allocated bytes, or -1 if allocation was not measured
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * Returns the longest recorded duration.
+     *
+     * @return the maximum in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the median duration.
+     *
+     * @return the 50th percentile in nanoseconds
+     */
+    public long getP50() {
+        return getPercentile(50);
+    }
+
+    /**
+     * Returns the 99th percentile of the durations.
+     *
+     * @return the 99th percentile in nanoseconds
+     */
+    public long getP99() {
+        return getPercentile(99);
+    }
+
+    /**
+     * Returns a percentile of the durations: the upper bound of the bucket holding it, capped
+     * at the maximum.
+     *
+     * @param percentile Percentile in [0, 100].
+     * @return The percentile in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be in [0, 100]: " + percentile);
+        }
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram[count=" + getCount()
+                + ", p50=" + getP50()
+                + ", p99=" + getP99()
+                + ", max=" + getMax()
+                + ", frames=" + getTotalFrames()
+                + ", allocatedBytes=" + getAllocatedBytes() + "]";
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        int sub = (int) (value >>> exponent) - SUB_BUCKETS;
+        return (exponent + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << exponent) - 1;
+    }
+}
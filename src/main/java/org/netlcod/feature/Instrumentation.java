@@ -0,0 +1,144 @@
+package org.netlcod.feature;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measurements of one extraction call for a {@link PipelineListener}.
+ * <p>
+ * Every frame range gets its own {@link Timer}, which is only touched by the thread running the
+ * range; the timers are merged when the range ends and reported once the call returns.
+ */
+final class Instrumentation {
+    private static final Stage[] STAGES = Stage.values();
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private final PipelineListener listener;
+    private final String configuration;
+    private final Thread caller = Thread.currentThread();
+    private final long start = System.nanoTime();
+    private final long startAllocated = allocatedBytes();
+    private final AtomicLongArray nanos = new AtomicLongArray(STAGES.length);
+    private final AtomicLongArray allocated = new AtomicLongArray(STAGES.length);
+    private final LongAdder workerAllocated = new LongAdder();
+
+    private Instrumentation(PipelineListener listener, String configuration) {
+        this.listener = listener;
+        this.configuration = configuration;
+        for (int i = 0; i < STAGES.length; i++) {
+            allocated.set(i, -1);
+        }
+    }
+
+    /**
+     * Start measuring an extraction call.
+     *
+     * @param listener      Listener, or null to measure nothing.
+     * @param configuration Configuration the costs are reported under.
+     * @return The measurements, or null if the listener is null.
+     */
+    static Instrumentation start(PipelineListener listener, String configuration) {
+        return listener == null ? null : new Instrumentation(listener, configuration);
+    }
+
+    /**
+     * Start timing a frame range on the current thread.
+     *
+     * @return The timer.
+     */
+    Timer timer() {
+        return new Timer();
+    }
+
+    /**
+     * Time a whole stage run by the calling thread, including its heap allocations.
+     *
+     * @param stage Stage that just ended.
+     * @param timer Timer started when the stage began.
+     */
+    void stage(Stage stage, Timer timer) {
+        long now = System.nanoTime();
+        long bytes = allocatedBytes();
+        nanos.addAndGet(stage.ordinal(), now - timer.last);
+        if (bytes >= 0) {
+            long previous = Math.max(0, allocated.get(stage.ordinal()));
+            allocated.set(stage.ordinal(), previous + bytes - timer.lastAllocated);
+        }
+        timer.last = now;
+        timer.lastAllocated = bytes;
+    }
+
+    /**
+     * Report every stage that ran and the total of the call.
+     *
+     * @param frames Number of frames of the call.
+     */
+    void report(long frames) {
+        long total = System.nanoTime() - start;
+        for (int i = 0; i < STAGES.length - 1; i++) {
+            long stageNanos = nanos.get(i);
+            if (stageNanos > 0) {
+                listener.stageCompleted(configuration, STAGES[i], frames, stageNanos, allocated.get(i));
+            }
+        }
+        long bytes = allocatedBytes();
+        long totalAllocated = bytes < 0 || startAllocated < 0 ? -1 : bytes - startAllocated + workerAllocated.sum();
+        listener.stageCompleted(configuration, Stage.TOTAL, frames, total, totalAllocated);
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        try {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+                if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                    return sunThreads;
+                }
+            }
+        } catch (LinkageError | SecurityException e) {
+            // Allocation is not measured
+        }
+        return null;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Stage clock of one frame range, confined to one thread.
+     */
+    final class Timer {
+        private final long[] rangeNanos = new long[STAGES.length];
+        private final long startAllocated = allocatedBytes();
+        private long last = System.nanoTime();
+        private long lastAllocated = startAllocated;
+
+        /**
+         * Attribute the time since the previous mark to a stage.
+         *
+         * @param stage Stage that just ended.
+         */
+        void mark(Stage stage) {
+            long now = System.nanoTime();
+            rangeNanos[stage.ordinal()] += now - last;
+            last = now;
+        }
+
+        /**
+         * End the range and merge its times into the call.
+         */
+        void finish() {
+            for (int i = 0; i < rangeNanos.length; i++) {
+                if (rangeNanos[i] != 0) {
+                    nanos.addAndGet(i, rangeNanos[i]);
+                }
+            }
+            if (Thread.currentThread() != caller && startAllocated >= 0) {
+                workerAllocated.add(allocatedBytes() - startAllocated);
+            }
+        }
+    }
+}
@@ -1,37 +1,53 @@
 package org.netlcod.feature;
 
-import org.apache.commons.math3.complex.Complex;
-
-import static org.netlcod.filter.Filter.applyMelFilters;
-import static org.netlcod.filter.Filter.mel;
-import static org.netlcod.spectrum.Spectrum.stft;
+import org.netlcod.io.SampleSource;
+import org.netlcod.spectrum.ComplexSpectrogram;
 
 public class MelFeature extends AudioFeatureConfiguration {
 
     /**
-     * Compute a mel spectrogram.
+     * Compute a mel spectrogram of a single-precision signal.
      *
      * @param y Input signal.
      * @return Array of mel spectrogram.
      */
-    public double[][] extract(double[] y) {
-        Complex[][] spectrogram = stft(y, nFft, hopLength, "hann", nFft, true);
-
-        int winSize = nFft / 2 + 1;
-        int nFrames = y.length / winSize + 1;
-
-        double[][] powerSpectrogram = new double[winSize][nFrames];
-
-        for (int i = 0; i < winSize; i++) {
-            for (int j = 0; j < nFrames; j++) {
-                double real = spectrogram[i][j].getReal();
-                double imag = spectrogram[i][j].getImaginary();
-                powerSpectrogram[i][j] = real * real + imag * imag;
-            }
+    public float[][] extract(float[] y) {
+        FeaturePipeline pipeline = new FeaturePipeline(plan(featureSize), executor, layout, null, listener, metricsKey());
+        if (precision == Precision.DOUBLE) {
+            return FeaturePipeline.narrow(pipeline.melSpectrogram(resampled(SampleSource.of(y))));
         }
+        return pipeline.melSpectrogramFloat(resampled(SampleSource.of(y)));
+    }
 
-        double[][] melFilters = mel(sampleRate, nFft, featureSize, fMin, fMax, false);
+    /**
+     * Compute a mel spectrogram of a lazily decoded signal (e.g. a {@link org.netlcod.io.WavSource}).
+     *
+     * @param source Input signal.
+     * @return Array of mel spectrogram.
+     */
+    public double[][] extract(SampleSource source) {
+        FeaturePipeline pipeline = new FeaturePipeline(plan(featureSize), executor, layout, null, listener, metricsKey());
+        if (precision == Precision.FLOAT) {
+            return FeaturePipeline.widen(pipeline.melSpectrogramFloat(resampled(source)));
+        }
+        return pipeline.melSpectrogram(resampled(source));
+    }
 
-        return applyMelFilters(powerSpectrogram, melFilters, featureSize, nFft);
+    /**
+     * Compute a mel spectrogram from a precomputed STFT.
+     *
+     * @param spectrogram Complex spectrogram with 1 + nFft / 2 bins.
+     * @return Array of mel spectrogram.
+     */
+    public double[][] extract(ComplexSpectrogram spectrogram) {
+        FeaturePlan plan = plan(featureSize);
+        Instrumentation instrumentation = listener == null ? null : Instrumentation.start(listener, fingerprint() + ";input=spectrogram");
+        Instrumentation.Timer timer = instrumentation == null ? null : instrumentation.timer();
+        double[][] melSpectrogram = plan.melSpectrogram(spectrogram, layout);
+        if (instrumentation != null) {
+            instrumentation.stage(Stage.MEL, timer);
+            instrumentation.report(spectrogram.getFrames());
+        }
+        return melSpectrogram;
     }
 }
@@ -1,45 +1,128 @@
 package org.netlcod.feature;
 
-import org.apache.commons.math3.complex.Complex;
-
-import java.util.Arrays;
+import org.netlcod.io.SampleSource;
+import org.netlcod.spectrum.ComplexSpectrogram;
+import org.netlcod.spectrum.Layout;
 
 import static org.netlcod.convert.Convert.powerToDB;
-import static org.netlcod.filter.Filter.applyMelFilters;
-import static org.netlcod.filter.Filter.mel;
-import static org.netlcod.spectrum.Spectrum.dct;
-import static org.netlcod.spectrum.Spectrum.stft;
 
 public class MfccFeature extends AudioFeatureConfiguration {
+    static final int N_MELS = 128;
+
+    private int deltaOrder;
+    private int deltaWidth = Delta.DEFAULT_WIDTH;
 
     /**
-     * Compute mel-frequency cepstral coefficients
+     * Returns the highest order of the deltas appended to the coefficients.
+     *
+     * @return the delta order
+     */
+    public int getDeltaOrder() {
+        return deltaOrder;
+    }
+
+    /**
+     * Sets the highest order of the deltas appended to the coefficients (see {@link Delta}).
+     * With order n the output holds featureSize * (n + 1) rows: the coefficients, then their
+     * deltas, then their delta-deltas.
+     *
+     * @param deltaOrder the delta order, 0 (default), 1 or 2
+     */
+    public void setDeltaOrder(int deltaOrder) {
+        Delta.checkOrder(deltaOrder);
+        this.deltaOrder = deltaOrder;
+    }
+
+    /**
+     * Returns the number of frames the deltas are fitted on.
+     *
+     * @return the delta width
+     */
+    public int getDeltaWidth() {
+        return deltaWidth;
+    }
+
+    /**
+     * Sets the number of frames the deltas are fitted on.
+     *
+     * @param deltaWidth the delta width, odd and at least 3 (default 9)
+     */
+    public void setDeltaWidth(int deltaWidth) {
+        Delta.checkWidth(deltaWidth);
+        this.deltaWidth = deltaWidth;
+    }
+
+    /**
+     * Compute mel-frequency cepstral coefficients of a single-precision signal
      *
      * @param y Input signal.
      * @return Array of mel-frequency cepstral coefficients
      */
-    public double[][] extract(double[] y) {
-        Complex[][] spectrogram = stft(y, nFft, hopLength, "hann", nFft, true);
-
-        int winSize = nFft / 2 + 1;
-        int nFrames = y.length / winSize + 1;
-
-        double[][] powerSpectrogram = new double[winSize][nFrames];
-        for (int i = 0; i < winSize; i++) {
-            for (int j = 0; j < nFrames; j++) {
-                double real = spectrogram[i][j].getReal();
-                double imag = spectrogram[i][j].getImaginary();
-                powerSpectrogram[i][j] = real * real + imag * imag;
-            }
+    public float[][] extract(float[] y) {
+        FeaturePipeline pipeline = new FeaturePipeline(plan(N_MELS), executor, layout, log, listener, metricsKey());
+        if (precision == Precision.DOUBLE) {
+            return FeaturePipeline.narrow(pipeline.mfcc(resampled(SampleSource.of(y)), featureSize, deltaOrder, deltaWidth));
         }
+        return pipeline.mfccFloat(resampled(SampleSource.of(y)), featureSize, deltaOrder, deltaWidth);
+    }
 
-        double[][] melFilters = mel(sampleRate, nFft, 128, fMin, fMax, false);
+    /**
+     * Compute mel-frequency cepstral coefficients of a lazily decoded signal (e.g. a {@link org.netlcod.io.WavSource})
+     *
+     * @param source Input signal.
+     * @return Array of mel-frequency cepstral coefficients
+     */
+    public double[][] extract(SampleSource source) {
+        FeaturePipeline pipeline = new FeaturePipeline(plan(N_MELS), executor, layout, log, listener, metricsKey());
+        if (precision == Precision.FLOAT) {
+            return FeaturePipeline.widen(pipeline.mfccFloat(resampled(source), featureSize, deltaOrder, deltaWidth));
+        }
+        return pipeline.mfcc(resampled(source), featureSize, deltaOrder, deltaWidth);
+    }
 
-        double[][] melSpectrogram = applyMelFilters(powerSpectrogram, melFilters, 128, nFft);
-        melSpectrogram = powerToDB(melSpectrogram, 1.0, 1e-10, 80.0);
+    /**
+     * Compute mel-frequency cepstral coefficients from a precomputed STFT.
+     *
+     * @param spectrogram Complex spectrogram with 1 + nFft / 2 bins.
+     * @return Array of mel-frequency cepstral coefficients
+     */
+    public double[][] extract(ComplexSpectrogram spectrogram) {
+        FeaturePlan plan = plan(N_MELS);
+        Instrumentation instrumentation = listener == null ? null : Instrumentation.start(listener, fingerprint() + ";input=spectrogram");
+        Instrumentation.Timer timer = instrumentation == null ? null : instrumentation.timer();
+        double[][] melSpectrogram = plan.melSpectrogram(spectrogram, layout);
+        if (instrumentation != null) {
+            instrumentation.stage(Stage.MEL, timer);
+        }
+        powerToDB(melSpectrogram, melSpectrogram, FeaturePipeline.REF, FeaturePipeline.AMIN, FeaturePipeline.TOP_DB, log);
+        if (instrumentation != null) {
+            instrumentation.stage(Stage.POWER_TO_DB, timer);
+        }
 
-        double[][] mfcc = dct(melSpectrogram);
+        // The deltas are computed in place in the rows (or columns) after the coefficients
+        int nFrames = spectrogram.getFrames();
+        int rows = featureSize * (deltaOrder + 1);
+        double[][] mfcc = layout == Layout.FRAME_MAJOR ? new double[nFrames][rows] : new double[rows][nFrames];
+        plan.dct(featureSize).transform(melSpectrogram, layout, mfcc);
+        if (instrumentation != null) {
+            instrumentation.stage(Stage.DCT, timer);
+        }
+        if (deltaOrder > 0) {
+            Delta.fill(mfcc, featureSize, deltaOrder, deltaWidth, layout);
+            if (instrumentation != null) {
+                instrumentation.stage(Stage.DELTA, timer);
+            }
+        }
+        if (instrumentation != null) {
+            instrumentation.report(spectrogram.getFrames());
+        }
+        return mfcc;
+    }
 
-        return Arrays.copyOf(mfcc, featureSize);
+    @Override
+    protected String fingerprint() {
+        return super.fingerprint()
+                + ";deltaOrder=" + deltaOrder
+                + ";deltaWidth=" + deltaWidth;
     }
 }
@@ -0,0 +1,26 @@
+package org.netlcod.feature;
+
+/**
+ * Receives the per-stage cost of every extraction call, e.g. to export it to a metrics system
+ * (see {@link PipelineMetrics}).
+ * <p>
+ * After each call the listener receives one event per stage that ran, then one for
+ * {@link Stage#TOTAL}. Stage times are summed over all threads of the call, the total is the
+ * elapsed time of the call. The listener is invoked on the calling thread and must be
+ * thread-safe if extractors are shared. When no listener is set, nothing is measured.
+ */
+public interface PipelineListener {
+    /**
+     * Report the cost of one stage of an extraction call.
+     *
+     * @param configuration  Description of every parameter of the extraction; equal for calls of
+     *                       equally configured extractors (see {@link AudioFeatureConfiguration#fingerprint()}).
+     * @param stage          The stage.
+     * @param frames         Number of frames processed.
+     * @param nanos          Time spent in the stage in nanoseconds.
+     * @param allocatedBytes Bytes allocated on the heap during the stage, or -1 if not measured.
+     *                       Stages interleaved frame by frame are only measured as a whole, in
+     *                       {@link Stage#TOTAL}.
+     */
+    void stageCompleted(String configuration, Stage stage, long frames, long nanos, long allocatedBytes);
+}
@@ -0,0 +1,73 @@
+package org.netlcod.feature;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Listener that aggregates the stage costs of every extraction into one {@link Histogram} per
+ * configuration and stage, for percentiles such as p50 and p99.
+ * <p>
+ * Configurations are identified by the extractor fingerprint (see
+ * {@link AudioFeatureConfiguration#fingerprint()}), which covers the feature type and every
+ * parameter, so only extractors with equal configurations share their histograms. Instances are
+ * thread-safe and can be shared by any number of extractors.
+ */
+public final class PipelineMetrics implements PipelineListener {
+    private final ConcurrentMap<String, ConcurrentMap<Stage, Histogram>> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public void stageCompleted(String configuration, Stage stage, long frames, long nanos, long allocatedBytes) {
+        histograms.computeIfAbsent(configuration, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(stage, s -> new Histogram())
+                .record(nanos, frames, allocatedBytes);
+    }
+
+    /**
+     * Returns the histogram of one stage of the signal extraction of an extractor.
+     *
+     * @param extractor Extractor.
+     * @param stage     Stage.
+     * @return The histogram, or null if the stage was never reported.
+     */
+    public Histogram get(AudioFeatureConfiguration extractor, Stage stage) {
+        return get(extractor.fingerprint(), stage);
+    }
+
+    /**
+     * Returns the histogram of one stage of a configuration.
+     *
+     * @param configuration Configuration as reported to {@link #stageCompleted}.
+     * @param stage         Stage.
+     * @return The histogram, or null if the stage was never reported.
+     */
+    public Histogram get(String configuration, Stage stage) {
+        Map<Stage, Histogram> stages = histograms.get(configuration);
+        return stages == null ? null : stages.get(stage);
+    }
+
+    /**
+     * Returns the histograms recorded so far, by configuration and stage. The histograms keep
+     * recording; the maps do not see configurations or stages reported later.
+     *
+     * @return Unmodifiable map from configuration to the histograms of its stages.
+     */
+    public Map<String, Map<Stage, Histogram>> snapshot() {
+        Map<String, Map<Stage, Histogram>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, ConcurrentMap<Stage, Histogram>> entry : new TreeMap<>(histograms).entrySet()) {
+            result.put(entry.getKey(), Collections.unmodifiableMap(new EnumMap<>(entry.getValue())));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Remove all histograms.
+     */
+    public void reset() {
+        histograms.clear();
+    }
+}
@@ -0,0 +1,17 @@
+package org.netlcod.feature;
+
+/**
+ * Floating-point precision of the extraction arithmetic.
+ */
+public enum Precision {
+    /**
+     * All stages in double precision; matches librosa to within 1e-4 absolute.
+     */
+    DOUBLE,
+    /**
+     * Spectral stages, mel projection and DCT in single precision. Halves the memory traffic
+     * of the frame buffers and filter weights; results match librosa to within 1e-5 relative
+     * for mel energies and 1e-3 absolute for MFCC.
+     */
+    FLOAT
+}
@@ -0,0 +1,35 @@
+package org.netlcod.feature;
+
+/**
+ * Stages of feature extraction reported to a {@link PipelineListener}.
+ */
+public enum Stage {
+    /**
+     * Reading, windowing and FFT of the frames.
+     */
+    STFT,
+    /**
+     * Power spectrum of the FFT output.
+     */
+    POWER,
+    /**
+     * Projection onto the mel bands.
+     */
+    MEL,
+    /**
+     * Conversion of the mel energies to dB, including the topDB clipping.
+     */
+    POWER_TO_DB,
+    /**
+     * Discrete cosine transform of the dB mel frames.
+     */
+    DCT,
+    /**
+     * Delta and delta-delta coefficients of the MFCC, when requested.
+     */
+    DELTA,
+    /**
+     * The whole extraction call, from start to return.
+     */
+    TOTAL
+}
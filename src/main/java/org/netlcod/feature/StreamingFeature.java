@@ -0,0 +1,141 @@
+package org.netlcod.feature;
+
+import org.netlcod.filter.StreamingResampler;
+import org.netlcod.spectrum.StreamingStft;
+
+/**
+ * Base of the streaming extractors: a {@link StreamingStft} followed by power and mel projection,
+ * preceded by a {@link StreamingResampler} when the input sampling rate differs from the sample rate.
+ * <p>
+ * The configuration is captured when the extractor is created. Per-frame work runs in buffers
+ * allocated up front, so pushing samples does not allocate. Instances are not thread-safe.
+ */
+public abstract class StreamingFeature {
+    protected final FeaturePlan plan;
+    private final StreamingStft stft;
+    private final StreamingStft.FrameConsumer frameConsumer;
+    private final StreamingResampler resampler;
+    private final StreamingResampler.SampleConsumer sampleConsumer;
+    private final double[] power;
+    private final double[] mel;
+    private FeatureConsumer target;
+
+    protected StreamingFeature(FeaturePlan plan) {
+        this(plan, null);
+    }
+
+    /**
+     * Create a streaming extractor whose input is resampled to the sample rate of the plan.
+     *
+     * @param plan      Extraction plan.
+     * @param resampler Resampler of the input, or null if the input has the sample rate of the plan.
+     */
+    protected StreamingFeature(FeaturePlan plan, StreamingResampler resampler) {
+        this.plan = plan;
+        this.resampler = resampler;
+        this.stft = new StreamingStft(plan.window(), plan.fft(), plan.getHopLength(), true);
+        this.power = new double[plan.getNFft() / 2 + 1];
+        this.mel = new double[plan.getNMels()];
+        this.frameConsumer = (real, imag) -> {
+            FeaturePipeline.powerSpectrum(real, imag, power);
+            plan.melFilter().apply(power, mel);
+            emit(column(mel), target);
+        };
+        this.sampleConsumer = (samples, offset, length) -> stft.push(samples, offset, length, frameConsumer);
+    }
+
+    /**
+     * Feed samples and emit the feature columns of every completed frame.
+     *
+     * @param chunk    Input samples.
+     * @param consumer Receiver of the feature columns.
+     */
+    public void push(double[] chunk, FeatureConsumer consumer) {
+        push(chunk, 0, chunk.length, consumer);
+    }
+
+    /**
+     * Feed samples and emit the feature columns of every completed frame.
+     *
+     * @param chunk    Input samples.
+     * @param offset   Index of the first sample in chunk.
+     * @param length   Number of samples.
+     * @param consumer Receiver of the feature columns.
+     */
+    public void push(double[] chunk, int offset, int length, FeatureConsumer consumer) {
+        target = consumer;
+        try {
+            if (resampler != null) {
+                resampler.push(chunk, offset, length, sampleConsumer);
+            } else {
+                stft.push(chunk, offset, length, frameConsumer);
+            }
+        } finally {
+            target = null;
+        }
+    }
+
+    /**
+     * End the stream and emit the remaining feature columns.
+     *
+     * @param consumer Receiver of the feature columns.
+     */
+    public void flush(FeatureConsumer consumer) {
+        target = consumer;
+        try {
+            if (resampler != null) {
+                resampler.flush(sampleConsumer);
+            }
+            stft.flush(frameConsumer);
+            finish(consumer);
+        } finally {
+            target = null;
+        }
+    }
+
+    /**
+     * Discard all buffered state and start a new stream.
+     */
+    public void reset() {
+        if (resampler != null) {
+            resampler.reset();
+        }
+        stft.reset();
+    }
+
+    /**
+     * Returns the number of frames emitted since the start of the stream.
+     *
+     * @return the number of emitted frames
+     */
+    public long getFrameCount() {
+        return stft.getFrameCount();
+    }
+
+    /**
+     * Turn the mel energies of one frame into the feature column.
+     *
+     * @param mel Mel energies of one frame.
+     * @return Feature column (may be a reused buffer).
+     */
+    protected abstract double[] column(double[] mel);
+
+    /**
+     * Pass the feature column of one frame to the consumer. Subclasses may buffer columns and
+     * emit them later, e.g. once the frames they depend on have arrived.
+     *
+     * @param column   Feature column of one frame.
+     * @param consumer Receiver of the feature columns.
+     */
+    protected void emit(double[] column, FeatureConsumer consumer) {
+        consumer.accept(column);
+    }
+
+    /**
+     * Emit the columns still buffered by {@link #emit} at the end of the stream.
+     *
+     * @param consumer Receiver of the feature columns.
+     */
+    protected void finish(FeatureConsumer consumer) {
+    }
+}
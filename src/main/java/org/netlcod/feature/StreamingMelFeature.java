@@ -0,0 +1,22 @@
+package org.netlcod.feature;
+
+/**
+ * Streaming counterpart of {@link MelFeature}. Emits one mel column per hop as soon as the
+ * frame is complete; the concatenated output equals {@link MelFeature#extract(double[])}.
+ */
+public class StreamingMelFeature extends StreamingFeature {
+
+    /**
+     * Create a streaming extractor with the configuration of the given feature.
+     *
+     * @param configuration Mel feature configuration.
+     */
+    public StreamingMelFeature(MelFeature configuration) {
+        super(configuration.plan(configuration.getFeatureSize()), configuration.streamingResampler());
+    }
+
+    @Override
+    protected double[] column(double[] mel) {
+        return mel;
+    }
+}
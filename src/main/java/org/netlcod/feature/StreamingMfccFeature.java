@@ -0,0 +1,146 @@
+package org.netlcod.feature;
+
+import org.netlcod.convert.FastLog;
+import org.netlcod.spectrum.Dct;
+
+/**
+ * Streaming counterpart of {@link MfccFeature}.
+ * <p>
+ * Batch extraction clips the dB mel spectrogram at its global maximum minus 80 dB, which is
+ * unknown while streaming. The clipping reference is chosen with {@link #setTopDbPolicy}:
+ * the running maximum of the frames seen so far (default), a fixed reference level, or no
+ * clipping. See {@link TopDbPolicy} for how each policy relates to the batch result.
+ * <p>
+ * When the configuration requests deltas, each column holds the coefficients followed by their
+ * deltas, as the batch output, and is emitted {@code deltaWidth / 2} frames late: a column
+ * needs the frames after it.
+ */
+public class StreamingMfccFeature extends StreamingFeature {
+    private final int nMfcc;
+    private final double[] melDB;
+    private final double[] coefficients;
+    private final double[] dctWork;
+    private final Dct dct;
+    private final FastLog log;
+    private final DeltaWindow deltas;
+    private TopDbPolicy topDbPolicy = TopDbPolicy.RUNNING_MAX;
+    private double referenceDB;
+    private double maxDB = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Create a streaming extractor with the configuration of the given feature.
+     *
+     * @param configuration MFCC feature configuration.
+     */
+    public StreamingMfccFeature(MfccFeature configuration) {
+        super(configuration.plan(MfccFeature.N_MELS), configuration.streamingResampler());
+        this.nMfcc = configuration.getFeatureSize();
+        this.melDB = new double[plan.getNMels()];
+        this.coefficients = new double[nMfcc];
+        this.dctWork = new double[plan.getNMels()];
+        this.dct = plan.dct(nMfcc);
+        this.log = configuration.log;
+        int deltaOrder = configuration.getDeltaOrder();
+        this.deltas = deltaOrder == 0 ? null : new DeltaWindow(nMfcc, deltaOrder, configuration.getDeltaWidth());
+    }
+
+    /**
+     * Returns the topDB clipping policy.
+     *
+     * @return the topDB clipping policy
+     */
+    public TopDbPolicy getTopDbPolicy() {
+        return topDbPolicy;
+    }
+
+    /**
+     * Sets the topDB clipping policy.
+     *
+     * @param topDbPolicy the new topDB clipping policy
+     */
+    public void setTopDbPolicy(TopDbPolicy topDbPolicy) {
+        if (topDbPolicy == null) {
+            throw new IllegalArgumentException("TopDB policy must not be null");
+        }
+        this.topDbPolicy = topDbPolicy;
+    }
+
+    /**
+     * Returns the reference level (in dB) used by {@link TopDbPolicy#FIXED_REFERENCE}.
+     *
+     * @return the reference level
+     */
+    public double getReferenceDB() {
+        return referenceDB;
+    }
+
+    /**
+     * Sets the reference level (in dB) used by {@link TopDbPolicy#FIXED_REFERENCE}.
+     * Frames are clipped at referenceDB - 80 dB.
+     *
+     * @param referenceDB the new reference level
+     */
+    public void setReferenceDB(double referenceDB) {
+        this.referenceDB = referenceDB;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        maxDB = Double.NEGATIVE_INFINITY;
+        if (deltas != null) {
+            deltas.reset();
+        }
+    }
+
+    @Override
+    public long getFrameCount() {
+        return deltas == null ? super.getFrameCount() : deltas.getEmitted();
+    }
+
+    @Override
+    protected void emit(double[] column, FeatureConsumer consumer) {
+        if (deltas == null) {
+            consumer.accept(column);
+        } else {
+            deltas.push(column, consumer);
+        }
+    }
+
+    @Override
+    protected void finish(FeatureConsumer consumer) {
+        if (deltas != null) {
+            deltas.flush(consumer);
+        }
+    }
+
+    @Override
+    protected double[] column(double[] mel) {
+        System.arraycopy(mel, 0, melDB, 0, mel.length);
+        FeaturePipeline.powerToDB(melDB, log);
+        for (int m = 0; m < mel.length; m++) {
+            if (melDB[m] > maxDB) {
+                maxDB = melDB[m];
+            }
+        }
+
+        double threshold;
+        switch (topDbPolicy) {
+            case RUNNING_MAX:
+                threshold = maxDB - FeaturePipeline.TOP_DB;
+                break;
+            case FIXED_REFERENCE:
+                threshold = referenceDB - FeaturePipeline.TOP_DB;
+                break;
+            default:
+                threshold = Double.NEGATIVE_INFINITY;
+                break;
+        }
+        for (int m = 0; m < melDB.length; m++) {
+            melDB[m] = Math.max(melDB[m], threshold);
+        }
+
+        dct.transform(melDB, coefficients, dctWork);
+        return coefficients;
+    }
+}
@@ -0,0 +1,23 @@
+package org.netlcod.feature;
+
+/**
+ * How streaming extractors apply the {@code topDB} clipping that
+ * {@link org.netlcod.convert.Convert#powerToDB} computes over a whole matrix.
+ */
+public enum TopDbPolicy {
+    /**
+     * Clip each frame at the largest dB value seen so far minus topDB. Frames that precede the
+     * loudest part of the stream are clipped less than in batch extraction; once the global
+     * maximum has been seen, the output equals the batch result.
+     */
+    RUNNING_MAX,
+    /**
+     * Clip each frame at a fixed reference level minus topDB. Matches batch extraction exactly
+     * when the reference equals the maximum dB value of the whole signal.
+     */
+    FIXED_REFERENCE,
+    /**
+     * Do not clip.
+     */
+    NONE
+}
@@ -1,5 +1,7 @@
 package org.netlcod.filter;
 
+import org.netlcod.spectrum.Layout;
+
 import static java.lang.Math.pow;
 import static org.netlcod.convert.Convert.hzToMel;
 import static org.netlcod.convert.Convert.melToHz;
@@ -56,6 +58,22 @@ public class Filter {
         return weights;
     }
 
+    /**
+     * Create a band-limited (sparse) Mel filter-bank.
+     *
+     * @param sr    Sampling rate of the incoming signal (must be greater than 0).
+     * @param nFft  Number of FFT components (must be greater than 0).
+     * @param nMels Number of Mel bands to generate (default is 128).
+     * @param fmin  Lowest frequency (in Hz, must be greater than or equal to 0).
+     * @param fmax  Highest frequency (in Hz, must be greater than 0).
+     * @param htk   If `true`, use the HTK formula for Mel scale conversion.
+     *              Otherwise, use the Slaney formula.
+     * @return A sparse Mel filter-bank with the same weights as {@link #mel}.
+     */
+    public static SparseMelFilter melSparse(double sr, int nFft, int nMels, double fmin, double fmax, boolean htk) {
+        return SparseMelFilter.fromDense(mel(sr, nFft, nMels, fmin, fmax, htk));
+    }
+
     /**
      * Apply mel-filters to spectrogram.
      *
@@ -80,6 +98,71 @@ public class Filter {
         return melSpectrogram;
     }
 
+    /**
+     * Apply mel-filters to a spectrogram in the given layout.
+     *
+     * @param spectrogram Spectrogram of shape [1 + nFft / 2][frames] or [frames][1 + nFft / 2].
+     * @param melFilters  Mel-filters.
+     * @param nMels       Number of mel bands.
+     * @param nFft        FFT window size.
+     * @param layout      Layout of the input and the output.
+     * @return MelSpectrogram of shape [nMels][frames] or [frames][nMels].
+     */
+    public static double[][] applyMelFilters(double[][] spectrogram, double[][] melFilters, int nMels, int nFft, Layout layout) {
+        if (layout != Layout.FRAME_MAJOR) {
+            return applyMelFilters(spectrogram, melFilters, nMels, nFft);
+        }
+        int nFrames = spectrogram.length;
+        double[][] melSpectrogram = new double[nFrames][nMels];
+
+        for (int j = 0; j < nFrames; j++) {
+            double[] frame = spectrogram[j];
+            for (int i = 0; i < nMels; i++) {
+                double sum = 0;
+                for (int k = 0; k < 1 + nFft / 2; k++) {
+                    sum += melFilters[i][k] * frame[k];
+                }
+                melSpectrogram[j][i] = sum;
+            }
+        }
+
+        return melSpectrogram;
+    }
+
+    /**
+     * Apply band-limited mel-filters to spectrogram, skipping zero weights.
+     *
+     * @param spectrogram Spectrogram of shape [1 + nFft / 2][frames].
+     * @param melFilters  Sparse mel-filters.
+     * @return MelSpectrogram.
+     */
+    public static double[][] applyMelFilters(double[][] spectrogram, SparseMelFilter melFilters) {
+        return melFilters.apply(spectrogram);
+    }
+
+    /**
+     * Apply band-limited mel-filters to a spectrogram in the given layout.
+     *
+     * @param spectrogram Spectrogram of shape [1 + nFft / 2][frames] or [frames][1 + nFft / 2].
+     * @param melFilters  Sparse mel-filters.
+     * @param layout      Layout of the input and the output.
+     * @return MelSpectrogram of shape [nMels][frames] or [frames][nMels].
+     */
+    public static double[][] applyMelFilters(double[][] spectrogram, SparseMelFilter melFilters, Layout layout) {
+        return melFilters.apply(spectrogram, layout);
+    }
+
+    /**
+     * Apply band-limited mel-filters to a single-precision spectrogram.
+     *
+     * @param spectrogram Spectrogram of shape [1 + nFft / 2][frames].
+     * @param melFilters  Sparse mel-filters.
+     * @return MelSpectrogram.
+     */
+    public static float[][] applyMelFilters(float[][] spectrogram, SparseMelFilter melFilters) {
+        return melFilters.apply(spectrogram);
+    }
+
     /**
      * Compute the center frequencies of FFT bins.
      *
@@ -106,14 +189,14 @@ public class Filter {
      */
     public static double[] melFrequencies(int nMel, double fMin, double fMax, boolean htk) {
         double[] mels = new double[nMel];
-        double minMel = hzToMel(new double[]{fMin}, htk)[0];
-        double maxMel = hzToMel(new double[]{fMax}, htk)[0];
+        double minMel = hzToMel(fMin, htk);
+        double maxMel = hzToMel(fMax, htk);
         double deltaMel = (maxMel - minMel) / (nMel - 1);
 
         for (int i = 0; i < nMel; i++) {
             mels[i] = minMel + i * deltaMel;
         }
 
-        return melToHz(mels, htk);
+        return melToHz(mels, mels, htk);
     }
 }
@@ -0,0 +1,85 @@
+package org.netlcod.filter;
+
+import org.netlcod.io.SampleSource;
+
+/**
+ * Sampling rate conversion, as {@code librosa.resample} with {@code res_type='kaiser_best'} or
+ * {@code 'kaiser_fast'}.
+ * <p>
+ * The signal is filtered with a cached polyphase filter (see {@link ResampleFilter}); the output
+ * has {@code ceil(length * targetRate / sourceRate)} samples and is not rescaled.
+ */
+public class Resample {
+
+    /**
+     * Resample a signal with the {@link ResampleType#KAISER_BEST} filter.
+     *
+     * @param y          Input signal.
+     * @param sourceRate Sampling rate of y.
+     * @param targetRate Target sampling rate.
+     * @return The resampled signal, or y itself if the rates are equal.
+     */
+    public static double[] resample(double[] y, int sourceRate, int targetRate) {
+        return resample(y, sourceRate, targetRate, ResampleType.KAISER_BEST);
+    }
+
+    /**
+     * Resample a signal.
+     *
+     * @param y          Input signal.
+     * @param sourceRate Sampling rate of y.
+     * @param targetRate Target sampling rate.
+     * @param type       Filter design.
+     * @return The resampled signal, or y itself if the rates are equal.
+     */
+    public static double[] resample(double[] y, int sourceRate, int targetRate, ResampleType type) {
+        if (sourceRate == targetRate && sourceRate > 0) {
+            return y;
+        }
+        return resample(SampleSource.of(y), sourceRate, targetRate, type);
+    }
+
+    /**
+     * Resample a lazily decoded signal (e.g. a {@link org.netlcod.io.WavSource}). The input is read
+     * in blocks, so only the output is held in memory.
+     *
+     * @param source     Input signal.
+     * @param sourceRate Sampling rate of the source.
+     * @param targetRate Target sampling rate.
+     * @param type       Filter design.
+     * @return The resampled signal.
+     */
+    public static double[] resample(SampleSource source, int sourceRate, int targetRate, ResampleType type) {
+        ResampleFilter filter = ResampleFilter.of(sourceRate, targetRate, type);
+        long length = filter.outputLength(source.getLength());
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Resampled signal too long for an array: " + length);
+        }
+        double[] result = new double[(int) length];
+        if (sourceRate == targetRate) {
+            source.read(0, result);
+            return result;
+        }
+        filter.apply(source, 0, result, 0, (int) filter.filteredLength(source.getLength()));
+        return result;
+    }
+
+    /**
+     * Wrap a signal so that it is resampled on demand, frame by frame. Reads return the same
+     * samples as {@link #resample(SampleSource, int, int, ResampleType)}, without holding the
+     * resampled signal in memory.
+     *
+     * @param source     Input signal.
+     * @param sourceRate Sampling rate of the source.
+     * @param targetRate Target sampling rate.
+     * @param type       Filter design.
+     * @return The resampled signal, or source itself if the rates are equal.
+     */
+    public static SampleSource lazy(SampleSource source, int sourceRate, int targetRate, ResampleType type) {
+        ResampleFilter filter = ResampleFilter.of(sourceRate, targetRate, type);
+        if (sourceRate == targetRate) {
+            return source;
+        }
+        return new ResampledSource(source, filter);
+    }
+}
@@ -0,0 +1,53 @@
+package org.netlcod.filter;
+
+/**
+ * Kaiser-windowed sinc filters for {@link Resample}, with the designs of librosa's
+ * {@code res_type='kaiser_best'} and {@code 'kaiser_fast'} (resampy).
+ */
+public enum ResampleType {
+    /**
+     * 64 zero crossings per wing, rolloff 0.9476, Kaiser beta 14.77: high quality.
+     */
+    KAISER_BEST(64, 0.9475937167399596, 14.769656459379492),
+    /**
+     * 16 zero crossings per wing, rolloff 0.85, Kaiser beta 8.56: about 4 times faster.
+     */
+    KAISER_FAST(16, 0.85, 8.555504641634386);
+
+    private final int zeroCrossings;
+    private final double rolloff;
+    private final double beta;
+
+    ResampleType(int zeroCrossings, double rolloff, double beta) {
+        this.zeroCrossings = zeroCrossings;
+        this.rolloff = rolloff;
+        this.beta = beta;
+    }
+
+    /**
+     * Returns the number of zero crossings of the sinc on each side of the filter.
+     *
+     * @return the number of zero crossings
+     */
+    public int getZeroCrossings() {
+        return zeroCrossings;
+    }
+
+    /**
+     * Returns the cutoff as a fraction of the Nyquist frequency of the lower rate.
+     *
+     * @return the rolloff
+     */
+    public double getRolloff() {
+        return rolloff;
+    }
+
+    /**
+     * Returns the shape parameter of the Kaiser window.
+     *
+     * @return the Kaiser beta
+     */
+    public double getBeta() {
+        return beta;
+    }
+}
@@ -0,0 +1,94 @@
+package org.netlcod.filter;
+
+import org.netlcod.io.SampleSource;
+
+import java.util.Arrays;
+
+/**
+ * Sample source that resamples another source on demand.
+ * <p>
+ * Reads run the polyphase filter over the input span the requested samples depend on, so
+ * neither the input nor the resampled signal is held in memory. Every thread keeps the samples
+ * of its last read: a read that overlaps it, such as the next frame of an STFT, copies the
+ * overlap and filters only the samples past it (the new hop). Results do not depend on the
+ * order of reads.
+ */
+final class ResampledSource implements SampleSource {
+    private final SampleSource source;
+    private final ResampleFilter filter;
+    private final long length;
+    private final long filteredLength;
+    private final ThreadLocal<Window> window = ThreadLocal.withInitial(Window::new);
+
+    ResampledSource(SampleSource source, ResampleFilter filter) {
+        this.source = source;
+        this.filter = filter;
+        this.length = filter.outputLength(source.getLength());
+        this.filteredLength = filter.filteredLength(source.getLength());
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public void read(long start, double[] frame) {
+        Window window = this.window.get();
+        int reused = 0;
+        if (start >= window.first && start < window.first + window.length) {
+            reused = (int) Math.min(frame.length, window.first + window.length - start);
+            System.arraycopy(window.samples, (int) (start - window.first), frame, 0, reused);
+        }
+        resample(window, start + reused, frame, reused, frame.length - reused);
+
+        if (window.samples.length < frame.length) {
+            window.samples = new double[frame.length];
+        }
+        System.arraycopy(frame, 0, window.samples, 0, frame.length);
+        window.first = start;
+        window.length = frame.length;
+    }
+
+    @Override
+    public void read(long start, float[] frame) {
+        Window window = this.window.get();
+        if (window.floatFrame.length != frame.length) {
+            window.floatFrame = new double[frame.length];
+        }
+        double[] samples = window.floatFrame;
+        read(start, samples);
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = (float) samples[i];
+        }
+    }
+
+    /**
+     * Compute output samples [start, start + count) into output from offset.
+     */
+    private void resample(Window window, long start, double[] output, int offset, int count) {
+        // Samples past filteredLength are the zero padding of librosa
+        int from = (int) Math.min(count, Math.max(0, -start));
+        int to = (int) Math.max(from, Math.min(count, filteredLength - start));
+        Arrays.fill(output, offset, offset + from, 0.0);
+        if (to > from) {
+            int span = filter.inputSpan(to - from);
+            if (window.input.length != span) {
+                window.input = new double[span];
+            }
+            filter.apply(source, start + from, output, offset + from, to - from, window.input);
+        }
+        Arrays.fill(output, offset + to, offset + count, 0.0);
+    }
+
+    /**
+     * Last samples read by one thread and its scratch buffers.
+     */
+    private static final class Window {
+        private long first;
+        private int length;
+        private double[] samples = new double[0];
+        private double[] input = new double[0];
+        private double[] floatFrame = new double[0];
+    }
+}
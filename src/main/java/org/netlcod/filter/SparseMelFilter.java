@@ -0,0 +1,259 @@
+package org.netlcod.filter;
+
+import org.netlcod.io.OffHeapMatrix;
+import org.netlcod.kernel.Kernels;
+import org.netlcod.spectrum.Layout;
+
+/**
+ * Band-limited representation of a mel filter bank.
+ * <p>
+ * Each triangular filter is non-zero over a short run of FFT bins, so only the bin range
+ * {@code [start, end)} of every band and the weights inside it are stored. Projection skips
+ * the zeros and adds the remaining products in bin order, so in double precision its results
+ * are identical to those of {@link Filter#applyMelFilters(double[][], double[][], int, int)},
+ * whichever {@link Kernels} implementation is in use.
+ */
+public final class SparseMelFilter {
+    private static final Kernels KERNELS = Kernels.get();
+
+    private final int nBins;
+    private final int[] start;
+    private final int[] end;
+    private final double[][] weights;
+    private final float[][] floatWeights;
+
+    private SparseMelFilter(int nBins, int[] start, int[] end, double[][] weights) {
+        this.nBins = nBins;
+        this.start = start;
+        this.end = end;
+        this.weights = weights;
+        this.floatWeights = new float[weights.length][];
+        for (int i = 0; i < weights.length; i++) {
+            floatWeights[i] = new float[weights[i].length];
+            for (int k = 0; k < weights[i].length; k++) {
+                floatWeights[i][k] = (float) weights[i][k];
+            }
+        }
+    }
+
+    /**
+     * Compress a dense filter bank.
+     *
+     * @param melFilters Dense filter bank of shape (nMels, 1 + nFft / 2).
+     * @return Sparse filter bank.
+     */
+    public static SparseMelFilter fromDense(double[][] melFilters) {
+        int nMels = melFilters.length;
+        int nBins = melFilters[0].length;
+        int[] start = new int[nMels];
+        int[] end = new int[nMels];
+        double[][] weights = new double[nMels][];
+
+        for (int i = 0; i < nMels; i++) {
+            int first = 0;
+            while (first < nBins && melFilters[i][first] == 0) {
+                first++;
+            }
+            int last = nBins;
+            while (last > first && melFilters[i][last - 1] == 0) {
+                last--;
+            }
+            if (first == last) {
+                first = 0;
+                last = 0;
+            }
+            start[i] = first;
+            end[i] = last;
+            weights[i] = new double[last - first];
+            System.arraycopy(melFilters[i], first, weights[i], 0, last - first);
+        }
+
+        return new SparseMelFilter(nBins, start, end, weights);
+    }
+
+    /**
+     * Returns the number of mel bands.
+     *
+     * @return the number of mel bands
+     */
+    public int getNMels() {
+        return start.length;
+    }
+
+    /**
+     * Returns the number of FFT bins (1 + nFft / 2).
+     *
+     * @return the number of FFT bins
+     */
+    public int getNBins() {
+        return nBins;
+    }
+
+    /**
+     * Returns the first non-zero bin of a band.
+     *
+     * @param band Mel band.
+     * @return the first non-zero bin (inclusive)
+     */
+    public int getStart(int band) {
+        return start[band];
+    }
+
+    /**
+     * Returns the end of the non-zero bin range of a band.
+     *
+     * @param band Mel band.
+     * @return the last non-zero bin + 1 (exclusive)
+     */
+    public int getEnd(int band) {
+        return end[band];
+    }
+
+    /**
+     * Returns the weight of a bin in a band.
+     *
+     * @param band Mel band.
+     * @param bin  FFT bin.
+     * @return the filter weight
+     */
+    public double getWeight(int band, int bin) {
+        if (bin < start[band] || bin >= end[band]) {
+            return 0;
+        }
+        return weights[band][bin - start[band]];
+    }
+
+    /**
+     * Expand to a dense filter bank.
+     *
+     * @return Dense filter bank of shape (nMels, 1 + nFft / 2).
+     */
+    public double[][] toDense() {
+        double[][] dense = new double[start.length][nBins];
+        for (int i = 0; i < start.length; i++) {
+            System.arraycopy(weights[i], 0, dense[i], start[i], weights[i].length);
+        }
+        return dense;
+    }
+
+    /**
+     * Project one frame of a spectrogram onto the mel bands.
+     *
+     * @param spectrum Spectrum of one frame, length 1 + nFft / 2.
+     * @param mel      Output mel energies, length nMels.
+     */
+    public void apply(double[] spectrum, double[] mel) {
+        for (int i = 0; i < start.length; i++) {
+            // Sum bin by bin as the dense projection does; a reordered dot product would round differently
+            double[] w = weights[i];
+            int offset = start[i];
+            double sum = 0;
+            for (int k = 0; k < w.length; k++) {
+                sum += w[k] * spectrum[offset + k];
+            }
+            mel[i] = sum;
+        }
+    }
+
+    /**
+     * Project a spectrogram onto the mel bands.
+     *
+     * @param spectrogram Spectrogram of shape [1 + nFft / 2][frames].
+     * @return Mel spectrogram of shape [nMels][frames].
+     */
+    public double[][] apply(double[][] spectrogram) {
+        int nFrames = spectrogram[0].length;
+        double[][] melSpectrogram = new double[start.length][nFrames];
+
+        for (int i = 0; i < start.length; i++) {
+            double[] w = weights[i];
+            double[] row = melSpectrogram[i];
+            for (int k = 0; k < w.length; k++) {
+                KERNELS.axpy(w[k], spectrogram[start[i] + k], row, nFrames);
+            }
+        }
+
+        return melSpectrogram;
+    }
+
+    /**
+     * Project a spectrogram in the given layout onto the mel bands.
+     *
+     * @param spectrogram Spectrogram of shape [1 + nFft / 2][frames] or [frames][1 + nFft / 2].
+     * @param layout      Layout of the input and the output.
+     * @return Mel spectrogram of shape [nMels][frames] or [frames][nMels].
+     */
+    public double[][] apply(double[][] spectrogram, Layout layout) {
+        if (layout != Layout.FRAME_MAJOR) {
+            return apply(spectrogram);
+        }
+        double[][] melSpectrogram = new double[spectrogram.length][start.length];
+        for (int t = 0; t < spectrogram.length; t++) {
+            apply(spectrogram[t], melSpectrogram[t]);
+        }
+        return melSpectrogram;
+    }
+
+    /**
+     * Project an off-heap spectrogram onto the mel bands, one column (frame) at a time.
+     *
+     * @param spectrogram Spectrogram of shape [1 + nFft / 2][frames].
+     * @param mel         Output mel spectrogram of shape [nMels][frames].
+     */
+    public void apply(OffHeapMatrix spectrogram, OffHeapMatrix mel) {
+        if (spectrogram.getRows() != nBins) {
+            throw new IllegalArgumentException("Spectrogram rows must be " + nBins + ": " + spectrogram.getRows());
+        }
+        mel.checkShape(start.length, spectrogram.getColumns());
+        double[] frame = new double[nBins];
+        double[] melFrame = new double[start.length];
+        for (long t = 0; t < spectrogram.getColumns(); t++) {
+            spectrogram.getColumn(t, frame);
+            apply(frame, melFrame);
+            mel.setColumn(t, melFrame);
+        }
+    }
+
+    /**
+     * Project one frame of a spectrogram onto the mel bands in single precision.
+     *
+     * @param spectrum Spectrum of one frame, length 1 + nFft / 2.
+     * @param mel      Output mel energies, length nMels.
+     */
+    public void apply(float[] spectrum, float[] mel) {
+        for (int i = 0; i < start.length; i++) {
+            float[] w = floatWeights[i];
+            int offset = start[i];
+            float sum = 0;
+            for (int k = 0; k < w.length; k++) {
+                sum += w[k] * spectrum[offset + k];
+            }
+            mel[i] = sum;
+        }
+    }
+
+    /**
+     * Project a spectrogram onto the mel bands in single precision.
+     *
+     * @param spectrogram Spectrogram of shape [1 + nFft / 2][frames].
+     * @return Mel spectrogram of shape [nMels][frames].
+     */
+    public float[][] apply(float[][] spectrogram) {
+        int nFrames = spectrogram[0].length;
+        float[][] melSpectrogram = new float[start.length][nFrames];
+
+        for (int i = 0; i < start.length; i++) {
+            float[] w = floatWeights[i];
+            float[] row = melSpectrogram[i];
+            for (int k = 0; k < w.length; k++) {
+                float weight = w[k];
+                float[] bin = spectrogram[start[i] + k];
+                for (int j = 0; j < nFrames; j++) {
+                    row[j] += weight * bin[j];
+                }
+            }
+        }
+
+        return melSpectrogram;
+    }
+}
@@ -0,0 +1,198 @@
+package org.netlcod.filter;
+
+import java.util.Arrays;
+
+/**
+ * Streaming counterpart of {@link Resample}: converts a signal pushed in chunks of any size.
+ * <p>
+ * The input samples that later output samples still depend on are kept between calls, so the
+ * concatenated output equals {@link Resample#resample(double[], int, int, ResampleType)} of the
+ * whole signal. Output samples are emitted once all input they depend on has arrived, i.e. with
+ * a delay of {@link ResampleFilter#getReachRight()} input samples. Buffers grow to the largest
+ * chunk and are reused afterwards. Instances are not thread-safe.
+ */
+public final class StreamingResampler {
+    private static final int BLOCK_SIZE = 1024;
+
+    private final ResampleFilter filter;
+    private final boolean passThrough;
+    private final double[] output = new double[BLOCK_SIZE];
+    private double[] history;
+    private long historyStart;
+    private int historyLength;
+    private long inputCount;
+    private long outputCount;
+    private boolean finished;
+
+    /**
+     * Receives resampled samples. The array is reused between calls and must not be retained.
+     */
+    public interface SampleConsumer {
+        /**
+         * Accept resampled samples.
+         *
+         * @param samples Buffer holding the samples.
+         * @param offset  Index of the first sample in samples.
+         * @param length  Number of samples.
+         */
+        void accept(double[] samples, int offset, int length);
+    }
+
+    /**
+     * Create a streaming resampler with the {@link ResampleType#KAISER_BEST} filter.
+     *
+     * @param sourceRate Sampling rate of the input.
+     * @param targetRate Sampling rate of the output.
+     */
+    public StreamingResampler(int sourceRate, int targetRate) {
+        this(sourceRate, targetRate, ResampleType.KAISER_BEST);
+    }
+
+    /**
+     * Create a streaming resampler.
+     *
+     * @param sourceRate Sampling rate of the input.
+     * @param targetRate Sampling rate of the output.
+     * @param type       Filter design.
+     */
+    public StreamingResampler(int sourceRate, int targetRate, ResampleType type) {
+        this.filter = ResampleFilter.of(sourceRate, targetRate, type);
+        this.passThrough = sourceRate == targetRate;
+        this.history = new double[filter.getReachLeft() + filter.getReachRight() + BLOCK_SIZE];
+        reset();
+    }
+
+    /**
+     * Returns the filter.
+     *
+     * @return the filter
+     */
+    public ResampleFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Discard all buffered samples and start a new stream.
+     */
+    public void reset() {
+        // The left wing of the first output samples reads zeros before the stream
+        historyStart = -(filter.getReachLeft() - 1);
+        historyLength = filter.getReachLeft() - 1;
+        Arrays.fill(history, 0, historyLength, 0.0);
+        inputCount = 0;
+        outputCount = 0;
+        finished = false;
+    }
+
+    /**
+     * Returns the number of samples emitted since the start of the stream.
+     *
+     * @return the number of emitted samples
+     */
+    public long getOutputCount() {
+        return outputCount;
+    }
+
+    /**
+     * Feed samples to the resampler.
+     *
+     * @param chunk    Input samples.
+     * @param consumer Receiver of the resampled samples.
+     */
+    public void push(double[] chunk, SampleConsumer consumer) {
+        push(chunk, 0, chunk.length, consumer);
+    }
+
+    /**
+     * Feed samples to the resampler.
+     *
+     * @param chunk    Input samples.
+     * @param offset   Index of the first sample in chunk.
+     * @param length   Number of samples.
+     * @param consumer Receiver of the resampled samples.
+     */
+    public void push(double[] chunk, int offset, int length, SampleConsumer consumer) {
+        if (finished) {
+            throw new IllegalStateException("Stream has been flushed");
+        }
+        inputCount += length;
+        if (passThrough) {
+            outputCount += length;
+            consumer.accept(chunk, offset, length);
+            return;
+        }
+        append(chunk, offset, length);
+        emit(filter.filteredLength(inputCount), consumer);
+    }
+
+    /**
+     * End the stream and emit the remaining samples, filtered against trailing zeros.
+     *
+     * @param consumer Receiver of the resampled samples.
+     */
+    public void flush(SampleConsumer consumer) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (passThrough) {
+            return;
+        }
+        append(null, 0, filter.getReachRight());
+        emit(filter.filteredLength(inputCount), consumer);
+
+        // Padding to ceil(length * up / down), as librosa
+        long end = filter.outputLength(inputCount);
+        Arrays.fill(output, 0.0);
+        while (outputCount < end) {
+            int n = (int) Math.min(BLOCK_SIZE, end - outputCount);
+            outputCount += n;
+            consumer.accept(output, 0, n);
+        }
+    }
+
+    /**
+     * Append samples (zeros when chunk is null), dropping those no longer needed.
+     */
+    private void append(double[] chunk, int offset, int length) {
+        long keep = filter.center(outputCount) - filter.getReachLeft() + 1;
+        int drop = (int) Math.min(historyLength, Math.max(0, keep - historyStart));
+        if (drop > 0) {
+            System.arraycopy(history, drop, history, 0, historyLength - drop);
+            historyStart += drop;
+            historyLength -= drop;
+        }
+        if (historyLength + length > history.length) {
+            history = Arrays.copyOf(history, Math.max(2 * history.length, historyLength + length));
+        }
+        if (chunk == null) {
+            Arrays.fill(history, historyLength, historyLength + length, 0.0);
+        } else {
+            System.arraycopy(chunk, offset, history, historyLength, length);
+        }
+        historyLength += length;
+    }
+
+    /**
+     * Emit every output sample before end whose input has arrived.
+     */
+    private void emit(long end, SampleConsumer consumer) {
+        long available = historyStart + historyLength;
+        int n = 0;
+        while (outputCount < end) {
+            long center = filter.center(outputCount);
+            if (center + filter.getReachRight() >= available) {
+                break;
+            }
+            output[n++] = filter.sample(history, (int) (center - historyStart), filter.phase(outputCount));
+            outputCount++;
+            if (n == BLOCK_SIZE) {
+                consumer.accept(output, 0, n);
+                n = 0;
+            }
+        }
+        if (n > 0) {
+            consumer.accept(output, 0, n);
+        }
+    }
+}
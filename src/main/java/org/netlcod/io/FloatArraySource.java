@@ -0,0 +1,41 @@
+package org.netlcod.io;
+
+import java.util.Arrays;
+
+/**
+ * Sample source over a float array.
+ */
+final class FloatArraySource implements SampleSource {
+    private final float[] y;
+
+    FloatArraySource(float[] y) {
+        this.y = y;
+    }
+
+    @Override
+    public long getLength() {
+        return y.length;
+    }
+
+    @Override
+    public void read(long start, double[] frame) {
+        int from = (int) Math.min(frame.length, Math.max(0, -start));
+        int to = (int) Math.max(from, Math.min(frame.length, y.length - start));
+        Arrays.fill(frame, 0, from, 0.0);
+        for (int i = from; i < to; i++) {
+            frame[i] = y[(int) (start + i)];
+        }
+        Arrays.fill(frame, to, frame.length, 0.0);
+    }
+
+    @Override
+    public void read(long start, float[] frame) {
+        int from = (int) Math.min(frame.length, Math.max(0, -start));
+        int to = (int) Math.max(from, Math.min(frame.length, y.length - start));
+        Arrays.fill(frame, 0, from, 0.0f);
+        if (to > from) {
+            System.arraycopy(y, (int) (start + from), frame, from, to - from);
+        }
+        Arrays.fill(frame, to, frame.length, 0.0f);
+    }
+}
@@ -0,0 +1,273 @@
+package org.netlcod.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Memory-mapped reader of NumPy {@code .npy} files with little-endian float32 or float64 elements
+ * in C order, as written by {@link NpyWriter} or {@code numpy.save}.
+ * <p>
+ * The array is viewed as rows along its first dimension: a one-dimensional array has one
+ * element per row, higher dimensions are flattened into the columns. The data is mapped
+ * read-only in regions of at most 1 GiB of whole rows, so files of any size can be read.
+ * Reads may run concurrently.
+ */
+public final class NpyReader implements Closeable {
+    private static final long MAX_REGION = 1L << 30;
+    private static final Pattern DESCR = Pattern.compile("'descr'\\s*:\\s*'([^']*)'");
+    private static final Pattern FORTRAN_ORDER = Pattern.compile("'fortran_order'\\s*:\\s*(True|False)");
+    private static final Pattern SHAPE = Pattern.compile("'shape'\\s*:\\s*\\(([^)]*)\\)");
+
+    private final FileChannel channel;
+    private final NpyType type;
+    private final long[] shape;
+    private final long rows;
+    private final int columns;
+    private final long regionRows;
+    private final MappedByteBuffer[] regions;
+
+    private NpyReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+
+        // 1
+        ByteBuffer preamble = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        read(preamble, 0);
+        if (preamble.get(0) != (byte) 0x93 || preamble.get(1) != 'N' || preamble.get(2) != 'U'
+                || preamble.get(3) != 'M' || preamble.get(4) != 'P' || preamble.get(5) != 'Y') {
+            throw new IOException("Not a NumPy file");
+        }
+        int major = preamble.get(6);
+        long headerLength;
+        int dataOffset;
+        if (major == 1) {
+            headerLength = preamble.getShort(8) & 0xFFFF;
+            dataOffset = 10;
+        } else if (major == 2 || major == 3) {
+            headerLength = preamble.getInt(8) & 0xFFFFFFFFL;
+            dataOffset = 12;
+        } else {
+            throw new IOException("Unsupported NumPy format version: " + major);
+        }
+        ByteBuffer headerBytes = ByteBuffer.allocate((int) headerLength);
+        read(headerBytes, dataOffset);
+        String header = new String(headerBytes.array(), major == 3 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+
+        // 2
+        Matcher descr = DESCR.matcher(header);
+        Matcher fortranOrder = FORTRAN_ORDER.matcher(header);
+        Matcher shapeMatcher = SHAPE.matcher(header);
+        if (!descr.find() || !fortranOrder.find() || !shapeMatcher.find()) {
+            throw new IOException("Invalid NumPy header: " + header.trim());
+        }
+        this.type = NpyType.of(descr.group(1));
+        if (fortranOrder.group(1).equals("True")) {
+            throw new IOException("Fortran-ordered arrays are not supported");
+        }
+        String[] dimensions = shapeMatcher.group(1).split(",");
+        int nDimensions = 0;
+        long[] parsed = new long[dimensions.length];
+        for (String dimension : dimensions) {
+            if (!dimension.trim().isEmpty()) {
+                parsed[nDimensions++] = Long.parseLong(dimension.trim());
+            }
+        }
+        this.shape = Arrays.copyOf(parsed, nDimensions);
+        long columnCount = 1;
+        for (int i = 1; i < shape.length; i++) {
+            columnCount = Math.multiplyExact(columnCount, shape[i]);
+        }
+        if (columnCount > Integer.MAX_VALUE) {
+            throw new IOException("Rows are too long: " + columnCount);
+        }
+        this.rows = shape.length == 0 ? 1 : shape[0];
+        this.columns = (int) columnCount;
+
+        // 3
+        long dataStart = dataOffset + headerLength;
+        long rowBytes = (long) columns * type.getSize();
+        long bytes = rows * rowBytes;
+        if (channel.size() < dataStart + bytes) {
+            throw new IOException("Truncated NumPy file: " + channel.size() + " < " + (dataStart + bytes));
+        }
+        this.regionRows = rowBytes == 0 ? Math.max(1, rows) : Math.max(1, MAX_REGION / rowBytes);
+        int nRegions = (int) ((rows + regionRows - 1) / regionRows);
+        this.regions = new MappedByteBuffer[nRegions];
+        for (int i = 0; i < nRegions; i++) {
+            long first = i * regionRows;
+            long size = Math.min(regionRows, rows - first) * rowBytes;
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + first * rowBytes, size);
+            regions[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Open and map a {@code .npy} file.
+     *
+     * @param file Input file.
+     * @return The reader.
+     * @throws IOException if the file cannot be read or is not a supported NumPy array.
+     */
+    public static NpyReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new NpyReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the element type.
+     *
+     * @return the element type
+     */
+    public NpyType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the shape of the array.
+     *
+     * @return the shape
+     */
+    public long[] getShape() {
+        return shape.clone();
+    }
+
+    /**
+     * Returns the number of rows (the first dimension).
+     *
+     * @return the number of rows
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of elements per row (the product of the other dimensions).
+     *
+     * @return the number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns one element.
+     *
+     * @param row    Row index.
+     * @param column Column index.
+     * @return The element.
+     */
+    public double get(long row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("Index (" + row + ", " + column + ") out of bounds for " + rows + "x" + columns);
+        }
+        ByteBuffer region = regions[(int) (row / regionRows)];
+        int position = (int) ((row % regionRows) * columns + column) * type.getSize();
+        return type == NpyType.FLOAT64 ? region.getDouble(position) : region.getFloat(position);
+    }
+
+    /**
+     * Copy one row into an array.
+     *
+     * @param row    Row index.
+     * @param values Output array of length {@link #getColumns()}.
+     */
+    public void readRow(long row, double[] values) {
+        ByteBuffer region = region(row, values.length);
+        int position = (int) ((row % regionRows) * columns) * type.getSize();
+        for (int i = 0; i < columns; i++) {
+            values[i] = type == NpyType.FLOAT64
+                    ? region.getDouble(position + 8 * i)
+                    : region.getFloat(position + 4 * i);
+        }
+    }
+
+    /**
+     * Copy one row into a single-precision array; float64 values are rounded.
+     *
+     * @param row    Row index.
+     * @param values Output array of length {@link #getColumns()}.
+     */
+    public void readRow(long row, float[] values) {
+        ByteBuffer region = region(row, values.length);
+        int position = (int) ((row % regionRows) * columns) * type.getSize();
+        for (int i = 0; i < columns; i++) {
+            values[i] = type == NpyType.FLOAT64
+                    ? (float) region.getDouble(position + 8 * i)
+                    : region.getFloat(position + 4 * i);
+        }
+    }
+
+    /**
+     * Copy the array to the heap.
+     *
+     * @return Matrix of shape [rows][columns].
+     */
+    public double[][] toArray() {
+        if (rows > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many rows for an array: " + rows);
+        }
+        double[][] result = new double[(int) rows][columns];
+        for (int i = 0; i < rows; i++) {
+            readRow(i, result[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Copy the array to the heap in single precision.
+     *
+     * @return Matrix of shape [rows][columns].
+     */
+    public float[][] toFloatArray() {
+        if (rows > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many rows for an array: " + rows);
+        }
+        float[][] result = new float[(int) rows][columns];
+        for (int i = 0; i < rows; i++) {
+            readRow(i, result[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Close the file. The mapped regions are released once the reader is no longer referenced.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer region(long row, int length) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for " + rows + " rows");
+        }
+        if (length != columns) {
+            throw new IllegalArgumentException("Row length must be " + columns + ": " + length);
+        }
+        return regions[(int) (row / regionRows)];
+    }
+
+    private void read(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated NumPy file");
+            }
+        }
+    }
+}
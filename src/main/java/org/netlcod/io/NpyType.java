@@ -0,0 +1,56 @@
+package org.netlcod.io;
+
+/**
+ * Element type of a NumPy array file, always little-endian.
+ */
+public enum NpyType {
+    /**
+     * 32-bit float, NumPy {@code <f4}.
+     */
+    FLOAT32("<f4", 4),
+    /**
+     * 64-bit float, NumPy {@code <f8}.
+     */
+    FLOAT64("<f8", 8);
+
+    private final String descr;
+    private final int size;
+
+    NpyType(String descr, int size) {
+        this.descr = descr;
+        this.size = size;
+    }
+
+    /**
+     * Returns the NumPy type descriptor.
+     *
+     * @return the type descriptor
+     */
+    public String getDescr() {
+        return descr;
+    }
+
+    /**
+     * Returns the size of one element in bytes.
+     *
+     * @return the element size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the type with the given NumPy descriptor.
+     *
+     * @param descr Type descriptor, e.g. {@code <f4}.
+     * @return The type.
+     */
+    static NpyType of(String descr) {
+        for (NpyType type : values()) {
+            if (type.descr.equals(descr)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported NumPy type: " + descr);
+    }
+}
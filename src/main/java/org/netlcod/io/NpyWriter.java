@@ -0,0 +1,336 @@
+package org.netlcod.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.netlcod.feature.FeatureConsumer;
+import org.netlcod.spectrum.Layout;
+
+/**
+ * Writer of NumPy {@code .npy} files (format version 1.0) holding a two-dimensional array.
+ * <p>
+ * Rows are encoded little-endian into a reusable direct buffer and written through an NIO
+ * channel. A writer created with {@link #create(Path, NpyType, int)} accepts rows one at a time,
+ * e.g. the columns of a streaming extractor, and fixes the row count in the header on
+ * {@link #close()}; the header is padded so that it can be rewritten in place.
+ * <p>
+ * Files keep the orientation of the matrix they are written from: a heap matrix {@code x} is
+ * stored with shape [x.length][x[0].length], so features extracted in
+ * {@link Layout#FREQUENCY_MAJOR} layout are stored as [nMels][frames] and features extracted in
+ * {@link Layout#FRAME_MAJOR} layout as [frames][nMels]. Rows appended to a created writer are
+ * frames, giving [frames][columns]. Off-heap matrices, whose layout is not part of the matrix,
+ * are written in the layout passed to {@link #write(Path, OffHeapMatrix, NpyType, Layout)}.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class NpyWriter implements Closeable {
+    private static final byte[] MAGIC = {(byte) 0x93, 'N', 'U', 'M', 'P', 'Y', 1, 0};
+    // Room for two 20-digit dimensions, a multiple of 64 bytes as required by the format
+    private static final int HEADER_LENGTH = 128;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final NpyType type;
+    private final int columns;
+    private final boolean patchHeader;
+    private final ByteBuffer buffer;
+    private long rows;
+    private boolean closed;
+
+    private NpyWriter(WritableByteChannel channel, NpyType type, int columns, boolean patchHeader) {
+        if (columns < 0) {
+            throw new IllegalArgumentException("Columns must not be negative: " + columns);
+        }
+        this.channel = channel;
+        this.type = type;
+        this.columns = columns;
+        this.patchHeader = patchHeader;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, columns * type.getSize())).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Create a file to which rows are appended. The row count is written on {@link #close()}.
+     *
+     * @param file    Output file, replaced if it exists.
+     * @param type    Element type.
+     * @param columns Length of every row.
+     * @return The writer.
+     * @throws IOException if the file cannot be created.
+     */
+    public static NpyWriter create(Path file, NpyType type, int columns) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        NpyWriter writer = new NpyWriter(channel, type, columns, true);
+        try {
+            writer.header(0);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return writer;
+    }
+
+    /**
+     * Write a matrix with shape [rows][columns].
+     *
+     * @param file   Output file, replaced if it exists.
+     * @param matrix Matrix to write.
+     * @param type   Element type.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Path file, double[][] matrix, NpyType type) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, matrix, type);
+        }
+    }
+
+    /**
+     * Write a single-precision matrix with shape [rows][columns] as {@link NpyType#FLOAT32}.
+     *
+     * @param file   Output file, replaced if it exists.
+     * @param matrix Matrix to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Path file, float[][] matrix) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, matrix);
+        }
+    }
+
+    /**
+     * Write an off-heap matrix with shape [rows][columns], as {@link OffHeapMatrix#toArray()}.
+     *
+     * @param file   Output file, replaced if it exists.
+     * @param matrix Matrix to write.
+     * @param type   Element type.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Path file, OffHeapMatrix matrix, NpyType type) throws IOException {
+        write(file, matrix, type, Layout.FREQUENCY_MAJOR);
+    }
+
+    /**
+     * Write an off-heap matrix whose columns are frames. In {@link Layout#FREQUENCY_MAJOR} layout the
+     * file has shape [rows][columns], as {@link OffHeapMatrix#toArray()}; in
+     * {@link Layout#FRAME_MAJOR} layout it has shape [columns][rows], one row per frame, which is
+     * the storage order of the matrix and is written in a single sequential pass.
+     *
+     * @param file   Output file, replaced if it exists.
+     * @param matrix Matrix to write.
+     * @param type   Element type.
+     * @param layout Layout of the file.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Path file, OffHeapMatrix matrix, NpyType type, Layout layout) throws IOException {
+        if (layout == Layout.FRAME_MAJOR) {
+            try (NpyWriter writer = create(file, type, matrix.getRows())) {
+                double[] column = new double[matrix.getRows()];
+                for (long t = 0; t < matrix.getColumns(); t++) {
+                    matrix.getColumn(t, column);
+                    writer.append(column);
+                }
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            NpyWriter writer = new NpyWriter(channel, type, 0, false);
+            writer.header(matrix.getRows(), matrix.getColumns());
+            for (int f = 0; f < matrix.getRows(); f++) {
+                for (long t = 0; t < matrix.getColumns(); t++) {
+                    if (writer.buffer.remaining() < type.getSize()) {
+                        writer.flush();
+                    }
+                    writer.put(matrix.get(f, t));
+                }
+            }
+            writer.flush();
+        }
+    }
+
+    /**
+     * Write a matrix with shape [rows][columns] to a channel.
+     *
+     * @param channel Output channel.
+     * @param matrix  Matrix to write.
+     * @param type    Element type.
+     * @throws IOException if the channel cannot be written.
+     */
+    static void write(WritableByteChannel channel, double[][] matrix, NpyType type) throws IOException {
+        NpyWriter writer = new NpyWriter(channel, type, matrix.length == 0 ? 0 : matrix[0].length, false);
+        writer.header(matrix.length);
+        for (double[] row : matrix) {
+            writer.append(row);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Write a single-precision matrix with shape [rows][columns] to a channel.
+     *
+     * @param channel Output channel.
+     * @param matrix  Matrix to write.
+     * @throws IOException if the channel cannot be written.
+     */
+    static void write(WritableByteChannel channel, float[][] matrix) throws IOException {
+        NpyWriter writer = new NpyWriter(channel, NpyType.FLOAT32, matrix.length == 0 ? 0 : matrix[0].length, false);
+        writer.header(matrix.length);
+        for (float[] row : matrix) {
+            writer.append(row);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Returns a consumer that appends every column of a streaming extractor as one row. An
+     * {@link IOException} of {@link #append(double[])} is rethrown as an
+     * {@link UncheckedIOException}.
+     *
+     * @return The consumer.
+     */
+    public FeatureConsumer consumer() {
+        return column -> {
+            try {
+                append(column);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * Returns the number of rows written so far.
+     *
+     * @return the number of rows
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Append one row.
+     *
+     * @param row Values of length columns.
+     * @throws IOException if the file cannot be written.
+     */
+    public void append(double[] row) throws IOException {
+        checkRow(row.length);
+        if (buffer.remaining() < columns * type.getSize()) {
+            flush();
+        }
+        if (type == NpyType.FLOAT64) {
+            for (double value : row) {
+                buffer.putDouble(value);
+            }
+        } else {
+            for (double value : row) {
+                buffer.putFloat((float) value);
+            }
+        }
+        rows++;
+    }
+
+    /**
+     * Append one single-precision row.
+     *
+     * @param row Values of length columns.
+     * @throws IOException if the file cannot be written.
+     */
+    public void append(float[] row) throws IOException {
+        checkRow(row.length);
+        if (buffer.remaining() < columns * type.getSize()) {
+            flush();
+        }
+        if (type == NpyType.FLOAT64) {
+            for (float value : row) {
+                buffer.putDouble(value);
+            }
+        } else {
+            for (float value : row) {
+                buffer.putFloat(value);
+            }
+        }
+        rows++;
+    }
+
+    /**
+     * Write the buffered rows, fix the row count in the header and close the file.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+            if (patchHeader) {
+                ((FileChannel) channel).position(0);
+                header(rows);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void checkRow(int length) {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+        if (length != columns) {
+            throw new IllegalArgumentException("Row length must be " + columns + ": " + length);
+        }
+    }
+
+    private void put(double value) {
+        if (type == NpyType.FLOAT64) {
+            buffer.putDouble(value);
+        } else {
+            buffer.putFloat((float) value);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void header(long nRows) throws IOException {
+        header(nRows, columns);
+    }
+
+    private void header(long nRows, long nColumns) throws IOException {
+        StringBuilder dict = new StringBuilder()
+                .append("{'descr': '").append(type.getDescr())
+                .append("', 'fortran_order': False, 'shape': (")
+                .append(nRows).append(", ").append(nColumns).append("), }");
+        int padding = HEADER_LENGTH - MAGIC.length - 2 - dict.length() - 1;
+        for (int i = 0; i < padding; i++) {
+            dict.append(' ');
+        }
+        dict.append('\n');
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC).putShort((short) (HEADER_LENGTH - MAGIC.length - 2));
+        header.put(dict.toString().getBytes(StandardCharsets.US_ASCII));
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+}
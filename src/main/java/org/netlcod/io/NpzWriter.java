@@ -0,0 +1,144 @@
+package org.netlcod.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writer of NumPy {@code .npz} archives: a zip file with one {@code .npy} entry per named
+ * matrix, as read by {@code numpy.load}.
+ * <p>
+ * Uncompressed archives (the default, as {@code numpy.savez}) store every entry as is; its
+ * checksum is computed in a first pass over the matrix, so nothing is buffered in memory.
+ * Compressed archives (as {@code numpy.savez_compressed}) deflate the entries.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class NpzWriter implements Closeable {
+    private final ZipOutputStream zip;
+    private final WritableByteChannel channel;
+    private final boolean compressed;
+    private final Set<String> names = new HashSet<>();
+
+    /**
+     * Create an uncompressed archive.
+     *
+     * @param file Output file, replaced if it exists.
+     * @throws IOException if the file cannot be created.
+     */
+    public NpzWriter(Path file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * Create an archive.
+     *
+     * @param file       Output file, replaced if it exists.
+     * @param compressed If true, entries are deflated.
+     * @throws IOException if the file cannot be created.
+     */
+    public NpzWriter(Path file, boolean compressed) throws IOException {
+        this.zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        this.channel = Channels.newChannel(zip);
+        this.compressed = compressed;
+    }
+
+    /**
+     * Add a matrix with shape [rows][columns] as entry {@code name.npy}.
+     *
+     * @param name   Array name, the key in {@code numpy.load(file)}.
+     * @param matrix Matrix to write.
+     * @param type   Element type.
+     * @throws IOException if the archive cannot be written.
+     */
+    public void add(String name, double[][] matrix, NpyType type) throws IOException {
+        ZipEntry entry = entry(name);
+        if (!compressed) {
+            CrcChannel crc = new CrcChannel();
+            NpyWriter.write(crc, matrix, type);
+            crc.describe(entry);
+        }
+        zip.putNextEntry(entry);
+        NpyWriter.write(channel, matrix, type);
+        zip.closeEntry();
+    }
+
+    /**
+     * Add a single-precision matrix with shape [rows][columns] as entry {@code name.npy}.
+     *
+     * @param name   Array name, the key in {@code numpy.load(file)}.
+     * @param matrix Matrix to write.
+     * @throws IOException if the archive cannot be written.
+     */
+    public void add(String name, float[][] matrix) throws IOException {
+        ZipEntry entry = entry(name);
+        if (!compressed) {
+            CrcChannel crc = new CrcChannel();
+            NpyWriter.write(crc, matrix);
+            crc.describe(entry);
+        }
+        zip.putNextEntry(entry);
+        NpyWriter.write(channel, matrix);
+        zip.closeEntry();
+    }
+
+    /**
+     * Finish and close the archive.
+     *
+     * @throws IOException if the archive cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+    private ZipEntry entry(String name) {
+        if (!names.add(name)) {
+            throw new IllegalArgumentException("Duplicate array name: " + name);
+        }
+        ZipEntry entry = new ZipEntry(name + ".npy");
+        entry.setMethod(compressed ? ZipEntry.DEFLATED : ZipEntry.STORED);
+        return entry;
+    }
+
+    /**
+     * Channel that only computes the checksum and size of what is written to it.
+     */
+    private static final class CrcChannel implements WritableByteChannel {
+        private final CRC32 crc = new CRC32();
+        private long size;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            crc.update(src);
+            size += length;
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        void describe(ZipEntry entry) {
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            entry.setCrc(crc.getValue());
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package org.netlcod.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Matrix of doubles stored outside the Java heap, for spectrograms and features of recordings
+ * whose matrices do not fit into the heap or into an int-indexed array.
+ * <p>
+ * The matrix has a fixed number of rows (frequency bins or features) and a long number of
+ * columns (frames). Values are stored column by column, little-endian, so one frame is
+ * contiguous and frames can be written as they are produced. Storage is split into chunks of
+ * at most 1 GiB of whole columns, each either a direct buffer or a memory-mapped region of a file.
+ * <p>
+ * {@link #allocate(int, long)} uses direct memory up to a size threshold and transparently
+ * spills larger matrices to a temporary file that is deleted on {@link #close()};
+ * {@link #map(Path, int, long)} keeps the matrix in a given file. Reads and writes of distinct
+ * elements may run concurrently.
+ */
+public final class OffHeapMatrix implements Closeable {
+    /**
+     * Size in bytes above which {@link #allocate(int, long)} spills to a temporary file,
+     * unless overridden by the system property {@code jlibrosa2.offheap.spillThreshold}.
+     */
+    public static final long DEFAULT_SPILL_THRESHOLD = 512L << 20;
+
+    private static final long CHUNK_BYTES = 1L << 30;
+
+    private final int rows;
+    private final long columns;
+    private final long chunkColumns;
+    private final DoubleBuffer[] chunks;
+    private final FileChannel channel;
+    private final Path temporaryFile;
+
+    private OffHeapMatrix(int rows, long columns, FileChannel channel, Path temporaryFile) throws IOException {
+        if (rows <= 0 || columns < 0) {
+            throw new IllegalArgumentException("Invalid matrix shape: " + rows + "x" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.chunkColumns = Math.max(1, CHUNK_BYTES / (8L * rows));
+        this.channel = channel;
+        this.temporaryFile = temporaryFile;
+
+        long nChunks = (columns + chunkColumns - 1) / chunkColumns;
+        if (nChunks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Matrix is too large: " + rows + "x" + columns);
+        }
+        this.chunks = new DoubleBuffer[(int) nChunks];
+        long columnBytes = 8L * rows;
+        if (channel != null && channel.size() < Math.multiplyExact(columnBytes, columns)) {
+            // Extend the file; the new region reads as zeros
+            channel.write(ByteBuffer.allocate(1), columnBytes * columns - 1);
+        }
+        for (int c = 0; c < chunks.length; c++) {
+            long first = c * chunkColumns;
+            long size = Math.min(chunkColumns, columns - first) * columnBytes;
+            ByteBuffer buffer = channel == null
+                    ? ByteBuffer.allocateDirect((int) size)
+                    : channel.map(FileChannel.MapMode.READ_WRITE, first * columnBytes, size);
+            chunks[c] = buffer.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+    }
+
+    /**
+     * Allocate a zero-filled matrix, in direct memory when it is not larger than the spill
+     * threshold and in a temporary file otherwise.
+     *
+     * @param rows    Number of rows.
+     * @param columns Number of columns.
+     * @return The matrix.
+     */
+    public static OffHeapMatrix allocate(int rows, long columns) {
+        return allocate(rows, columns, Long.getLong("jlibrosa2.offheap.spillThreshold", DEFAULT_SPILL_THRESHOLD));
+    }
+
+    /**
+     * Allocate a zero-filled matrix, in direct memory when it is not larger than the given
+     * threshold and in a temporary file otherwise.
+     *
+     * @param rows           Number of rows.
+     * @param columns        Number of columns.
+     * @param spillThreshold Largest size in bytes kept in direct memory.
+     * @return The matrix.
+     */
+    public static OffHeapMatrix allocate(int rows, long columns, long spillThreshold) {
+        try {
+            if (8L * rows * columns <= spillThreshold) {
+                return new OffHeapMatrix(rows, columns, null, null);
+            }
+            String directory = System.getProperty("jlibrosa2.offheap.dir", System.getProperty("java.io.tmpdir"));
+            Path file = Files.createTempFile(Paths.get(directory), "jlibrosa2-", ".matrix");
+            FileChannel channel = null;
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                return new OffHeapMatrix(rows, columns, channel, file);
+            } catch (IOException | RuntimeException e) {
+                if (channel != null) {
+                    channel.close();
+                }
+                Files.deleteIfExists(file);
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Map a matrix onto a file, creating or extending the file as needed. Existing content is
+     * kept, so a matrix written earlier can be reopened with the same shape.
+     *
+     * @param file    File holding the matrix.
+     * @param rows    Number of rows.
+     * @param columns Number of columns.
+     * @return The matrix.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public static OffHeapMatrix map(Path file, int rows, long columns) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new OffHeapMatrix(rows, columns, channel, null);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return the number of columns
+     */
+    public long getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns true if the matrix is backed by a file (mapped or spilled).
+     *
+     * @return true if the matrix is backed by a file
+     */
+    public boolean isFileBacked() {
+        return channel != null;
+    }
+
+    /**
+     * Returns one value.
+     *
+     * @param row    Row index.
+     * @param column Column index.
+     * @return The value.
+     */
+    public double get(int row, long column) {
+        checkIndex(row, column);
+        return chunks[(int) (column / chunkColumns)].get((int) (column % chunkColumns) * rows + row);
+    }
+
+    /**
+     * Sets one value.
+     *
+     * @param row    Row index.
+     * @param column Column index.
+     * @param value  The value.
+     */
+    public void set(int row, long column, double value) {
+        checkIndex(row, column);
+        chunks[(int) (column / chunkColumns)].put((int) (column % chunkColumns) * rows + row, value);
+    }
+
+    /**
+     * Copy one column into an array.
+     *
+     * @param column Column index.
+     * @param values Output array of length {@link #getRows()}.
+     */
+    public void getColumn(long column, double[] values) {
+        checkIndex(0, column);
+        checkLength(values.length);
+        DoubleBuffer chunk = chunks[(int) (column / chunkColumns)];
+        int offset = (int) (column % chunkColumns) * rows;
+        for (int i = 0; i < rows; i++) {
+            values[i] = chunk.get(offset + i);
+        }
+    }
+
+    /**
+     * Copy an array into one column.
+     *
+     * @param column Column index.
+     * @param values Values of length {@link #getRows()}.
+     */
+    public void setColumn(long column, double[] values) {
+        checkIndex(0, column);
+        checkLength(values.length);
+        DoubleBuffer chunk = chunks[(int) (column / chunkColumns)];
+        int offset = (int) (column % chunkColumns) * rows;
+        for (int i = 0; i < rows; i++) {
+            chunk.put(offset + i, values[i]);
+        }
+    }
+
+    /**
+     * Check that the matrix has the given shape, for methods that write into a caller-supplied matrix.
+     *
+     * @param rows    Expected number of rows.
+     * @param columns Expected number of columns.
+     * @throws IllegalArgumentException if the shape differs.
+     */
+    public void checkShape(int rows, long columns) {
+        if (this.rows != rows || this.columns != columns) {
+            throw new IllegalArgumentException("Output shape must be " + rows + "x" + columns + ": "
+                    + this.rows + "x" + this.columns);
+        }
+    }
+
+    /**
+     * Copy the matrix to the heap.
+     *
+     * @return Matrix of shape [rows][columns].
+     */
+    public double[][] toArray() {
+        if (columns > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many columns for an array: " + columns);
+        }
+        double[][] result = new double[rows][(int) columns];
+        double[] column = new double[rows];
+        for (int t = 0; t < columns; t++) {
+            getColumn(t, column);
+            for (int f = 0; f < rows; f++) {
+                result[f][t] = column[f];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Release the file backing the matrix; a temporary spill file is deleted. Direct memory is
+     * released once the matrix is no longer referenced.
+     *
+     * @throws IOException if the file cannot be closed or deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        if (temporaryFile != null) {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    private void checkIndex(int row, long column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("Index (" + row + ", " + column + ") out of bounds for " + rows + "x" + columns);
+        }
+    }
+
+    private void checkLength(int length) {
+        if (length != rows) {
+            throw new IllegalArgumentException("Column length must be " + rows + ": " + length);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.netlcod.io;
+
+/**
+ * Random-access mono signal that is decoded on demand.
+ * <p>
+ * Analysis reads one frame at a time, so a source backed by a file only needs the working set of
+ * a single frame on the heap. Implementations must allow concurrent reads from several threads.
+ */
+public interface SampleSource {
+    /**
+     * Returns the number of samples.
+     *
+     * @return the signal length
+     */
+    long getLength();
+
+    /**
+     * Copy {@code frame.length} samples starting at {@code start}; samples outside
+     * {@code [0, length)} are read as zeros.
+     *
+     * @param start Index of the first sample (may be negative).
+     * @param frame Output buffer.
+     */
+    void read(long start, double[] frame);
+
+    /**
+     * Copy {@code frame.length} samples starting at {@code start} in single precision; samples
+     * outside {@code [0, length)} are read as zeros.
+     *
+     * @param start Index of the first sample (may be negative).
+     * @param frame Output buffer.
+     */
+    void read(long start, float[] frame);
+
+    /**
+     * Wrap a decoded signal without copying it.
+     *
+     * @param y The signal.
+     * @return Source reading from the array.
+     */
+    static SampleSource of(double[] y) {
+        return new DoubleArraySource(y);
+    }
+
+    /**
+     * Wrap a decoded single-precision signal without copying it.
+     *
+     * @param y The signal.
+     * @return Source reading from the array.
+     */
+    static SampleSource of(float[] y) {
+        return new FloatArraySource(y);
+    }
+}
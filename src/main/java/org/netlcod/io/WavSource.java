@@ -0,0 +1,274 @@
+package org.netlcod.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Memory-mapped WAV file decoded sample by sample.
+ * <p>
+ * The data chunk is mapped read-only in regions of at most 1 GiB, so files of any size can be
+ * analysed without reading them into the heap. Supported encodings are unsigned 8-bit, signed
+ * 16/24/32-bit PCM and 32/64-bit IEEE float, including {@code WAVE_FORMAT_EXTENSIBLE} headers.
+ * Integer samples are scaled to [-1, 1) and multichannel audio is mixed down to mono by
+ * averaging the channels, as {@code librosa.load(..., mono=True)} does.
+ * <p>
+ * Reads use absolute positions only, so an open source may be shared between threads.
+ */
+public final class WavSource implements SampleSource, Closeable {
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_IEEE_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+    private static final long MAX_REGION = 1L << 30;
+
+    private final FileChannel channel;
+    private final int sampleRate;
+    private final int channels;
+    private final int bitsPerSample;
+    private final boolean floatingPoint;
+    private final int blockAlign;
+    private final long length;
+    private final long regionBytes;
+    private final MappedByteBuffer[] regions;
+
+    private WavSource(FileChannel channel, int format, int channels, int sampleRate, int bitsPerSample,
+                      int blockAlign, long dataOffset, long dataSize) throws IOException {
+        this.channel = channel;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bitsPerSample = bitsPerSample;
+        this.floatingPoint = format == FORMAT_IEEE_FLOAT;
+        this.blockAlign = blockAlign;
+        this.length = dataSize / blockAlign;
+        this.regionBytes = (MAX_REGION / blockAlign) * blockAlign;
+
+        long bytes = length * blockAlign;
+        int nRegions = (int) ((bytes + regionBytes - 1) / regionBytes);
+        this.regions = new MappedByteBuffer[nRegions];
+        for (int i = 0; i < nRegions; i++) {
+            long offset = i * regionBytes;
+            long size = Math.min(regionBytes, bytes - offset);
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + offset, size);
+            regions[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Open and map a WAV file.
+     *
+     * @param path Path to the file.
+     * @return The sample source.
+     * @throws IOException If the file cannot be read or is not a supported WAV file.
+     */
+    public static WavSource open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return parse(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static WavSource parse(FileChannel channel) throws IOException {
+        ByteBuffer header = read(channel, 0, 12);
+        if (header.getInt(0) != 0x46464952 || header.getInt(8) != 0x45564157) {
+            throw new IOException("Not a RIFF/WAVE file");
+        }
+
+        int format = -1;
+        int channels = 0;
+        int sampleRate = 0;
+        int blockAlign = 0;
+        int bitsPerSample = 0;
+        long position = 12;
+        long fileSize = channel.size();
+        while (position + 8 <= fileSize) {
+            ByteBuffer chunk = read(channel, position, 8);
+            int id = chunk.getInt(0);
+            long size = chunk.getInt(4) & 0xFFFFFFFFL;
+            long body = position + 8;
+
+            if (id == 0x20746D66) {
+                // "fmt "
+                if (size < 16) {
+                    throw new IOException("Invalid WAV fmt chunk size: " + size);
+                }
+                ByteBuffer fmt = read(channel, body, (int) Math.min(size, 40));
+                format = fmt.getShort(0) & 0xFFFF;
+                channels = fmt.getShort(2) & 0xFFFF;
+                sampleRate = fmt.getInt(4);
+                blockAlign = fmt.getShort(12) & 0xFFFF;
+                bitsPerSample = fmt.getShort(14) & 0xFFFF;
+                if (format == FORMAT_EXTENSIBLE && size >= 26) {
+                    format = fmt.getShort(24) & 0xFFFF;
+                }
+            } else if (id == 0x61746164) {
+                // "data"
+                if (format < 0) {
+                    throw new IOException("Missing fmt chunk before data chunk");
+                }
+                checkFormat(format, channels, bitsPerSample, blockAlign);
+                long dataSize = Math.min(size, fileSize - body);
+                return new WavSource(channel, format, channels, sampleRate, bitsPerSample, blockAlign, body, dataSize);
+            }
+
+            position = body + size + (size & 1);
+        }
+
+        throw new IOException("Missing data chunk");
+    }
+
+    private static void checkFormat(int format, int channels, int bitsPerSample, int blockAlign) throws IOException {
+        boolean supported = format == FORMAT_PCM
+                ? bitsPerSample == 8 || bitsPerSample == 16 || bitsPerSample == 24 || bitsPerSample == 32
+                : format == FORMAT_IEEE_FLOAT && (bitsPerSample == 32 || bitsPerSample == 64);
+        if (!supported) {
+            throw new IOException("Unsupported WAV encoding: format " + format + ", " + bitsPerSample + " bits");
+        }
+        if (channels <= 0 || blockAlign != channels * (bitsPerSample / 8)) {
+            throw new IOException("Invalid WAV block alignment: " + blockAlign);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of WAV file");
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the sampling rate of the file.
+     *
+     * @return the sampling rate
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Returns the number of channels of the file (the source itself is mono).
+     *
+     * @return the number of channels
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * Returns the bits per sample of the encoding.
+     *
+     * @return the bits per sample
+     */
+    public int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    /**
+     * Returns the number of samples per channel.
+     *
+     * @return the signal length
+     */
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public void read(long start, double[] frame) {
+        int from = (int) Math.min(frame.length, Math.max(0, -start));
+        int to = (int) Math.max(from, Math.min(frame.length, length - start));
+        Arrays.fill(frame, 0, from, 0.0);
+
+        int i = from;
+        while (i < to) {
+            long offset = (start + i) * blockAlign;
+            ByteBuffer region = regions[(int) (offset / regionBytes)];
+            int position = (int) (offset % regionBytes);
+            int count = Math.min(to - i, (region.limit() - position) / blockAlign);
+            for (int end = i + count; i < end; i++, position += blockAlign) {
+                frame[i] = decode(region, position);
+            }
+        }
+
+        Arrays.fill(frame, to, frame.length, 0.0);
+    }
+
+    @Override
+    public void read(long start, float[] frame) {
+        int from = (int) Math.min(frame.length, Math.max(0, -start));
+        int to = (int) Math.max(from, Math.min(frame.length, length - start));
+        Arrays.fill(frame, 0, from, 0.0f);
+
+        int i = from;
+        while (i < to) {
+            long offset = (start + i) * blockAlign;
+            ByteBuffer region = regions[(int) (offset / regionBytes)];
+            int position = (int) (offset % regionBytes);
+            int count = Math.min(to - i, (region.limit() - position) / blockAlign);
+            for (int end = i + count; i < end; i++, position += blockAlign) {
+                frame[i] = (float) decode(region, position);
+            }
+        }
+
+        Arrays.fill(frame, to, frame.length, 0.0f);
+    }
+
+    /**
+     * Decode one sample block and mix its channels down to mono.
+     *
+     * @param region   Mapped region.
+     * @param position Byte position of the block in the region.
+     * @return The mono sample.
+     */
+    private double decode(ByteBuffer region, int position) {
+        if (channels == 1) {
+            return decodeChannel(region, position);
+        }
+        int bytes = bitsPerSample / 8;
+        double sum = 0;
+        for (int c = 0; c < channels; c++) {
+            sum += decodeChannel(region, position + c * bytes);
+        }
+        return sum / channels;
+    }
+
+    private double decodeChannel(ByteBuffer region, int position) {
+        if (floatingPoint) {
+            return bitsPerSample == 32 ? region.getFloat(position) : region.getDouble(position);
+        }
+        switch (bitsPerSample) {
+            case 8:
+                return ((region.get(position) & 0xFF) - 128) / 128.0;
+            case 16:
+                return region.getShort(position) / 32768.0;
+            case 24:
+                int value = (region.get(position) & 0xFF)
+                        | (region.get(position + 1) & 0xFF) << 8
+                        | region.get(position + 2) << 16;
+                return value / 8388608.0;
+            default:
+                return region.getInt(position) / 2147483648.0;
+        }
+    }
+
+    /**
+     * Close the file. Mapped regions are released by the garbage collector.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,31 @@
+package org.netlcod.kernel;
+
+/**
+ * Runtime selection of the kernel implementation.
+ */
+final class KernelSupport {
+    static final Kernels SCALAR = new ScalarKernels();
+    static final Kernels SELECTED = select();
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNELS = "org.netlcod.kernel.VectorKernels";
+
+    private KernelSupport() {
+    }
+
+    private static Kernels select() {
+        if ("scalar".equals(System.getProperty("jlibrosa2.kernels"))) {
+            return SCALAR;
+        }
+        if (!ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            return SCALAR;
+        }
+        try {
+            Class<?> type = Class.forName(VECTOR_KERNELS);
+            return (Kernels) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not compiled in, or compiled for a newer class file version
+            return SCALAR;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.netlcod.kernel;
+
+/**
+ * Inner loops of the analysis pipeline.
+ * <p>
+ * {@link #get()} returns a SIMD implementation based on the {@code jdk.incubator.vector} module
+ * when it is compiled in (builds on JDK 17+) and the module is resolved at runtime
+ * ({@code --add-modules jdk.incubator.vector}); otherwise it returns the scalar implementation.
+ * Element-wise kernels give identical results in both; {@link #dot} sums in a different order,
+ * so it agrees to about 1e-15 relative. Every implementation is deterministic: the same input
+ * always gives the same output, whether the code is interpreted or compiled.
+ * The system property {@code jlibrosa2.kernels=scalar} forces the scalar implementation.
+ */
+public interface Kernels {
+    /**
+     * Returns the implementation name ("scalar" or "vector").
+     *
+     * @return the implementation name
+     */
+    String getName();
+
+    /**
+     * Multiply element-wise in place: {@code a[i] *= b[i]}.
+     *
+     * @param a      Values, overwritten with the products.
+     * @param b      Factors.
+     * @param length Number of elements.
+     */
+    void multiply(double[] a, double[] b, int length);
+
+    /**
+     * Compute the power spectrum from separate real and imaginary parts.
+     *
+     * @param real   Real parts.
+     * @param imag   Imaginary parts.
+     * @param power  Output power.
+     * @param length Number of bins.
+     */
+    void power(double[] real, double[] imag, double[] power, int length);
+
+    /**
+     * Compute the power spectrum from a packed real FFT result (see {@link org.netlcod.spectrum.RealFFT}).
+     *
+     * @param packed Packed spectrum of length n.
+     * @param power  Output power, length n / 2 + 1.
+     */
+    void power(double[] packed, double[] power);
+
+    /**
+     * Compute a dot product.
+     *
+     * @param a       First vector.
+     * @param aOffset Index of the first element of a.
+     * @param b       Second vector.
+     * @param bOffset Index of the first element of b.
+     * @param length  Number of elements.
+     * @return The dot product.
+     */
+    double dot(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    /**
+     * Accumulate a scaled vector: {@code y[i] += alpha * x[i]}.
+     *
+     * @param alpha  Scale.
+     * @param x      Input vector.
+     * @param y      Accumulator.
+     * @param length Number of elements.
+     */
+    void axpy(double alpha, double[] x, double[] y, int length);
+
+    /**
+     * Convert power values to decibels: {@code db[i] = 10 * log10(max(amin, power[i]) / ref)}.
+     *
+     * @param power  Power values.
+     * @param db     Output values (may be the same array as power).
+     * @param length Number of elements.
+     * @param ref    The reference value for dB scaling.
+     * @param amin   The minimum threshold for numerical stability.
+     */
+    void powerToDB(double[] power, double[] db, int length, double ref, double amin);
+
+    /**
+     * Returns the fastest implementation available in this JVM.
+     *
+     * @return the kernels
+     */
+    static Kernels get() {
+        return KernelSupport.SELECTED;
+    }
+
+    /**
+     * Returns the scalar implementation.
+     *
+     * @return the scalar kernels
+     */
+    static Kernels scalar() {
+        return KernelSupport.SCALAR;
+    }
+}
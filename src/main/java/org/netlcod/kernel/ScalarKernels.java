@@ -0,0 +1,60 @@
+package org.netlcod.kernel;
+
+/**
+ * Portable implementation of the kernels.
+ */
+final class ScalarKernels implements Kernels {
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public void multiply(double[] a, double[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            a[i] *= b[i];
+        }
+    }
+
+    @Override
+    public void power(double[] real, double[] imag, double[] power, int length) {
+        for (int k = 0; k < length; k++) {
+            power[k] = real[k] * real[k] + imag[k] * imag[k];
+        }
+    }
+
+    @Override
+    public void power(double[] packed, double[] power) {
+        int half = packed.length / 2;
+        power[0] = packed[0] * packed[0];
+        for (int k = 1; k < half; k++) {
+            double re = packed[2 * k];
+            double im = packed[2 * k + 1];
+            power[k] = re * re + im * im;
+        }
+        power[half] = packed[1] * packed[1];
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, double[] y, int length) {
+        for (int i = 0; i < length; i++) {
+            y[i] += alpha * x[i];
+        }
+    }
+
+    @Override
+    public void powerToDB(double[] power, double[] db, int length, double ref, double amin) {
+        for (int i = 0; i < length; i++) {
+            db[i] = 10 * Math.log10(Math.max(amin, power[i]) / ref);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.netlcod.spectrum;
+
+import org.apache.commons.math3.complex.Complex;
+
+/**
+ * Complex spectrogram backed by two contiguous primitive arrays.
+ * <p>
+ * Real and imaginary parts are stored separately, frame by frame: the bins of one frame
+ * are contiguous, so a frame can be written or read with a single array copy.
+ */
+public final class ComplexSpectrogram {
+    private final int bins;
+    private final int frames;
+    final double[] real;
+    final double[] imag;
+
+    /**
+     * Create a zero-filled spectrogram.
+     *
+     * @param bins   Number of frequency bins.
+     * @param frames Number of frames.
+     */
+    public ComplexSpectrogram(int bins, int frames) {
+        if (bins <= 0 || frames < 0) {
+            throw new IllegalArgumentException("Invalid spectrogram shape: " + bins + "x" + frames);
+        }
+        this.bins = bins;
+        this.frames = frames;
+        this.real = new double[Math.multiplyExact(bins, frames)];
+        this.imag = new double[real.length];
+    }
+
+    /**
+     * Convert a matrix of complex values with shape [bins][frames].
+     *
+     * @param matrix Complex matrix.
+     * @return Packed spectrogram.
+     */
+    public static ComplexSpectrogram fromComplex(Complex[][] matrix) {
+        ComplexSpectrogram spectrogram = new ComplexSpectrogram(matrix.length, matrix[0].length);
+        for (int f = 0; f < spectrogram.bins; f++) {
+            for (int t = 0; t < spectrogram.frames; t++) {
+                spectrogram.set(f, t, matrix[f][t].getReal(), matrix[f][t].getImaginary());
+            }
+        }
+        return spectrogram;
+    }
+
+    /**
+     * Convert to a matrix of complex values with shape [bins][frames].
+     *
+     * @return Complex matrix.
+     */
+    public Complex[][] toComplex() {
+        return toComplex(Layout.FREQUENCY_MAJOR);
+    }
+
+    /**
+     * Convert to a matrix of complex values.
+     *
+     * @param layout Output layout.
+     * @return Complex matrix of shape [bins][frames] or [frames][bins].
+     */
+    public Complex[][] toComplex(Layout layout) {
+        if (layout == Layout.FRAME_MAJOR) {
+            Complex[][] matrix = new Complex[frames][bins];
+            for (int t = 0; t < frames; t++) {
+                int offset = t * bins;
+                for (int f = 0; f < bins; f++) {
+                    matrix[t][f] = new Complex(real[offset + f], imag[offset + f]);
+                }
+            }
+            return matrix;
+        }
+
+        Complex[][] matrix = new Complex[bins][frames];
+        for (int f = 0; f < bins; f++) {
+            for (int t = 0; t < frames; t++) {
+                int i = t * bins + f;
+                matrix[f][t] = new Complex(real[i], imag[i]);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Returns the number of frequency bins.
+     *
+     * @return the number of frequency bins
+     */
+    public int getBins() {
+        return bins;
+    }
+
+    /**
+     * Returns the number of frames.
+     *
+     * @return the number of frames
+     */
+    public int getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the real part of a value.
+     *
+     * @param bin   Frequency bin.
+     * @param frame Frame index.
+     * @return the real part
+     */
+    public double getReal(int bin, int frame) {
+        return real[index(bin, frame)];
+    }
+
+    /**
+     * Returns the imaginary part of a value.
+     *
+     * @param bin   Frequency bin.
+     * @param frame Frame index.
+     * @return the imaginary part
+     */
+    public double getImaginary(int bin, int frame) {
+        return imag[index(bin, frame)];
+    }
+
+    /**
+     * Sets a value.
+     *
+     * @param bin       Frequency bin.
+     * @param frame     Frame index.
+     * @param realPart  Real part.
+     * @param imagPart  Imaginary part.
+     */
+    public void set(int bin, int frame, double realPart, double imagPart) {
+        int i = index(bin, frame);
+        real[i] = realPart;
+        imag[i] = imagPart;
+    }
+
+    /**
+     * Returns the magnitude of a value.
+     *
+     * @param bin   Frequency bin.
+     * @param frame Frame index.
+     * @return the magnitude
+     */
+    public double getMagnitude(int bin, int frame) {
+        return Math.sqrt(getPower(bin, frame));
+    }
+
+    /**
+     * Returns the power (squared magnitude) of a value.
+     *
+     * @param bin   Frequency bin.
+     * @param frame Frame index.
+     * @return the power
+     */
+    public double getPower(int bin, int frame) {
+        int i = index(bin, frame);
+        return real[i] * real[i] + imag[i] * imag[i];
+    }
+
+    /**
+     * Returns the phase (in radians) of a value.
+     *
+     * @param bin   Frequency bin.
+     * @param frame Frame index.
+     * @return the phase
+     */
+    public double getPhase(int bin, int frame) {
+        int i = index(bin, frame);
+        return Math.atan2(imag[i], real[i]);
+    }
+
+    /**
+     * Copy one frame into the given arrays.
+     *
+     * @param frame    Frame index.
+     * @param realPart Output real parts, length at least bins.
+     * @param imagPart Output imaginary parts, length at least bins.
+     */
+    public void getFrame(int frame, double[] realPart, double[] imagPart) {
+        int offset = index(0, frame);
+        System.arraycopy(real, offset, realPart, 0, bins);
+        System.arraycopy(imag, offset, imagPart, 0, bins);
+    }
+
+    /**
+     * Overwrite one frame from the given arrays.
+     *
+     * @param frame    Frame index.
+     * @param realPart Real parts, length at least bins.
+     * @param imagPart Imaginary parts, length at least bins.
+     */
+    public void setFrame(int frame, double[] realPart, double[] imagPart) {
+        int offset = index(0, frame);
+        System.arraycopy(realPart, 0, real, offset, bins);
+        System.arraycopy(imagPart, 0, imag, offset, bins);
+    }
+
+    /**
+     * Compute the magnitude spectrogram.
+     *
+     * @return Array of shape [bins][frames].
+     */
+    public double[][] magnitude() {
+        return magnitude(Layout.FREQUENCY_MAJOR);
+    }
+
+    /**
+     * Compute the magnitude spectrogram.
+     *
+     * @param layout Output layout.
+     * @return Array of shape [bins][frames] or [frames][bins].
+     */
+    public double[][] magnitude(Layout layout) {
+        double[][] result = power(layout);
+        for (double[] row : result) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = Math.sqrt(row[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compute the power spectrogram.
+     *
+     * @return Array of shape [bins][frames].
+     */
+    public double[][] power() {
+        return power(Layout.FREQUENCY_MAJOR);
+    }
+
+    /**
+     * Compute the power spectrogram.
+     *
+     * @param layout Output layout.
+     * @return Array of shape [bins][frames] or [frames][bins].
+     */
+    public double[][] power(Layout layout) {
+        boolean frameMajor = layout == Layout.FRAME_MAJOR;
+        double[][] result = frameMajor ? new double[frames][bins] : new double[bins][frames];
+        for (int t = 0; t < frames; t++) {
+            int offset = t * bins;
+            for (int f = 0; f < bins; f++) {
+                double re = real[offset + f];
+                double im = imag[offset + f];
+                if (frameMajor) {
+                    result[t][f] = re * re + im * im;
+                } else {
+                    result[f][t] = re * re + im * im;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compute the phase spectrogram (in radians).
+     *
+     * @return Array of shape [bins][frames].
+     */
+    public double[][] phase() {
+        return phase(Layout.FREQUENCY_MAJOR);
+    }
+
+    /**
+     * Compute the phase spectrogram (in radians).
+     *
+     * @param layout Output layout.
+     * @return Array of shape [bins][frames] or [frames][bins].
+     */
+    public double[][] phase(Layout layout) {
+        boolean frameMajor = layout == Layout.FRAME_MAJOR;
+        double[][] result = frameMajor ? new double[frames][bins] : new double[bins][frames];
+        for (int t = 0; t < frames; t++) {
+            int offset = t * bins;
+            for (int f = 0; f < bins; f++) {
+                double value = Math.atan2(imag[offset + f], real[offset + f]);
+                if (frameMajor) {
+                    result[t][f] = value;
+                } else {
+                    result[f][t] = value;
+                }
+            }
+        }
+        return result;
+    }
+
+    private int index(int bin, int frame) {
+        if (bin < 0 || bin >= bins || frame < 0 || frame >= frames) {
+            throw new IndexOutOfBoundsException("Bin " + bin + ", frame " + frame);
+        }
+        return frame * bins + bin;
+    }
+}
@@ -0,0 +1,396 @@
+package org.netlcod.spectrum;
+
+import java.util.Arrays;
+
+/**
+ * Orthonormal DCT-II that computes only the first K of N coefficients.
+ * <p>
+ * Two strategies are available: an N-point FFT with Makhoul's reordering, and a precomputed
+ * K x N basis matrix. The constructor picks whichever needs fewer operations for the given
+ * N and K (the FFT strategy requires N to be a power of two). An instance holds no mutable
+ * state and may be shared between threads; the FFT strategy needs a caller-supplied work
+ * buffer of length N.
+ */
+public final class Dct {
+    /**
+     * Transform algorithm.
+     */
+    public enum Strategy {
+        /**
+         * N-point real FFT of the reordered input (Makhoul).
+         */
+        FFT,
+        /**
+         * Dot products with the first K rows of the basis matrix.
+         */
+        BASIS
+    }
+
+    private final int n;
+    private final int k;
+    private final Strategy strategy;
+    private final double[][] basis;
+    private final RealFFT fft;
+    private final double[] cos;
+    private final double[] sin;
+    private volatile FloatTables floatTables;
+
+    /**
+     * Create a DCT engine, choosing the cheaper strategy.
+     *
+     * @param n Input size.
+     * @param k Number of coefficients to compute (1 &lt;= k &lt;= n).
+     */
+    public Dct(int n, int k) {
+        this(n, k, cheaperStrategy(n, k));
+    }
+
+    /**
+     * Create a DCT engine with the given strategy.
+     *
+     * @param n        Input size.
+     * @param k        Number of coefficients to compute (1 &lt;= k &lt;= n).
+     * @param strategy Transform algorithm.
+     */
+    public Dct(int n, int k, Strategy strategy) {
+        if (n <= 0 || k <= 0 || k > n) {
+            throw new IllegalArgumentException("Invalid DCT size: " + k + " of " + n);
+        }
+        if (strategy == Strategy.FFT && !isPowerOfTwo(n)) {
+            throw new IllegalArgumentException("FFT strategy requires a power of two size: " + n);
+        }
+        this.n = n;
+        this.k = k;
+        this.strategy = strategy;
+
+        if (strategy == Strategy.BASIS) {
+            basis = new double[k][n];
+            for (int i = 0; i < k; i++) {
+                double scale = scale(i);
+                for (int j = 0; j < n; j++) {
+                    basis[i][j] = scale * Math.cos(Math.PI * i * (2 * j + 1) / (2.0 * n));
+                }
+            }
+            fft = null;
+            cos = null;
+            sin = null;
+        } else {
+            basis = null;
+            fft = new RealFFT(n);
+            cos = new double[k];
+            sin = new double[k];
+            for (int i = 0; i < k; i++) {
+                double theta = Math.PI * i / (2.0 * n);
+                cos[i] = scale(i) * Math.cos(theta);
+                sin[i] = scale(i) * Math.sin(theta);
+            }
+        }
+    }
+
+    /**
+     * Returns the input size N.
+     *
+     * @return the input size
+     */
+    public int getSize() {
+        return n;
+    }
+
+    /**
+     * Returns the number of computed coefficients K.
+     *
+     * @return the number of coefficients
+     */
+    public int getCoefficients() {
+        return k;
+    }
+
+    /**
+     * Returns the transform algorithm.
+     *
+     * @return the strategy
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Transform one vector.
+     *
+     * @param input  Input of length N.
+     * @param output Output of length at least K.
+     * @param work   Scratch buffer of length at least N (unused by the basis strategy).
+     */
+    public void transform(double[] input, double[] output, double[] work) {
+        if (strategy == Strategy.BASIS) {
+            for (int i = 0; i < k; i++) {
+                double[] row = basis[i];
+                double sum = 0;
+                for (int j = 0; j < n; j++) {
+                    sum += row[j] * input[j];
+                }
+                output[i] = sum;
+            }
+            return;
+        }
+
+        int half = (n + 1) / 2;
+        for (int j = 0; j < half; j++) {
+            work[j] = input[2 * j];
+        }
+        for (int j = 0; j < n / 2; j++) {
+            work[n - 1 - j] = input[2 * j + 1];
+        }
+
+        fft.forward(work);
+
+        output[0] = work[0] * cos[0];
+        for (int i = 1; i < k; i++) {
+            double re;
+            double im;
+            if (i < n / 2) {
+                re = work[2 * i];
+                im = work[2 * i + 1];
+            } else if (i == n / 2) {
+                re = work[1];
+                im = 0;
+            } else {
+                re = work[2 * (n - i)];
+                im = -work[2 * (n - i) + 1];
+            }
+            output[i] = re * cos[i] + im * sin[i];
+        }
+    }
+
+    /**
+     * Transform every column of a row-major matrix.
+     *
+     * @param y Matrix of shape [N][frames].
+     * @return Coefficients of shape [K][frames].
+     */
+    public double[][] transform(double[][] y) {
+        double[][] result = new double[k][y[0].length];
+        transform(y, Layout.FREQUENCY_MAJOR, result);
+        return result;
+    }
+
+    /**
+     * Transform a matrix into the first K rows (or columns, in frame-major layout) of an output
+     * that may hold more, such as the deltas stacked after the coefficients.
+     *
+     * @param y      Matrix of shape [N][frames] or [frames][N].
+     * @param layout Layout of the input and the output.
+     * @param output Output of shape [at least K][frames] or [frames][at least K].
+     */
+    public void transform(double[][] y, Layout layout, double[][] output) {
+        if (layout == Layout.FRAME_MAJOR) {
+            double[] work = new double[n];
+            for (int t = 0; t < y.length; t++) {
+                transform(y[t], output[t], work);
+            }
+            return;
+        }
+        int nFrames = y[0].length;
+
+        if (strategy == Strategy.BASIS) {
+            // Accumulate whole rows so that the input is read in memory order
+            for (int i = 0; i < k; i++) {
+                double[] row = basis[i];
+                double[] out = output[i];
+                Arrays.fill(out, 0, nFrames, 0);
+                for (int j = 0; j < n; j++) {
+                    double weight = row[j];
+                    double[] in = y[j];
+                    for (int t = 0; t < nFrames; t++) {
+                        out[t] += weight * in[t];
+                    }
+                }
+            }
+            return;
+        }
+
+        double[] column = new double[n];
+        double[] work = new double[n];
+        double[] coefficients = new double[k];
+        for (int t = 0; t < nFrames; t++) {
+            for (int j = 0; j < n; j++) {
+                column[j] = y[j][t];
+            }
+            transform(column, coefficients, work);
+            for (int i = 0; i < k; i++) {
+                output[i][t] = coefficients[i];
+            }
+        }
+    }
+
+    /**
+     * Transform every row of a frame-major matrix, or every column of a frequency-major one.
+     *
+     * @param y      Matrix of shape [N][frames] or [frames][N].
+     * @param layout Layout of the input and the output.
+     * @return Coefficients of shape [K][frames] or [frames][K].
+     */
+    public double[][] transform(double[][] y, Layout layout) {
+        if (layout != Layout.FRAME_MAJOR) {
+            return transform(y);
+        }
+        double[][] result = new double[y.length][k];
+        transform(y, layout, result);
+        return result;
+    }
+
+    /**
+     * Transform one vector in single precision.
+     *
+     * @param input  Input of length N.
+     * @param output Output of length at least K.
+     * @param work   Scratch buffer of length at least N (unused by the basis strategy).
+     */
+    public void transform(float[] input, float[] output, float[] work) {
+        FloatTables tables = floatTables();
+        if (strategy == Strategy.BASIS) {
+            for (int i = 0; i < k; i++) {
+                float[] row = tables.basis[i];
+                float sum = 0;
+                for (int j = 0; j < n; j++) {
+                    sum += row[j] * input[j];
+                }
+                output[i] = sum;
+            }
+            return;
+        }
+
+        int half = (n + 1) / 2;
+        for (int j = 0; j < half; j++) {
+            work[j] = input[2 * j];
+        }
+        for (int j = 0; j < n / 2; j++) {
+            work[n - 1 - j] = input[2 * j + 1];
+        }
+
+        tables.fft.forward(work);
+
+        output[0] = work[0] * tables.cos[0];
+        for (int i = 1; i < k; i++) {
+            float re;
+            float im;
+            if (i < n / 2) {
+                re = work[2 * i];
+                im = work[2 * i + 1];
+            } else if (i == n / 2) {
+                re = work[1];
+                im = 0;
+            } else {
+                re = work[2 * (n - i)];
+                im = -work[2 * (n - i) + 1];
+            }
+            output[i] = re * tables.cos[i] + im * tables.sin[i];
+        }
+    }
+
+    /**
+     * Transform every column of a row-major single-precision matrix.
+     *
+     * @param y Matrix of shape [N][frames].
+     * @return Coefficients of shape [K][frames].
+     */
+    public float[][] transform(float[][] y) {
+        int nFrames = y[0].length;
+        float[][] result = new float[k][nFrames];
+
+        if (strategy == Strategy.BASIS) {
+            float[][] basis = floatTables().basis;
+            for (int i = 0; i < k; i++) {
+                float[] row = basis[i];
+                float[] out = result[i];
+                for (int j = 0; j < n; j++) {
+                    float weight = row[j];
+                    float[] in = y[j];
+                    for (int t = 0; t < nFrames; t++) {
+                        out[t] += weight * in[t];
+                    }
+                }
+            }
+            return result;
+        }
+
+        float[] column = new float[n];
+        float[] work = new float[n];
+        float[] coefficients = new float[k];
+        for (int t = 0; t < nFrames; t++) {
+            for (int j = 0; j < n; j++) {
+                column[j] = y[j][t];
+            }
+            transform(column, coefficients, work);
+            for (int i = 0; i < k; i++) {
+                result[i][t] = coefficients[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Choose the strategy with the lower estimated operation count.
+     *
+     * @param n Input size.
+     * @param k Number of coefficients.
+     * @return the cheaper strategy
+     */
+    public static Strategy cheaperStrategy(int n, int k) {
+        if (n < 2 || !isPowerOfTwo(n)) {
+            return Strategy.BASIS;
+        }
+        // Radix-2 real FFT: about 2.5 N log2 N multiply-adds plus O(N) reordering and rotation
+        double fftCost = 2.5 * n * (31 - Integer.numberOfLeadingZeros(n)) + 2.0 * n + 2.0 * k;
+        double basisCost = (double) k * n;
+        return basisCost <= fftCost ? Strategy.BASIS : Strategy.FFT;
+    }
+
+    private double scale(int i) {
+        return i == 0 ? Math.sqrt(1.0 / n) : Math.sqrt(2.0 / n);
+    }
+
+    /**
+     * Returns the single-precision tables, rounded from the double ones on first use so that
+     * engines only used in double precision do not carry them.
+     */
+    private FloatTables floatTables() {
+        FloatTables tables = floatTables;
+        if (tables == null) {
+            tables = strategy == Strategy.BASIS
+                    ? new FloatTables(toFloat(basis), null, null, null)
+                    : new FloatTables(null, new FloatRealFFT(n), toFloat(new double[][]{cos})[0], toFloat(new double[][]{sin})[0]);
+            floatTables = tables;
+        }
+        return tables;
+    }
+
+    private static float[][] toFloat(double[][] values) {
+        float[][] result = new float[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = new float[values[i].length];
+            for (int j = 0; j < values[i].length; j++) {
+                result[i][j] = (float) values[i][j];
+            }
+        }
+        return result;
+    }
+
+    private static boolean isPowerOfTwo(int n) {
+        return n > 0 && (n & (n - 1)) == 0;
+    }
+
+    private static final class FloatTables {
+        private final float[][] basis;
+        private final FloatRealFFT fft;
+        private final float[] cos;
+        private final float[] sin;
+
+        FloatTables(float[][] basis, FloatRealFFT fft, float[] cos, float[] sin) {
+            this.basis = basis;
+            this.fft = fft;
+            this.cos = cos;
+            this.sin = sin;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.netlcod.spectrum;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bit-reversal permutation and twiddle factors of a real FFT size, shared by {@link RealFFT}
+ * and {@link FloatRealFFT}.
+ * <p>
+ * The double-precision tables are computed once per size and cached process-wide (there are at
+ * most 30 power-of-two sizes); the single-precision twiddles are rounded from them on first use.
+ * Instances are immutable once published and may be shared between threads.
+ */
+final class FftTables {
+    private static final ConcurrentMap<Integer, FftTables> CACHE = new ConcurrentHashMap<>();
+
+    final int n;
+    final int half;
+    final int[] bitReverse;
+    final double[] cos;
+    final double[] sin;
+    final double[] splitCos;
+    final double[] splitSin;
+    private volatile FloatTwiddles floatTwiddles;
+
+    private FftTables(int n) {
+        this.n = n;
+        this.half = n / 2;
+
+        // Bit-reversal permutation of the half-size complex transform
+        bitReverse = new int[half];
+        int bits = Integer.numberOfTrailingZeros(half);
+        for (int i = 0; i < half; i++) {
+            bitReverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+
+        // Twiddles of the half-size complex transform
+        cos = new double[Math.max(1, half / 2)];
+        sin = new double[cos.length];
+        for (int i = 0; i < half / 2; i++) {
+            cos[i] = Math.cos(2 * Math.PI * i / half);
+            sin[i] = Math.sin(2 * Math.PI * i / half);
+        }
+
+        // Twiddles used to split the packed spectrum into the real spectrum
+        splitCos = new double[half / 2 + 1];
+        splitSin = new double[half / 2 + 1];
+        for (int k = 0; k <= half / 2; k++) {
+            splitCos[k] = Math.cos(2 * Math.PI * k / n);
+            splitSin[k] = Math.sin(2 * Math.PI * k / n);
+        }
+    }
+
+    /**
+     * Returns the tables of a transform size, building and caching them on first use.
+     *
+     * @param n Transform size (must be a power of two, at least 2).
+     * @return The tables.
+     */
+    static FftTables of(int n) {
+        if (n < 2 || (n & (n - 1)) != 0) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + n);
+        }
+        return CACHE.computeIfAbsent(n, FftTables::new);
+    }
+
+    /**
+     * Returns the twiddle factors rounded to single precision.
+     *
+     * @return The single-precision twiddles.
+     */
+    FloatTwiddles floatTwiddles() {
+        FloatTwiddles twiddles = floatTwiddles;
+        if (twiddles == null) {
+            twiddles = new FloatTwiddles(this);
+            floatTwiddles = twiddles;
+        }
+        return twiddles;
+    }
+
+    /**
+     * Twiddle factors of {@link FftTables} rounded once to single precision.
+     */
+    static final class FloatTwiddles {
+        final float[] cos;
+        final float[] sin;
+        final float[] splitCos;
+        final float[] splitSin;
+
+        private FloatTwiddles(FftTables tables) {
+            this.cos = toFloat(tables.cos);
+            this.sin = toFloat(tables.sin);
+            this.splitCos = toFloat(tables.splitCos);
+            this.splitSin = toFloat(tables.splitSin);
+        }
+
+        private static float[] toFloat(double[] values) {
+            float[] result = new float[values.length];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = (float) values[i];
+            }
+            return result;
+        }
+    }
+}
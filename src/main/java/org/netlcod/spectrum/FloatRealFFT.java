@@ -0,0 +1,223 @@
+package org.netlcod.spectrum;
+
+/**
+ * Single-precision counterpart of {@link RealFFT}.
+ * <p>
+ * The bit-reversal permutation and twiddle factors are those of {@link RealFFT}, shared per
+ * size, with the twiddles rounded once to float; only the butterflies, which mirror
+ * {@link RealFFT} statement for statement, run in float arithmetic. The relative error of a
+ * transform grows as about 6e-8 * log2(n). An instance holds no mutable state and may be
+ * shared between threads.
+ * <p>
+ * The in-place methods use the packed layout:
+ * <pre>
+ * a[0]      = Re X[0]
+ * a[1]      = Re X[n / 2]
+ * a[2k]     = Re X[k],  0 &lt; k &lt; n / 2
+ * a[2k + 1] = Im X[k],  0 &lt; k &lt; n / 2
+ * </pre>
+ */
+public final class FloatRealFFT {
+    private final int n;
+    private final int half;
+    private final int[] bitReverse;
+    private final float[] cos;
+    private final float[] sin;
+    private final float[] splitCos;
+    private final float[] splitSin;
+
+    /**
+     * Create an FFT engine for the given transform size.
+     *
+     * @param n Transform size (must be a power of two, at least 2).
+     */
+    public FloatRealFFT(int n) {
+        FftTables tables = FftTables.of(n);
+        FftTables.FloatTwiddles twiddles = tables.floatTwiddles();
+        this.n = n;
+        this.half = tables.half;
+        this.bitReverse = tables.bitReverse;
+        this.cos = twiddles.cos;
+        this.sin = twiddles.sin;
+        this.splitCos = twiddles.splitCos;
+        this.splitSin = twiddles.splitSin;
+    }
+
+    /**
+     * Returns the transform size.
+     *
+     * @return the transform size
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Returns the number of non-negative frequency bins (n / 2 + 1).
+     *
+     * @return the number of frequency bins
+     */
+    public int bins() {
+        return half + 1;
+    }
+
+    /**
+     * Compute the forward transform in place.
+     *
+     * @param a Real input of length n, replaced by the packed spectrum.
+     */
+    public void forward(float[] a) {
+        transform(a, false);
+
+        float zr = a[0];
+        float zi = a[1];
+        a[0] = zr + zi;
+        a[1] = zr - zi;
+
+        for (int k = 1; k <= half / 2; k++) {
+            int j = half - k;
+            float ar = a[2 * k];
+            float ai = a[2 * k + 1];
+            float br = a[2 * j];
+            float bi = a[2 * j + 1];
+
+            float er = (ar + br) * 0.5f;
+            float ei = (ai - bi) * 0.5f;
+            float or = (ai + bi) * 0.5f;
+            float oi = (br - ar) * 0.5f;
+
+            float c = splitCos[k];
+            float s = splitSin[k];
+            float tr = c * or + s * oi;
+            float ti = c * oi - s * or;
+
+            a[2 * k] = er + tr;
+            a[2 * k + 1] = ei + ti;
+            if (j != k) {
+                a[2 * j] = er - tr;
+                a[2 * j + 1] = ti - ei;
+            }
+        }
+    }
+
+    /**
+     * Compute the forward transform of {@code a} in place and unpack the spectrum.
+     *
+     * @param a    Real input of length n, replaced by the packed spectrum.
+     * @param real Output real parts, length at least n / 2 + 1.
+     * @param imag Output imaginary parts, length at least n / 2 + 1.
+     */
+    public void forward(float[] a, float[] real, float[] imag) {
+        forward(a);
+        real[0] = a[0];
+        imag[0] = 0;
+        for (int k = 1; k < half; k++) {
+            real[k] = a[2 * k];
+            imag[k] = a[2 * k + 1];
+        }
+        real[half] = a[1];
+        imag[half] = 0;
+    }
+
+    /**
+     * Compute the inverse transform in place (normalized by 1 / n).
+     *
+     * @param a Packed spectrum of length n, replaced by the real signal.
+     */
+    public void inverse(float[] a) {
+        float x0 = a[0];
+        float xm = a[1];
+        a[0] = (x0 + xm) * 0.5f;
+        a[1] = (x0 - xm) * 0.5f;
+
+        for (int k = 1; k <= half / 2; k++) {
+            int j = half - k;
+            float xr = a[2 * k];
+            float xi = a[2 * k + 1];
+            float yr = a[2 * j];
+            float yi = a[2 * j + 1];
+
+            float er = (xr + yr) * 0.5f;
+            float ei = (xi - yi) * 0.5f;
+            float dr = (xr - yr) * 0.5f;
+            float di = (xi + yi) * 0.5f;
+
+            float c = splitCos[k];
+            float s = splitSin[k];
+            float tr = c * di + s * dr;
+            float ti = c * dr - s * di;
+
+            a[2 * k] = er - tr;
+            a[2 * k + 1] = ei + ti;
+            if (j != k) {
+                a[2 * j] = er + tr;
+                a[2 * j + 1] = ti - ei;
+            }
+        }
+
+        transform(a, true);
+
+        float scale = 1.0f / half;
+        for (int i = 0; i < n; i++) {
+            a[i] *= scale;
+        }
+    }
+
+    /**
+     * Pack the spectrum and compute the inverse transform (normalized by 1 / n).
+     * Imaginary parts of the DC and Nyquist bins are ignored.
+     *
+     * @param real Real parts, length at least n / 2 + 1.
+     * @param imag Imaginary parts, length at least n / 2 + 1.
+     * @param a    Output real signal of length n.
+     */
+    public void inverse(float[] real, float[] imag, float[] a) {
+        a[0] = real[0];
+        a[1] = real[half];
+        for (int k = 1; k < half; k++) {
+            a[2 * k] = real[k];
+            a[2 * k + 1] = imag[k];
+        }
+        inverse(a);
+    }
+
+    /**
+     * Radix-2 complex FFT of n / 2 interleaved values (unnormalized).
+     *
+     * @param a       Interleaved complex data.
+     * @param inverse If true, use positive exponent.
+     */
+    private void transform(float[] a, boolean inverse) {
+        for (int i = 0; i < half; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                float tr = a[2 * i];
+                float ti = a[2 * i + 1];
+                a[2 * i] = a[2 * j];
+                a[2 * i + 1] = a[2 * j + 1];
+                a[2 * j] = tr;
+                a[2 * j + 1] = ti;
+            }
+        }
+
+        float sign = inverse ? 1.0f : -1.0f;
+        for (int len = 2; len <= half; len <<= 1) {
+            int span = len / 2;
+            int step = half / len;
+            for (int start = 0; start < half; start += len) {
+                for (int k = 0; k < span; k++) {
+                    float wr = cos[k * step];
+                    float wi = sign * sin[k * step];
+                    int p = 2 * (start + k);
+                    int q = 2 * (start + k + span);
+                    float qr = a[q] * wr - a[q + 1] * wi;
+                    float qi = a[q] * wi + a[q + 1] * wr;
+                    a[q] = a[p] - qr;
+                    a[q + 1] = a[p + 1] - qi;
+                    a[p] += qr;
+                    a[p + 1] += qi;
+                }
+            }
+        }
+    }
+}
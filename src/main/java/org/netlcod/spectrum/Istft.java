@@ -0,0 +1,126 @@
+package org.netlcod.spectrum;
+
+import java.util.Arrays;
+
+/**
+ * Reusable inverse Short-Time Fourier Transform engine.
+ * <p>
+ * Frames are inverted with a real inverse FFT into a scratch buffer owned by the engine,
+ * windowed and overlap-added directly into the output; the window-sum-square normalization
+ * envelope is cached per window and hop length. Apart from the output array nothing is
+ * allocated per call.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class Istft {
+    private final double[] window;
+    private final RealFFT fft;
+    private final int nFft;
+    private final int hopLength;
+    private final boolean center;
+    private final WindowEnvelope envelope;
+
+    private final double[] real;
+    private final double[] imag;
+    private final double[] frame;
+
+    /**
+     * Create an ISTFT engine.
+     *
+     * @param nFft       FFT window size (number of samples per frame).
+     * @param hopLength  Number of samples between successive frames.
+     * @param windowName Name of the window function to use ("hann", "hamming", etc.)
+     * @param winLength  Length of the window function.
+     * @param center     If true, the frames are assumed to be centered and the padding is removed.
+     */
+    public Istft(int nFft, int hopLength, String windowName, int winLength, boolean center) {
+        this(Spectrum.window(windowName, winLength, nFft), new RealFFT(nFft), hopLength, center);
+    }
+
+    /**
+     * Create an ISTFT engine with a precomputed window and FFT engine.
+     *
+     * @param window    Window of length nFft.
+     * @param fft       FFT engine of size nFft.
+     * @param hopLength Number of samples between successive frames.
+     * @param center    If true, the frames are assumed to be centered and the padding is removed.
+     */
+    public Istft(double[] window, RealFFT fft, int hopLength, boolean center) {
+        if (hopLength <= 0) {
+            throw new IllegalArgumentException("Hop length must be positive: " + hopLength);
+        }
+        this.window = window;
+        this.fft = fft;
+        this.nFft = fft.size();
+        this.hopLength = hopLength;
+        this.center = center;
+        this.envelope = WindowEnvelope.of(window, hopLength);
+        this.real = new double[fft.bins()];
+        this.imag = new double[fft.bins()];
+        this.frame = new double[nFft];
+    }
+
+    /**
+     * Returns the length of the signal reconstructed from the given number of frames.
+     *
+     * @param nFrames Number of frames.
+     * @return Number of samples.
+     */
+    public int outputLength(int nFrames) {
+        if (nFrames <= 0) {
+            return 0;
+        }
+        int length = nFft + hopLength * (nFrames - 1);
+        return center ? length - nFft : length;
+    }
+
+    /**
+     * Reconstruct a signal.
+     *
+     * @param spectrogram Input complex spectrogram with 1 + nFft / 2 bins.
+     * @return The reconstructed time-domain signal.
+     */
+    public double[] inverse(ComplexSpectrogram spectrogram) {
+        double[] y = new double[outputLength(spectrogram.getFrames())];
+        inverse(spectrogram, y);
+        return y;
+    }
+
+    /**
+     * Reconstruct a signal into a caller-supplied buffer.
+     *
+     * @param spectrogram Input complex spectrogram with 1 + nFft / 2 bins.
+     * @param y           Output buffer of length {@link #outputLength(int)}; overwritten.
+     */
+    public void inverse(ComplexSpectrogram spectrogram, double[] y) {
+        int nFrames = spectrogram.getFrames();
+        int length = outputLength(nFrames);
+        if (y.length != length) {
+            throw new IllegalArgumentException("Output length must be " + length + ": " + y.length);
+        }
+        Arrays.fill(y, 0.0);
+        int offset = center ? nFft / 2 : 0;
+
+        // 1
+        for (int t = 0; t < nFrames; t++) {
+            spectrogram.getFrame(t, real, imag);
+            fft.inverse(real, imag, frame);
+
+            // Overlap-add
+            int pos = t * hopLength - offset;
+            int from = Math.max(0, -pos);
+            int to = Math.min(nFft, length - pos);
+            for (int i = from; i < to; i++) {
+                y[pos + i] += frame[i] * window[i];
+            }
+        }
+
+        // 2
+        for (int i = 0; i < length; i++) {
+            double windowSum = envelope.get(i + offset, nFrames - 1);
+            if (windowSum > 1e-15) {
+                y[i] /= windowSum;
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.netlcod.spectrum;
+
+/**
+ * Memory layout of a two-dimensional time-frequency matrix.
+ */
+public enum Layout {
+    /**
+     * Shape [bins][frames]: one row per frequency bin or feature, as returned by librosa.
+     */
+    FREQUENCY_MAJOR,
+    /**
+     * Shape [frames][bins]: one contiguous row per frame, as consumed by most sequence models.
+     * Frame-at-a-time stages write their output without strided stores or a transpose.
+     */
+    FRAME_MAJOR
+}
@@ -0,0 +1,214 @@
+package org.netlcod.spectrum;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs independent per-frame work over ranges of frames, optionally in parallel.
+ * <p>
+ * Each range is processed by exactly one task, so as long as every frame is computed the same
+ * way regardless of the range it falls in, the result does not depend on scheduling.
+ */
+public final class ParallelFrames {
+    /**
+     * Default minimum number of frames per task; shorter inputs are processed sequentially.
+     */
+    public static final int DEFAULT_THRESHOLD = 64;
+
+    private ParallelFrames() {
+    }
+
+    /**
+     * Work on a range of frames. A call runs entirely on one thread while other ranges may run
+     * concurrently, so scratch buffers can be per-thread and reused across calls, e.g. taken from
+     * a {@link ThreadLocal} at the start of the call as the workspaces of the feature pipeline
+     * are. Buffers must not be shared between threads.
+     */
+    public interface RangeAction {
+        /**
+         * Process frames from (inclusive) to (exclusive).
+         *
+         * @param from First frame.
+         * @param to   End frame (exclusive).
+         */
+        void run(int from, int to);
+    }
+
+    /**
+     * Process frames [0, nFrames) in ranges.
+     *
+     * @param nFrames   Number of frames.
+     * @param executor  Executor to run ranges on, or null to run sequentially.
+     *                  A {@link ForkJoinPool} is used with recursive splitting. With other
+     *                  executors the calling thread runs the last range and every range no
+     *                  worker has started, so the executor may be the one running the caller.
+     * @param threshold Minimum number of frames per range.
+     * @param action    Work on one range.
+     */
+    public static void forEach(int nFrames, Executor executor, int threshold, RangeAction action) {
+        int minRange = Math.max(1, threshold);
+        if (executor == null || nFrames <= minRange) {
+            action.run(0, nFrames);
+            return;
+        }
+
+        if (executor instanceof ForkJoinPool) {
+            ForkJoinPool pool = (ForkJoinPool) executor;
+            RangeTask task = new RangeTask(0, nFrames, minRange, action);
+            if (ForkJoinTask.getPool() == pool) {
+                task.invoke();
+            } else {
+                pool.invoke(task);
+            }
+            return;
+        }
+
+        int parallelism = 4 * Runtime.getRuntime().availableProcessors();
+        int rangeLength = Math.max(minRange, (nFrames + parallelism - 1) / parallelism);
+        List<ExecutorRange> ranges = new ArrayList<>();
+        boolean completed = false;
+        try {
+            int from = 0;
+            for (; from + rangeLength < nFrames; from += rangeLength) {
+                ExecutorRange range = new ExecutorRange(from, from + rangeLength, action);
+                ranges.add(range);
+                executor.execute(range);
+            }
+
+            action.run(from, nFrames);
+
+            // Run the ranges no worker has started yet, so that a caller running on the same
+            // bounded executor never waits for tasks queued behind itself
+            for (int i = ranges.size() - 1; i >= 0; i--) {
+                ranges.get(i).run();
+            }
+            for (ExecutorRange range : ranges) {
+                range.await();
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                // Keep queued ranges from starting and wait for running ones before returning
+                for (ExecutorRange range : ranges) {
+                    range.cancel();
+                }
+                for (ExecutorRange range : ranges) {
+                    range.awaitQuietly();
+                }
+            }
+        }
+    }
+
+    /**
+     * Range submitted to an executor; it runs at most once, on a worker or on the caller.
+     */
+    private static final class ExecutorRange implements Runnable {
+        private final int from;
+        private final int to;
+        private final RangeAction action;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Throwable failure;
+
+        private ExecutorRange(int from, int to, RangeAction action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                action.run(from, to);
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Prevent the range from starting if no thread has started it yet.
+         */
+        void cancel() {
+            if (claimed.compareAndSet(false, true)) {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Wait for the range and rethrow its failure.
+         */
+        void await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for frames", e);
+            }
+            Throwable cause = failure;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause != null) {
+                throw new IllegalStateException(cause);
+            }
+        }
+
+        /**
+         * Wait for the range to end, ignoring its failure and deferring interrupts.
+         */
+        void awaitQuietly() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final RangeAction action;
+
+        private RangeTask(int from, int to, int threshold, RangeAction action) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                action.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, middle, threshold, action), new RangeTask(middle, to, threshold, action));
+        }
+    }
+}
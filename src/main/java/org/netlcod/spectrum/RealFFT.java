@@ -0,0 +1,222 @@
+package org.netlcod.spectrum;
+
+/**
+ * Fast Fourier Transform of real-valued input.
+ * <p>
+ * A real sequence of length {@code n} is packed into a complex sequence of length {@code n / 2},
+ * transformed with a radix-2 complex FFT and split back into the {@code n / 2 + 1} non-negative
+ * frequency bins. Twiddle factors and the bit-reversal permutation are computed once per size
+ * and shared with {@link FloatRealFFT}, so an instance holds no mutable state and may be shared
+ * between threads.
+ * <p>
+ * The in-place methods use the packed layout:
+ * <pre>
+ * a[0]      = Re X[0]
+ * a[1]      = Re X[n / 2]
+ * a[2k]     = Re X[k],  0 &lt; k &lt; n / 2
+ * a[2k + 1] = Im X[k],  0 &lt; k &lt; n / 2
+ * </pre>
+ */
+public final class RealFFT {
+    private final int n;
+    private final int half;
+    private final int[] bitReverse;
+    private final double[] cos;
+    private final double[] sin;
+    private final double[] splitCos;
+    private final double[] splitSin;
+
+    /**
+     * Create an FFT engine for the given transform size.
+     *
+     * @param n Transform size (must be a power of two, at least 2).
+     */
+    public RealFFT(int n) {
+        FftTables tables = FftTables.of(n);
+        this.n = n;
+        this.half = tables.half;
+        this.bitReverse = tables.bitReverse;
+        this.cos = tables.cos;
+        this.sin = tables.sin;
+        this.splitCos = tables.splitCos;
+        this.splitSin = tables.splitSin;
+    }
+
+    /**
+     * Returns the transform size.
+     *
+     * @return the transform size
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Returns the number of non-negative frequency bins (n / 2 + 1).
+     *
+     * @return the number of frequency bins
+     */
+    public int bins() {
+        return half + 1;
+    }
+
+    /**
+     * Compute the forward transform in place.
+     *
+     * @param a Real input of length n, replaced by the packed spectrum.
+     */
+    public void forward(double[] a) {
+        transform(a, false);
+
+        double zr = a[0];
+        double zi = a[1];
+        a[0] = zr + zi;
+        a[1] = zr - zi;
+
+        for (int k = 1; k <= half / 2; k++) {
+            int j = half - k;
+            double ar = a[2 * k];
+            double ai = a[2 * k + 1];
+            double br = a[2 * j];
+            double bi = a[2 * j + 1];
+
+            double er = (ar + br) * 0.5;
+            double ei = (ai - bi) * 0.5;
+            double or = (ai + bi) * 0.5;
+            double oi = (br - ar) * 0.5;
+
+            double c = splitCos[k];
+            double s = splitSin[k];
+            double tr = c * or + s * oi;
+            double ti = c * oi - s * or;
+
+            a[2 * k] = er + tr;
+            a[2 * k + 1] = ei + ti;
+            if (j != k) {
+                a[2 * j] = er - tr;
+                a[2 * j + 1] = ti - ei;
+            }
+        }
+    }
+
+    /**
+     * Compute the forward transform of {@code a} in place and unpack the spectrum.
+     *
+     * @param a    Real input of length n, replaced by the packed spectrum.
+     * @param real Output real parts, length at least n / 2 + 1.
+     * @param imag Output imaginary parts, length at least n / 2 + 1.
+     */
+    public void forward(double[] a, double[] real, double[] imag) {
+        forward(a);
+        real[0] = a[0];
+        imag[0] = 0;
+        for (int k = 1; k < half; k++) {
+            real[k] = a[2 * k];
+            imag[k] = a[2 * k + 1];
+        }
+        real[half] = a[1];
+        imag[half] = 0;
+    }
+
+    /**
+     * Compute the inverse transform in place (normalized by 1 / n).
+     *
+     * @param a Packed spectrum of length n, replaced by the real signal.
+     */
+    public void inverse(double[] a) {
+        double x0 = a[0];
+        double xm = a[1];
+        a[0] = (x0 + xm) * 0.5;
+        a[1] = (x0 - xm) * 0.5;
+
+        for (int k = 1; k <= half / 2; k++) {
+            int j = half - k;
+            double xr = a[2 * k];
+            double xi = a[2 * k + 1];
+            double yr = a[2 * j];
+            double yi = a[2 * j + 1];
+
+            double er = (xr + yr) * 0.5;
+            double ei = (xi - yi) * 0.5;
+            double dr = (xr - yr) * 0.5;
+            double di = (xi + yi) * 0.5;
+
+            double c = splitCos[k];
+            double s = splitSin[k];
+            double tr = c * di + s * dr;
+            double ti = c * dr - s * di;
+
+            a[2 * k] = er - tr;
+            a[2 * k + 1] = ei + ti;
+            if (j != k) {
+                a[2 * j] = er + tr;
+                a[2 * j + 1] = ti - ei;
+            }
+        }
+
+        transform(a, true);
+
+        double scale = 1.0 / half;
+        for (int i = 0; i < n; i++) {
+            a[i] *= scale;
+        }
+    }
+
+    /**
+     * Pack the spectrum and compute the inverse transform (normalized by 1 / n).
+     * Imaginary parts of the DC and Nyquist bins are ignored.
+     *
+     * @param real Real parts, length at least n / 2 + 1.
+     * @param imag Imaginary parts, length at least n / 2 + 1.
+     * @param a    Output real signal of length n.
+     */
+    public void inverse(double[] real, double[] imag, double[] a) {
+        a[0] = real[0];
+        a[1] = real[half];
+        for (int k = 1; k < half; k++) {
+            a[2 * k] = real[k];
+            a[2 * k + 1] = imag[k];
+        }
+        inverse(a);
+    }
+
+    /**
+     * Radix-2 complex FFT of n / 2 interleaved values (unnormalized).
+     *
+     * @param a       Interleaved complex data.
+     * @param inverse If true, use positive exponent.
+     */
+    private void transform(double[] a, boolean inverse) {
+        for (int i = 0; i < half; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                double tr = a[2 * i];
+                double ti = a[2 * i + 1];
+                a[2 * i] = a[2 * j];
+                a[2 * i + 1] = a[2 * j + 1];
+                a[2 * j] = tr;
+                a[2 * j + 1] = ti;
+            }
+        }
+
+        double sign = inverse ? 1.0 : -1.0;
+        for (int len = 2; len <= half; len <<= 1) {
+            int span = len / 2;
+            int step = half / len;
+            for (int start = 0; start < half; start += len) {
+                for (int k = 0; k < span; k++) {
+                    double wr = cos[k * step];
+                    double wi = sign * sin[k * step];
+                    int p = 2 * (start + k);
+                    int q = 2 * (start + k + span);
+                    double qr = a[q] * wr - a[q + 1] * wi;
+                    double qi = a[q] * wi + a[q + 1] * wr;
+                    a[q] = a[p] - qr;
+                    a[q + 1] = a[p + 1] - qi;
+                    a[p] += qr;
+                    a[p + 1] += qi;
+                }
+            }
+        }
+    }
+}
@@ -1,15 +1,17 @@
 package org.netlcod.spectrum;
 
 import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
+import org.netlcod.io.OffHeapMatrix;
+import org.netlcod.io.SampleSource;
+import org.netlcod.kernel.Kernels;
 
 import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 import static org.netlcod.window.Window.getWindow;
 
 public class Spectrum {
+    private static final Kernels KERNELS = Kernels.get();
 
     /**
      * Performs the Short-Time Fourier Transform (STFT) of the input signal.
@@ -23,48 +25,397 @@ public class Spectrum {
      * @return A 2D array representing the complex STFT matrix.
      */
     public static Complex[][] stft(double[] y, int nFft, int hopLength, String windowName, int winLength, boolean center) {
-        double[] data = y.clone();
+        return stftSpectrogram(y, nFft, hopLength, windowName, winLength, center).toComplex();
+    }
 
-        // 1
-        double[] window = getWindow(windowName, winLength, true);
-        window = pad(window, (nFft - winLength) / 2, (nFft - winLength) / 2, "constant");
+    /**
+     * Performs the Short-Time Fourier Transform (STFT) of the input signal with the given output layout.
+     * Frames are computed contiguously, so {@link Layout#FRAME_MAJOR} needs no transpose.
+     *
+     * @param y          The input signal.
+     * @param nFft       The FFT window size.
+     * @param hopLength  The hop length between frames.
+     * @param windowName The window function (e.g., "hann").
+     * @param winLength  The window length.
+     * @param center     If true, the signal is padded so that frames are centered.
+     * @param layout     Output layout.
+     * @return The complex STFT matrix of shape [bins][frames] or [frames][bins].
+     */
+    public static Complex[][] stft(double[] y, int nFft, int hopLength, String windowName, int winLength, boolean center, Layout layout) {
+        return stftSpectrogram(y, nFft, hopLength, windowName, winLength, center).toComplex(layout);
+    }
 
-        // 2
-        if (center) {
-            int padding = nFft / 2;
-            data = pad(data, padding, padding, "constant");
-        }
+    /**
+     * Performs the Short-Time Fourier Transform (STFT) of the input signal.
+     *
+     * @param y          The input signal.
+     * @param nFft       The FFT window size.
+     * @param hopLength  The hop length between frames.
+     * @param windowName The window function (e.g., "hann").
+     * @param winLength  The window length.
+     * @param center     If true, the signal is padded so that frames are centered.
+     * @return The complex STFT spectrogram.
+     */
+    public static ComplexSpectrogram stftSpectrogram(double[] y,
+                                                     int nFft,
+                                                     int hopLength,
+                                                     String windowName,
+                                                     int winLength,
+                                                     boolean center) {
+        double[] window = window(windowName, winLength, nFft);
+        return stftSpectrogram(y, window, new RealFFT(nFft), hopLength, center);
+    }
 
-        // 3
-        int nFrames;
-        if (center) {
-            nFrames = (data.length - nFft) / hopLength + 1;
-        } else {
-            nFrames = (data.length - nFft + hopLength) / hopLength;
-        }
-        int fftBins = nFft / 2 + 1;
+    /**
+     * Performs the Short-Time Fourier Transform (STFT) with a precomputed window and FFT engine.
+     * Centering is applied virtually: samples outside the signal are read as zeros,
+     * so the input is neither copied nor padded.
+     *
+     * @param y         The input signal.
+     * @param window    Window of length nFft (see {@link #window(String, int, int)}).
+     * @param fft       FFT engine of size nFft.
+     * @param hopLength The hop length between frames.
+     * @param center    If true, frames are centered (constant padding of nFft / 2).
+     * @return The complex STFT spectrogram.
+     */
+    public static ComplexSpectrogram stftSpectrogram(double[] y,
+                                                     double[] window,
+                                                     RealFFT fft,
+                                                     int hopLength,
+                                                     boolean center) {
+        return stftSpectrogram(y, window, fft, hopLength, center, null);
+    }
+
+    /**
+     * Performs the Short-Time Fourier Transform (STFT) with a precomputed window and FFT engine,
+     * splitting the frames across an executor. Every worker uses its own frame buffers and
+     * writes a disjoint range of frames, so the result is identical to the sequential one.
+     * Inputs shorter than {@link ParallelFrames#DEFAULT_THRESHOLD} frames are processed sequentially.
+     *
+     * @param y         The input signal.
+     * @param window    Window of length nFft (see {@link #window(String, int, int)}).
+     * @param fft       FFT engine of size nFft.
+     * @param hopLength The hop length between frames.
+     * @param center    If true, frames are centered (constant padding of nFft / 2).
+     * @param executor  Executor for frame ranges (e.g. {@link java.util.concurrent.ForkJoinPool#commonPool()}),
+     *                  or null to run sequentially.
+     * @return The complex STFT spectrogram.
+     */
+    public static ComplexSpectrogram stftSpectrogram(double[] y,
+                                                     double[] window,
+                                                     RealFFT fft,
+                                                     int hopLength,
+                                                     boolean center,
+                                                     Executor executor) {
+        return stftSpectrogram(SampleSource.of(y), window, fft, hopLength, center, executor);
+    }
+
+    /**
+     * Performs the Short-Time Fourier Transform (STFT) of a lazily decoded signal
+     * (e.g. a {@link org.netlcod.io.WavSource}).
+     *
+     * @param source     The input signal.
+     * @param nFft       The FFT window size.
+     * @param hopLength  The hop length between frames.
+     * @param windowName The window function (e.g., "hann").
+     * @param winLength  The window length.
+     * @param center     If true, frames are centered (constant padding of nFft / 2).
+     * @return The complex STFT spectrogram.
+     */
+    public static ComplexSpectrogram stftSpectrogram(SampleSource source,
+                                                     int nFft,
+                                                     int hopLength,
+                                                     String windowName,
+                                                     int winLength,
+                                                     boolean center) {
+        double[] window = window(windowName, winLength, nFft);
+        return stftSpectrogram(source, window, new RealFFT(nFft), hopLength, center, null);
+    }
+
+    /**
+     * Performs the Short-Time Fourier Transform (STFT) of a lazily decoded signal with a
+     * precomputed window and FFT engine. Every frame is read from the source on demand, so only
+     * the frame buffers and the output are held on the heap.
+     *
+     * @param source    The input signal.
+     * @param window    Window of length nFft (see {@link #window(String, int, int)}).
+     * @param fft       FFT engine of size nFft.
+     * @param hopLength The hop length between frames.
+     * @param center    If true, frames are centered (constant padding of nFft / 2).
+     * @param executor  Executor for frame ranges, or null to run sequentially.
+     * @return The complex STFT spectrogram.
+     */
+    public static ComplexSpectrogram stftSpectrogram(SampleSource source,
+                                                     double[] window,
+                                                     RealFFT fft,
+                                                     int hopLength,
+                                                     boolean center,
+                                                     Executor executor) {
+        int nFrames = frameCount(source.getLength(), fft.size(), hopLength, center);
+        ComplexSpectrogram spectrogram = new ComplexSpectrogram(fft.bins(), nFrames);
+        stftFrames(source, window, fft, hopLength, center, executor, nFrames, spectrogram::setFrame);
+        return spectrogram;
+    }
+
+    /**
+     * Performs the Short-Time Fourier Transform (STFT) of a lazily decoded signal into off-heap
+     * matrices, one column per frame. Nothing proportional to the signal length is allocated
+     * on the heap.
+     *
+     * @param source    The input signal.
+     * @param window    Window of length nFft (see {@link #window(String, int, int)}).
+     * @param fft       FFT engine of size nFft.
+     * @param hopLength The hop length between frames.
+     * @param center    If true, frames are centered (constant padding of nFft / 2).
+     * @param executor  Executor for frame ranges, or null to run sequentially.
+     * @param real      Output real parts of shape [1 + nFft / 2][frames].
+     * @param imag      Output imaginary parts of shape [1 + nFft / 2][frames].
+     */
+    public static void stftSpectrogram(SampleSource source,
+                                       double[] window,
+                                       RealFFT fft,
+                                       int hopLength,
+                                       boolean center,
+                                       Executor executor,
+                                       OffHeapMatrix real,
+                                       OffHeapMatrix imag) {
+        int nFrames = frameCount(source.getLength(), fft.size(), hopLength, center);
+        real.checkShape(fft.bins(), nFrames);
+        imag.checkShape(fft.bins(), nFrames);
+
+        stftFrames(source, window, fft, hopLength, center, executor, nFrames, (t, frameReal, frameImag) -> {
+            real.setColumn(t, frameReal);
+            imag.setColumn(t, frameImag);
+        });
+    }
+
+    /**
+     * Receives the complex spectrum of each frame; called concurrently for distinct frames.
+     */
+    private interface FrameSink {
+        void accept(int t, double[] real, double[] imag);
+    }
 
-        // 4
-        Complex[][] stftMatrix = new Complex[fftBins][nFrames];
-        FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
-        for (int t = 0; t < nFrames; t++) {
+    private static void stftFrames(SampleSource source,
+                                   double[] window,
+                                   RealFFT fft,
+                                   int hopLength,
+                                   boolean center,
+                                   Executor executor,
+                                   int nFrames,
+                                   FrameSink sink) {
+        int nFft = fft.size();
+        int fftBins = fft.bins();
+        int offset = center ? nFft / 2 : 0;
+
+        ParallelFrames.forEach(nFrames, executor, ParallelFrames.DEFAULT_THRESHOLD, (from, to) -> {
             double[] frame = new double[nFft];
-            int start = t * hopLength;
+            double[] real = new double[fftBins];
+            double[] imag = new double[fftBins];
+            for (int t = from; t < to; t++) {
+                source.read((long) t * hopLength - offset, frame);
 
-            System.arraycopy(data, start, frame, 0, Math.min(nFft, data.length - start));
+                KERNELS.multiply(frame, window, nFft);
 
-            for (int i = 0; i < frame.length; i++) {
-                frame[i] *= window[i];
+                fft.forward(frame, real, imag);
+                sink.accept(t, real, imag);
             }
+        });
+    }
 
-            Complex[] fftResult = fft.transform(frame, TransformType.FORWARD);
+    /**
+     * Compute the power spectrogram of a lazily decoded signal into an off-heap matrix, one
+     * column per frame.
+     *
+     * @param source    The input signal.
+     * @param window    Window of length nFft (see {@link #window(String, int, int)}).
+     * @param fft       FFT engine of size nFft.
+     * @param hopLength The hop length between frames.
+     * @param center    If true, frames are centered (constant padding of nFft / 2).
+     * @param executor  Executor for frame ranges, or null to run sequentially.
+     * @param power     Output power of shape [1 + nFft / 2][frames].
+     */
+    public static void stftPower(SampleSource source,
+                                 double[] window,
+                                 RealFFT fft,
+                                 int hopLength,
+                                 boolean center,
+                                 Executor executor,
+                                 OffHeapMatrix power) {
+        int nFft = fft.size();
+        int nFrames = frameCount(source.getLength(), nFft, hopLength, center);
+        power.checkShape(fft.bins(), nFrames);
+        int offset = center ? nFft / 2 : 0;
+
+        ParallelFrames.forEach(nFrames, executor, ParallelFrames.DEFAULT_THRESHOLD, (from, to) -> {
+            double[] frame = new double[nFft];
+            double[] framePower = new double[fft.bins()];
+            for (int t = from; t < to; t++) {
+                source.read((long) t * hopLength - offset, frame);
 
-            for (int f = 0; f < fftBins; f++) {
-                stftMatrix[f][t] = fftResult[f];
+                KERNELS.multiply(frame, window, nFft);
+
+                fft.forward(frame);
+                KERNELS.power(frame, framePower);
+                power.setColumn(t, framePower);
             }
+        });
+    }
+
+    /**
+     * Compute the power spectrogram of the Short-Time Fourier Transform in single precision.
+     *
+     * @param y         The input signal.
+     * @param window    Window of length nFft.
+     * @param fft       Single-precision FFT engine of size nFft.
+     * @param hopLength The hop length between frames.
+     * @param center    If true, frames are centered (constant padding of nFft / 2).
+     * @return Power spectrogram of shape [1 + nFft / 2][frames].
+     */
+    public static float[][] stftPower(float[] y, float[] window, FloatRealFFT fft, int hopLength, boolean center) {
+        return stftPower(SampleSource.of(y), window, fft, hopLength, center, null, Layout.FREQUENCY_MAJOR);
+    }
+
+    /**
+     * Compute the power spectrogram of a lazily decoded signal in single precision.
+     *
+     * @param source    The input signal.
+     * @param window    Window of length nFft.
+     * @param fft       Single-precision FFT engine of size nFft.
+     * @param hopLength The hop length between frames.
+     * @param center    If true, frames are centered (constant padding of nFft / 2).
+     * @param executor  Executor for frame ranges, or null to run sequentially.
+     * @param layout    Output layout.
+     * @return Power spectrogram of shape [1 + nFft / 2][frames] or [frames][1 + nFft / 2].
+     */
+    public static float[][] stftPower(SampleSource source,
+                                      float[] window,
+                                      FloatRealFFT fft,
+                                      int hopLength,
+                                      boolean center,
+                                      Executor executor,
+                                      Layout layout) {
+        int nFft = fft.size();
+        int fftBins = fft.bins();
+        int nFrames = frameCount(source.getLength(), nFft, hopLength, center);
+        int offset = center ? nFft / 2 : 0;
+        boolean frameMajor = layout == Layout.FRAME_MAJOR;
+
+        float[][] power = frameMajor ? new float[nFrames][fftBins] : new float[fftBins][nFrames];
+        ParallelFrames.forEach(nFrames, executor, ParallelFrames.DEFAULT_THRESHOLD, (from, to) -> {
+            float[] frame = new float[nFft];
+            float[] framePower = new float[fftBins];
+            for (int t = from; t < to; t++) {
+                source.read((long) t * hopLength - offset, frame);
+                windowedFft(frame, window, fft);
+                if (frameMajor) {
+                    power(frame, power[t]);
+                    continue;
+                }
+                power(frame, framePower);
+                for (int f = 0; f < fftBins; f++) {
+                    power[f][t] = framePower[f];
+                }
+            }
+        });
+
+        return power;
+    }
+
+    /**
+     * Window a single-precision frame in place and replace it with its packed real FFT.
+     *
+     * @param frame  Frame of length nFft, overwritten with the packed spectrum (see {@link FloatRealFFT}).
+     * @param window Window of length nFft.
+     * @param fft    Single-precision FFT engine of size nFft.
+     */
+    public static void windowedFft(float[] frame, float[] window, FloatRealFFT fft) {
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] *= window[i];
         }
+        fft.forward(frame);
+    }
 
-        return stftMatrix;
+    /**
+     * Compute the power spectrum from a packed single-precision real FFT result.
+     *
+     * @param packed Packed spectrum of length n (see {@link FloatRealFFT}).
+     * @param power  Output power, length n / 2 + 1.
+     */
+    public static void power(float[] packed, float[] power) {
+        int half = packed.length / 2;
+        power[0] = packed[0] * packed[0];
+        for (int k = 1; k < half; k++) {
+            float re = packed[2 * k];
+            float im = packed[2 * k + 1];
+            power[k] = re * re + im * im;
+        }
+        power[half] = packed[1] * packed[1];
+    }
+
+    /**
+     * Compute the number of STFT frames for a signal.
+     *
+     * @param length    Signal length.
+     * @param nFft      The FFT window size.
+     * @param hopLength The hop length between frames.
+     * @param center    If true, the signal is padded so that frames are centered.
+     * @return Number of frames.
+     */
+    public static int frameCount(int length, int nFft, int hopLength, boolean center) {
+        if (center) {
+            return (length + 2 * (nFft / 2) - nFft) / hopLength + 1;
+        }
+        return Math.max(0, (length - nFft + hopLength) / hopLength);
+    }
+
+    /**
+     * Compute the number of STFT frames for a long signal.
+     *
+     * @param length    Signal length.
+     * @param nFft      The FFT window size.
+     * @param hopLength The hop length between frames.
+     * @param center    If true, the signal is padded so that frames are centered.
+     * @return Number of frames.
+     */
+    public static int frameCount(long length, int nFft, int hopLength, boolean center) {
+        long nFrames = center
+                ? (length + 2 * (nFft / 2) - nFft) / hopLength + 1
+                : Math.max(0, (length - nFft + hopLength) / hopLength);
+        if (nFrames > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many frames: " + nFrames);
+        }
+        return (int) nFrames;
+    }
+
+    /**
+     * Compute a window function centered in a frame of length nFft.
+     *
+     * @param windowName The window function (e.g., "hann").
+     * @param winLength  The window length.
+     * @param nFft       The FFT window size.
+     * @return Zero-padded periodic window of length nFft.
+     */
+    public static double[] window(String windowName, int winLength, int nFft) {
+        double[] window = getWindow(windowName, winLength, true);
+        return pad(window, (nFft - winLength) / 2, (nFft - winLength) / 2, "constant");
+    }
+
+    /**
+     * Copy a frame of the signal, reading samples outside the signal as zeros.
+     *
+     * @param y     The input signal.
+     * @param start Index of the first frame sample (may be negative).
+     * @param frame Output frame.
+     */
+    public static void frame(double[] y, int start, double[] frame) {
+        int from = Math.max(0, -start);
+        int to = Math.max(from, Math.min(frame.length, y.length - start));
+        Arrays.fill(frame, 0, from, 0.0);
+        if (to > from) {
+            System.arraycopy(y, start + from, frame, from, to - from);
+        }
+        Arrays.fill(frame, to, frame.length, 0.0);
     }
 
     /**
@@ -84,67 +435,27 @@ public class Spectrum {
                                  String windowName,
                                  int winLength,
                                  boolean center) {
-        // 1
-        double[] window = getWindow(windowName, winLength, true);
-        window = pad(window, (nFft - winLength) / 2, (nFft - winLength) / 2, "constant");
-
-        // 2
-        int nFrames = stftMatrix[0].length;
-
-        // 3
-        int expectedLength = nFft + hopLength * (nFrames - 1);
-        if (center) {
-            expectedLength -= nFft;
-        }
-
-        double[] y = new double[expectedLength];
-
-        // 4
-        int startFrame = 0;
-        int offset = 0;
-        FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
-        for (int frame = startFrame; frame < nFrames; frame++) {
-            Complex[] column = new Complex[stftMatrix.length];
-            for (int i = 0; i < column.length; i++) {
-                column[i] = stftMatrix[i][frame];
-            }
-
-            Complex[] padded = new Complex[nFft];
-            System.arraycopy(column, 0, padded, 0, column.length);
-            for (int i = 1; i < column.length; i++) {
-                padded[nFft - i] = column[i].conjugate();
-            }
-
-            Complex[] ifftResult = fft.transform(padded, TransformType.INVERSE);
-
-            double[] windowed = new double[nFft];
-            for (int i = 0; i < nFft; i++) {
-                windowed[i] = ifftResult[i].getReal() * window[i];
-            }
-
-            // Overlap-add
-            int pos = frame * hopLength + offset - (center ? nFft / 2 : 0);
-            for (int i = 0; i < nFft; i++) {
-                if (pos + i >= 0 && pos + i < y.length) {
-                    y[pos + i] += windowed[i];
-                }
-            }
-        }
-
-        // 6
-        double[] windowSum = windowSumSquare(window, nFft, hopLength, nFrames);
-        if (center) {
-            windowSum = Arrays.copyOfRange(windowSum, nFft / 2, windowSum.length);
-        }
-
-        // 7
-        for (int i = 0; i < y.length; i++) {
-            if (windowSum[i] > 1e-15) {
-                y[i] /= windowSum[i];
-            }
-        }
+        return istft(ComplexSpectrogram.fromComplex(stftMatrix), nFft, hopLength, windowName, winLength, center);
+    }
 
-        return y;
+    /**
+     * Performs the Inverse Short-Time Fourier Transform (ISTFT) to reconstruct a time-domain signal.
+     *
+     * @param spectrogram Input complex spectrogram.
+     * @param nFft        FFT window size (number of samples per frame).
+     * @param hopLength   Number of samples between successive frames.
+     * @param windowName  Name of the window function to use ("hann", "hamming", etc.)
+     * @param winLength   Length of the window function.
+     * @param center      If true, the signal is padded so that frames are centered.
+     * @return Array representing the reconstructed time-domain signal
+     */
+    public static double[] istft(ComplexSpectrogram spectrogram,
+                                 int nFft,
+                                 int hopLength,
+                                 String windowName,
+                                 int winLength,
+                                 boolean center) {
+        return new Istft(nFft, hopLength, windowName, winLength, center).inverse(spectrogram);
     }
 
     /**
@@ -154,24 +465,7 @@ public class Spectrum {
      * @return A 2D array representing the DCT coefficients.
      */
     public static double[][] dct(double[][] y) {
-        int rows = y.length;
-        int cols = y[0].length;
-        double[][] result = new double[rows][cols];
-
-        for (int c = 0; c < cols; c++) {
-            double[] column = new double[rows];
-            for (int r = 0; r < rows; r++) {
-                column[r] = y[r][c];
-            }
-
-            double[] dctColumn = dct(column);
-
-            for (int r = 0; r < rows; r++) {
-                result[r][c] = dctColumn[r];
-            }
-        }
-
-        return result;
+        return new Dct(y.length, y.length).transform(y);
     }
 
     /**
@@ -181,57 +475,26 @@ public class Spectrum {
      * @return A 2D array representing the DCT coefficients.
      */
     public static double[] dct(double[] y) {
-        int N = y.length;
-        double[] extendedInput = new double[2 * N];
-
-        for (int i = 0; i < N; i++) {
-            extendedInput[i] = y[i];
-            extendedInput[2 * N - 1 - i] = y[i];
-        }
-
-        FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
-        Complex[] fftResult = fft.transform(extendedInput, TransformType.FORWARD);
-
-        double[] dctResult = new double[N];
-        for (int i = 0; i < N; i++) {
-            double theta = Math.PI * i / (2 * N);
-            Complex mul = new Complex(Math.cos(theta), -Math.sin(theta));
-            dctResult[i] = fftResult[i].multiply(mul).getReal();
-        }
-
-        dctResult[0] *= Math.sqrt(1.0 / N) / 2;
-        for (int i = 1; i < N; i++) {
-            dctResult[i] *= Math.sqrt(2.0 / N) / 2;
-        }
-
+        double[] dctResult = new double[y.length];
+        new Dct(y.length, y.length).transform(y, dctResult, new double[y.length]);
         return dctResult;
     }
 
     /**
-     * Compute the sum-square envelope of a window function at a given hop length.
+     * Copy a frame of the signal, reading samples outside the signal as zeros.
      *
-     * @param window    Window array.
-     * @param nFft      Length of each analysis frame.
-     * @param hopLength Number of samples between successive frames.
-     * @param nFrames   Number of analysis frames.
-     * @return Array representing the sum-squared envelope of the window function
+     * @param y     The input signal.
+     * @param start Index of the first frame sample (may be negative).
+     * @param frame Output frame.
      */
-    private static double[] windowSumSquare(double[] window, int nFft, int hopLength, int nFrames) {
-        int expectedLength = nFft + hopLength * (nFrames - 1);
-        double[] sum = new double[expectedLength];
-
-        for (int frame = 0; frame < nFrames; frame++) {
-            int pos = frame * hopLength;
-
-            for (int i = 0; i < window.length; i++) {
-                int idx = pos + i;
-                if (idx >= 0 && idx < sum.length) {
-                    sum[idx] += window[i] * window[i]; // Сумма квадратов окон
-                }
-            }
+    public static void frame(float[] y, int start, float[] frame) {
+        int from = Math.max(0, -start);
+        int to = Math.max(from, Math.min(frame.length, y.length - start));
+        Arrays.fill(frame, 0, from, 0.0f);
+        if (to > from) {
+            System.arraycopy(y, start + from, frame, from, to - from);
         }
-
-        return sum;
+        Arrays.fill(frame, to, frame.length, 0.0f);
     }
 
     /**
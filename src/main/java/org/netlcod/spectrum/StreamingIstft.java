@@ -0,0 +1,166 @@
+package org.netlcod.spectrum;
+
+import java.util.Arrays;
+
+/**
+ * Push-based inverse Short-Time Fourier Transform.
+ * <p>
+ * Frames are accepted one at a time and overlap-added into a ring buffer of nFft + hopLength samples.
+ * A sample is emitted, normalized by the cached window envelope, as soon as no later frame
+ * can overlap it, i.e. after at most nFft - hopLength samples of delay. The concatenated
+ * output is identical to {@link Istft#inverse(ComplexSpectrogram)} over all frames.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class StreamingIstft {
+    private final double[] window;
+    private final RealFFT fft;
+    private final int nFft;
+    private final int hopLength;
+    private final int offset;
+    private final WindowEnvelope envelope;
+
+    private final double[] ring;
+    private final double[] frame;
+    private final double[] output;
+    private long emitted;
+    private long frameCount;
+    private boolean finished;
+
+    /**
+     * Receives reconstructed samples. The array is reused between calls and must not be retained.
+     */
+    public interface SampleConsumer {
+        /**
+         * Accept finished samples.
+         *
+         * @param samples Buffer holding the samples.
+         * @param length  Number of valid samples at the start of the buffer.
+         */
+        void accept(double[] samples, int length);
+    }
+
+    /**
+     * Create a streaming ISTFT.
+     *
+     * @param nFft       FFT window size (number of samples per frame).
+     * @param hopLength  Number of samples between successive frames.
+     * @param windowName Name of the window function to use ("hann", "hamming", etc.)
+     * @param winLength  Length of the window function.
+     * @param center     If true, the frames are assumed to be centered and nFft / 2 samples are
+     *                   dropped at both ends of the stream.
+     */
+    public StreamingIstft(int nFft, int hopLength, String windowName, int winLength, boolean center) {
+        this(Spectrum.window(windowName, winLength, nFft), new RealFFT(nFft), hopLength, center);
+    }
+
+    /**
+     * Create a streaming ISTFT with a precomputed window and FFT engine.
+     *
+     * @param window    Window of length nFft.
+     * @param fft       FFT engine of size nFft.
+     * @param hopLength Number of samples between successive frames.
+     * @param center    If true, the frames are assumed to be centered and nFft / 2 samples are
+     *                  dropped at both ends of the stream.
+     */
+    public StreamingIstft(double[] window, RealFFT fft, int hopLength, boolean center) {
+        if (hopLength <= 0) {
+            throw new IllegalArgumentException("Hop length must be positive: " + hopLength);
+        }
+        this.window = window;
+        this.fft = fft;
+        this.nFft = fft.size();
+        this.hopLength = hopLength;
+        this.offset = center ? nFft / 2 : 0;
+        this.envelope = WindowEnvelope.of(window, hopLength);
+        this.ring = new double[nFft + hopLength];
+        this.frame = new double[nFft];
+        this.output = new double[nFft];
+        reset();
+    }
+
+    /**
+     * Discard all buffered samples and start a new stream.
+     */
+    public void reset() {
+        Arrays.fill(ring, 0.0);
+        emitted = 0;
+        frameCount = 0;
+        finished = false;
+    }
+
+    /**
+     * Returns the number of frames accepted since the start of the stream.
+     *
+     * @return the number of frames
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Add one frame and emit the samples it completes.
+     *
+     * @param real     Real parts, length 1 + nFft / 2.
+     * @param imag     Imaginary parts, length 1 + nFft / 2.
+     * @param consumer Receiver of the finished samples.
+     */
+    public void push(double[] real, double[] imag, SampleConsumer consumer) {
+        if (finished) {
+            throw new IllegalStateException("Stream is already flushed");
+        }
+        fft.inverse(real, imag, frame);
+
+        // 1
+        long start = frameCount * hopLength;
+        for (int i = 0; i < nFft; i++) {
+            ring[(int) ((start + i) % ring.length)] += frame[i] * window[i];
+        }
+
+        // 2
+        long lastFrame = frameCount++;
+        emit(Math.min(start + hopLength, start + nFft - offset), lastFrame, consumer);
+    }
+
+    /**
+     * Emit the remaining samples and end the stream.
+     *
+     * @param consumer Receiver of the finished samples.
+     */
+    public void flush(SampleConsumer consumer) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (frameCount > 0) {
+            long lastFrame = frameCount - 1;
+            emit(lastFrame * hopLength + nFft - offset, lastFrame, consumer);
+        }
+    }
+
+    private void emit(long end, long lastFrame, SampleConsumer consumer) {
+        int length = 0;
+        for (; emitted < end; emitted++) {
+            int index = (int) (emitted % ring.length);
+            double value = ring[index];
+            ring[index] = 0.0;
+            if (emitted < offset) {
+                // Centering padding
+                continue;
+            }
+
+            double windowSum = envelope.get(emitted, lastFrame);
+            if (windowSum > 1e-15) {
+                value /= windowSum;
+            }
+            output[length++] = value;
+            if (length == output.length) {
+                consumer.accept(output, length);
+                length = 0;
+            }
+        }
+        if (length > 0) {
+            consumer.accept(output, length);
+        }
+    }
+}
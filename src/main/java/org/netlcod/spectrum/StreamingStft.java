@@ -0,0 +1,199 @@
+package org.netlcod.spectrum;
+
+import org.netlcod.kernel.Kernels;
+
+import java.util.Arrays;
+
+/**
+ * Push-based Short-Time Fourier Transform.
+ * <p>
+ * Samples are accepted in chunks of any size and kept in a ring buffer of nFft samples;
+ * after each frame only the last nFft - hopLength samples are retained. Every frame is
+ * emitted as soon as its last sample arrives, so latency and memory do not depend on how
+ * long the stream has been running. The concatenated output is identical to
+ * {@link Spectrum#stftSpectrogram(double[], double[], RealFFT, int, boolean)} over the
+ * whole signal.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class StreamingStft {
+    private static final Kernels KERNELS = Kernels.get();
+
+    private final double[] window;
+    private final RealFFT fft;
+    private final int nFft;
+    private final int hopLength;
+    private final boolean center;
+
+    private final double[] ring;
+    private final double[] frame;
+    private final double[] real;
+    private final double[] imag;
+    private int head;
+    private int filled;
+    private int skip;
+    private long frameCount;
+    private boolean finished;
+
+    /**
+     * Receives STFT frames. The arrays are reused between calls and must not be retained.
+     */
+    public interface FrameConsumer {
+        /**
+         * Accept one frame.
+         *
+         * @param real Real parts, length 1 + nFft / 2.
+         * @param imag Imaginary parts, length 1 + nFft / 2.
+         */
+        void accept(double[] real, double[] imag);
+    }
+
+    /**
+     * Create a streaming STFT.
+     *
+     * @param nFft       The FFT window size.
+     * @param hopLength  The hop length between frames.
+     * @param windowName The window function (e.g., "hann").
+     * @param winLength  The window length.
+     * @param center     If true, the stream is padded with nFft / 2 zeros at both ends.
+     */
+    public StreamingStft(int nFft, int hopLength, String windowName, int winLength, boolean center) {
+        this(Spectrum.window(windowName, winLength, nFft), new RealFFT(nFft), hopLength, center);
+    }
+
+    /**
+     * Create a streaming STFT with a precomputed window and FFT engine.
+     *
+     * @param window    Window of length nFft.
+     * @param fft       FFT engine of size nFft.
+     * @param hopLength The hop length between frames.
+     * @param center    If true, the stream is padded with nFft / 2 zeros at both ends.
+     */
+    public StreamingStft(double[] window, RealFFT fft, int hopLength, boolean center) {
+        if (hopLength <= 0) {
+            throw new IllegalArgumentException("Hop length must be positive: " + hopLength);
+        }
+        this.window = window;
+        this.fft = fft;
+        this.nFft = fft.size();
+        this.hopLength = hopLength;
+        this.center = center;
+        this.ring = new double[nFft];
+        this.frame = new double[nFft];
+        this.real = new double[fft.bins()];
+        this.imag = new double[fft.bins()];
+        reset();
+    }
+
+    /**
+     * Discard all buffered samples and start a new stream.
+     */
+    public void reset() {
+        head = 0;
+        skip = 0;
+        frameCount = 0;
+        finished = false;
+        Arrays.fill(ring, 0.0);
+        filled = center ? nFft / 2 : 0;
+    }
+
+    /**
+     * Returns the number of frames emitted since the start of the stream.
+     *
+     * @return the number of emitted frames
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Feed samples to the transform.
+     *
+     * @param chunk    Input samples.
+     * @param consumer Receiver of the completed frames.
+     */
+    public void push(double[] chunk, FrameConsumer consumer) {
+        push(chunk, 0, chunk.length, consumer);
+    }
+
+    /**
+     * Feed samples to the transform.
+     *
+     * @param chunk    Input samples.
+     * @param offset   Index of the first sample in chunk.
+     * @param length   Number of samples.
+     * @param consumer Receiver of the completed frames.
+     */
+    public void push(double[] chunk, int offset, int length, FrameConsumer consumer) {
+        if (finished) {
+            throw new IllegalStateException("Stream has been flushed");
+        }
+        write(chunk, offset, length, consumer);
+    }
+
+    /**
+     * End the stream and emit the remaining frames (the trailing padding when centered).
+     *
+     * @param consumer Receiver of the completed frames.
+     */
+    public void flush(FrameConsumer consumer) {
+        if (finished) {
+            return;
+        }
+        if (center) {
+            write(null, 0, nFft / 2, consumer);
+        }
+        finished = true;
+    }
+
+    /**
+     * Append samples (zeros when chunk is null) and emit every complete frame.
+     */
+    private void write(double[] chunk, int offset, int length, FrameConsumer consumer) {
+        while (length > 0) {
+            if (skip > 0) {
+                int n = Math.min(skip, length);
+                skip -= n;
+                offset += n;
+                length -= n;
+                continue;
+            }
+
+            int n = Math.min(nFft - filled, length);
+            int tail = (head + filled) % nFft;
+            int first = Math.min(n, nFft - tail);
+            if (chunk == null) {
+                Arrays.fill(ring, tail, tail + first, 0.0);
+                Arrays.fill(ring, 0, n - first, 0.0);
+            } else {
+                System.arraycopy(chunk, offset, ring, tail, first);
+                System.arraycopy(chunk, offset + first, ring, 0, n - first);
+            }
+            filled += n;
+            offset += n;
+            length -= n;
+
+            if (filled == nFft) {
+                emit(consumer);
+            }
+        }
+    }
+
+    private void emit(FrameConsumer consumer) {
+        System.arraycopy(ring, head, frame, 0, nFft - head);
+        System.arraycopy(ring, 0, frame, nFft - head, head);
+        KERNELS.multiply(frame, window, nFft);
+        fft.forward(frame, real, imag);
+        frameCount++;
+        consumer.accept(real, imag);
+
+        if (hopLength < nFft) {
+            head = (head + hopLength) % nFft;
+            filled -= hopLength;
+        } else {
+            head = 0;
+            filled = 0;
+            skip = hopLength - nFft;
+        }
+    }
+}
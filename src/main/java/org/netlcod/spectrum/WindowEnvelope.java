@@ -0,0 +1,150 @@
+package org.netlcod.spectrum;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sum of squared windows over overlapping frames (the ISTFT normalization), for any number of frames.
+ * <p>
+ * Away from the signal edges the envelope is periodic with period hopLength, so only one period,
+ * the first nFft samples (frames missing before the signal) and the last nFft samples (frames
+ * missing after the signal) are stored. Every value is summed over the same frames in the same
+ * order as a direct frame-by-frame accumulation, so the results are identical to it.
+ * Envelopes are cached per window and hop length.
+ */
+final class WindowEnvelope {
+    private static final int CACHE_SIZE = 16;
+
+    private static final Map<Key, WindowEnvelope> CACHE = new LinkedHashMap<Key, WindowEnvelope>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, WindowEnvelope> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final double[] square;
+    private final int nFft;
+    private final int hopLength;
+    private final double[] head;
+    private final double[] tail;
+    private final double[] period;
+
+    private WindowEnvelope(double[] window, int hopLength) {
+        this.nFft = window.length;
+        this.hopLength = hopLength;
+        this.square = new double[nFft];
+        for (int i = 0; i < nFft; i++) {
+            square[i] = window[i] * window[i];
+        }
+
+        // Frames are accumulated in increasing order, i.e. window positions in decreasing order
+        head = new double[nFft];
+        for (int idx = 0; idx < nFft; idx++) {
+            double sum = 0;
+            for (int i = idx; i >= 0; i -= hopLength) {
+                sum += square[i];
+            }
+            head[idx] = sum;
+        }
+
+        tail = new double[nFft];
+        for (int idx = 0; idx < nFft; idx++) {
+            int last = idx + (nFft - 1 - idx) / hopLength * hopLength;
+            double sum = 0;
+            for (int i = last; i >= idx; i -= hopLength) {
+                sum += square[i];
+            }
+            tail[idx] = sum;
+        }
+
+        period = new double[hopLength];
+        for (int r = 0; r < hopLength; r++) {
+            double sum = 0;
+            if (r < nFft) {
+                int last = r + (nFft - 1 - r) / hopLength * hopLength;
+                for (int i = last; i >= 0; i -= hopLength) {
+                    sum += square[i];
+                }
+            }
+            period[r] = sum;
+        }
+    }
+
+    /**
+     * Returns the envelope of a window and hop length, building and caching it on first use.
+     *
+     * @param window    Window of length nFft.
+     * @param hopLength The hop length between frames.
+     * @return The envelope.
+     */
+    static WindowEnvelope of(double[] window, int hopLength) {
+        Key key = new Key(window, hopLength);
+        synchronized (CACHE) {
+            WindowEnvelope envelope = CACHE.get(key);
+            if (envelope == null) {
+                envelope = new WindowEnvelope(window, hopLength);
+                CACHE.put(new Key(window.clone(), hopLength), envelope);
+            }
+            return envelope;
+        }
+    }
+
+    /**
+     * Returns the envelope at a sample position.
+     *
+     * @param idx       Sample position, counted from the start of frame 0.
+     * @param lastFrame Index of the last frame of the signal.
+     * @return Sum of the squared windows of all frames covering the position.
+     */
+    double get(long idx, long lastFrame) {
+        if (idx / hopLength <= lastFrame) {
+            // No frame after the last one would cover the position
+            return idx < nFft ? head[(int) idx] : period[(int) (idx % hopLength)];
+        }
+        long offset = idx - lastFrame * hopLength;
+        if (offset >= nFft) {
+            return 0;
+        }
+        if (lastFrame * hopLength >= nFft - hopLength) {
+            // Every frame up to the last one that could cover the position exists
+            return tail[(int) offset];
+        }
+
+        double sum = 0;
+        long first = Math.max(0, (idx - nFft + hopLength) / hopLength);
+        for (long f = first; f <= lastFrame; f++) {
+            sum += square[(int) (idx - f * hopLength)];
+        }
+        return sum;
+    }
+
+    private static final class Key {
+        private final double[] window;
+        private final int hopLength;
+        private final int hash;
+
+        private Key(double[] window, int hopLength) {
+            this.window = window;
+            this.hopLength = hopLength;
+            this.hash = 31 * Arrays.hashCode(window) + hopLength;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hopLength == other.hopLength && Arrays.equals(window, other.window);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
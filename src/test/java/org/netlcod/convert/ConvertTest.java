@@ -0,0 +1,88 @@
+package org.netlcod.convert;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConvertTest {
+
+    private static double[][] copy(double[][] x) {
+        double[][] result = new double[x.length][];
+        for (int i = 0; i < x.length; i++) {
+            result[i] = x[i].clone();
+        }
+        return result;
+    }
+
+    private static void assertMatrixEquals(double[][] expected, double[][] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], 0.0, "Row " + i + " does not match");
+        }
+    }
+
+    @Test
+    public void testInPlaceMatchesAllocating() {
+        Random random = new Random(6);
+        double[][] S = new double[40][100];
+        for (double[] row : S) {
+            for (int t = 0; t < row.length; t++) {
+                double value = random.nextGaussian();
+                row[t] = value * value;
+            }
+        }
+        FastLog log = FastLog.withMaxError(1e-4);
+
+        double[][] expected = Convert.powerToDB(S, 1.0, 1e-10, 80.0);
+        double[][] actual = copy(S);
+        assertSame(actual, Convert.powerToDB(actual, actual, 1.0, 1e-10, 80.0));
+        assertMatrixEquals(expected, actual);
+
+        expected = Convert.powerToDB(S, 1.0, 1e-10, 80.0, log);
+        actual = copy(S);
+        Convert.powerToDB(actual, actual, 1.0, 1e-10, 80.0, log);
+        assertMatrixEquals(expected, actual);
+
+        expected = Convert.amplitudeToDB(S, 2.0, 1e-5, 60.0);
+        actual = copy(S);
+        Convert.amplitudeToDB(actual, actual, 2.0, 1e-5, 60.0);
+        assertMatrixEquals(expected, actual);
+
+        double[][] SDB = Convert.powerToDB(S, 1.0, 1e-10, null);
+        expected = Convert.dbToPower(SDB, 1.0);
+        actual = copy(SDB);
+        Convert.dbToPower(actual, actual, 1.0);
+        assertMatrixEquals(expected, actual);
+
+        expected = Convert.dbToAmplitude(SDB, 1.0);
+        actual = new double[SDB.length][SDB[0].length];
+        assertSame(actual, Convert.dbToAmplitude(SDB, actual, 1.0));
+        assertMatrixEquals(expected, actual);
+
+        assertThrows(IllegalArgumentException.class, () -> Convert.powerToDB(S, new double[40][99], 1.0, 1e-10, 80.0));
+    }
+
+    @Test
+    public void testArrayDestinations() {
+        double[] frequencies = {0, 440, 1000, 4000, 8000};
+        for (boolean htk : new boolean[]{false, true}) {
+            double[] expected = Convert.hzToMel(frequencies, htk);
+            double[] actual = frequencies.clone();
+            Convert.hzToMel(actual, actual, htk);
+            assertArrayEquals(expected, actual, 0.0);
+
+            expected = Convert.melToHz(expected, htk);
+            Convert.melToHz(actual, actual, htk);
+            assertArrayEquals(expected, actual, 0.0);
+        }
+
+        int[] frames = {0, 1, 10, 100};
+        double[] times = new double[frames.length];
+        assertSame(times, Convert.framesToTime(frames, times, 16000, 512, 0));
+        assertArrayEquals(Convert.samplesToTime(Convert.framesToSamples(frames, 512, 0), 16000), times, 0.0);
+        assertThrows(IllegalArgumentException.class, () -> Convert.hzToMel(frequencies, new double[2], false));
+    }
+}
@@ -0,0 +1,91 @@
+package org.netlcod.convert;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.netlcod.feature.MfccFeature;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FastLogTest {
+
+    @Test
+    public void testErrorBound() {
+        Random random = new Random(3);
+        for (double maxError : new double[]{1e-2, 1e-4, 1e-6, 1e-9}) {
+            FastLog log = FastLog.withMaxError(maxError);
+            assertTrue(log.getMaxError() <= maxError);
+            double worst = 0;
+            for (int i = 0; i < 200000; i++) {
+                double x = Math.pow(10, 40 * random.nextDouble() - 20);
+                worst = Math.max(worst, Math.abs(20 * log.log10(x) - 20 * Math.log10(x)));
+            }
+            assertTrue(worst <= log.getMaxError() + 1e-12, "Error " + worst + " exceeds " + maxError);
+        }
+
+        FastLog log = FastLog.withMaxError(1e-4);
+        assertEquals(0.0, log.log2(1.0), 0.0);
+        assertEquals(-10.0, log.log2(0x1p-10), 0.0);
+        assertEquals(Math.log10(Double.MIN_VALUE), log.log10(Double.MIN_VALUE), 1e-12);
+        assertEquals(Double.NEGATIVE_INFINITY, log.log10(0.0), 0.0);
+        assertTrue(Double.isNaN(log.log10(-1.0)));
+        assertTrue(Double.isNaN(log.log10(Double.longBitsToDouble(0x7ff8000000000000L))));
+        assertTrue(Double.isNaN(log.log10(Double.longBitsToDouble(0xfff8000000000000L))));
+        assertEquals(Double.POSITIVE_INFINITY, log.log10(Double.POSITIVE_INFINITY), 0.0);
+        assertThrows(IllegalArgumentException.class, () -> FastLog.withMaxError(1e-15));
+    }
+
+    @Test
+    public void testPowerToDB() {
+        Random random = new Random(4);
+        double[][] S = new double[64][300];
+        for (double[] row : S) {
+            for (int t = 0; t < row.length; t++) {
+                double value = random.nextGaussian();
+                row[t] = value * value * Math.pow(10, -12 * random.nextDouble());
+            }
+        }
+
+        FastLog log = FastLog.withMaxError(1e-4);
+        double[][] expected = Convert.powerToDB(S, 1.0, 1e-10, 80.0);
+        double[][] actual = Convert.powerToDB(S, 1.0, 1e-10, 80.0, log);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], 1e-4, "Row " + i + " does not match");
+        }
+
+        expected = Convert.amplitudeToDB(S, 1.0, 1e-5, 80.0);
+        actual = Convert.amplitudeToDB(S, 1.0, 1e-5, 80.0, log);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], 1e-4, "Row " + i + " does not match");
+        }
+    }
+
+    @Test
+    public void testMfcc() {
+        Random random = new Random(5);
+        double[] y = new double[16000];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = 0.5 * Math.sin(2 * Math.PI * 440 * i / 16000.0) + 0.1 * random.nextGaussian();
+        }
+
+        MfccFeature mfcc_extractor = new MfccFeature();
+        mfcc_extractor.setSampleRate(16000);
+        mfcc_extractor.setNFft(1024);
+        mfcc_extractor.setHopLength(512);
+        mfcc_extractor.setFeatureSize(13);
+        double[][] expected = mfcc_extractor.extract(y);
+
+        mfcc_extractor.setLogMaxError(1e-4);
+        double[][] actual = mfcc_extractor.extract(y);
+        // The orthonormal DCT of 128 bands grows the error by at most sqrt(128)
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], 1e-4 * Math.sqrt(128), "Row " + i + " does not match");
+        }
+
+        mfcc_extractor.setLogMaxError(0);
+        assertEquals(0.0, mfcc_extractor.getLogMaxError(), 0.0);
+    }
+}
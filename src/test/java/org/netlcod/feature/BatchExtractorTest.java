@@ -0,0 +1,42 @@
+package org.netlcod.feature;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BatchExtractorTest {
+
+    @Test
+    public void testBatchMatchesSequential() {
+        MfccFeature mfcc_extractor = new MfccFeature();
+        mfcc_extractor.setSampleRate(16000);
+        mfcc_extractor.setNFft(512);
+        mfcc_extractor.setHopLength(160);
+        mfcc_extractor.setFeatureSize(13);
+
+        Random random = new Random(0);
+        List<double[]> signals = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            double[] y = new double[8000 + random.nextInt(16000)];
+            for (int j = 0; j < y.length; j++) {
+                y[j] = random.nextGaussian();
+            }
+            signals.add(y);
+        }
+
+        List<double[][]> results = new BatchExtractor(mfcc_extractor).extract(signals);
+
+        assertEquals(signals.size(), results.size());
+        for (int i = 0; i < signals.size(); i++) {
+            double[][] expected = mfcc_extractor.extract(signals.get(i));
+            for (int k = 0; k < expected.length; k++) {
+                assertArrayEquals(expected[k], results.get(i)[k], 0.0, "Signal " + i + " does not match");
+            }
+        }
+    }
+}
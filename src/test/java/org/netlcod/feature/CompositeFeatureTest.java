@@ -0,0 +1,127 @@
+package org.netlcod.feature;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.netlcod.spectrum.ComplexSpectrogram;
+import org.netlcod.spectrum.Layout;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.netlcod.spectrum.Spectrum.stftSpectrogram;
+
+class CompositeFeatureTest {
+    private double[] inputData;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        inputData = objectMapper.readValue(new File("src/test/resources/input_data.json"), double[].class);
+    }
+
+    private static CompositeFeature extractor() {
+        CompositeFeature composite_extractor = new CompositeFeature();
+        composite_extractor.setSampleRate(16000);
+        composite_extractor.setNFft(512);
+        composite_extractor.setHopLength(160);
+        composite_extractor.setFeatureSize(13);
+        return composite_extractor;
+    }
+
+    @Test
+    public void testMelAndMfcc() {
+        CompositeFeature composite_extractor = extractor();
+        Map<FeatureType, double[][]> features = composite_extractor.extractAll(inputData);
+        assertEquals(EnumSet.allOf(FeatureType.class), features.keySet());
+
+        MelFeature mel_extractor = new MelFeature();
+        mel_extractor.setSampleRate(16000);
+        mel_extractor.setNFft(512);
+        mel_extractor.setHopLength(160);
+        mel_extractor.setFeatureSize(128);
+        double[][] expectedMel = mel_extractor.extract(inputData);
+
+        MfccFeature mfcc_extractor = new MfccFeature();
+        mfcc_extractor.setSampleRate(16000);
+        mfcc_extractor.setNFft(512);
+        mfcc_extractor.setHopLength(160);
+        mfcc_extractor.setFeatureSize(13);
+        double[][] expectedMfcc = mfcc_extractor.extract(inputData);
+
+        for (int i = 0; i < expectedMel.length; i++) {
+            assertArrayEquals(expectedMel[i], features.get(FeatureType.MEL)[i], 0.0, "Row " + i + " does not match");
+        }
+        for (int i = 0; i < expectedMfcc.length; i++) {
+            assertArrayEquals(expectedMfcc[i], features.get(FeatureType.MFCC)[i], 0.0, "Row " + i + " does not match");
+        }
+    }
+
+    @Test
+    public void testSpectralFeatures() {
+        CompositeFeature composite_extractor = extractor();
+        composite_extractor.setFeatures(EnumSet.range(FeatureType.SPECTRAL_CENTROID, FeatureType.SPECTRAL_FLATNESS));
+        Map<FeatureType, double[][]> features = composite_extractor.extractAll(inputData);
+
+        ComplexSpectrogram spectrogram = stftSpectrogram(inputData, 512, 160, "hann", 512, true);
+        int nBins = spectrogram.getBins();
+        for (int t = 0; t < spectrogram.getFrames(); t++) {
+            double sum = 0;
+            double weighted = 0;
+            double logPower = 0;
+            double power = 0;
+            for (int k = 0; k < nBins; k++) {
+                double magnitude = spectrogram.getMagnitude(k, t);
+                sum += magnitude;
+                weighted += k * 16000.0 / 512 * magnitude;
+                double clipped = Math.max(1e-10, magnitude * magnitude);
+                logPower += Math.log(clipped);
+                power += clipped;
+            }
+            double centroid = weighted / sum;
+            double variance = 0;
+            double cumulative = 0;
+            double rolloff = Double.NaN;
+            for (int k = 0; k < nBins; k++) {
+                double magnitude = spectrogram.getMagnitude(k, t);
+                double deviation = k * 16000.0 / 512 - centroid;
+                variance += magnitude / sum * deviation * deviation;
+                cumulative += magnitude;
+                if (Double.isNaN(rolloff) && cumulative >= 0.85 * sum) {
+                    rolloff = k * 16000.0 / 512;
+                }
+            }
+
+            assertEquals(centroid, features.get(FeatureType.SPECTRAL_CENTROID)[0][t], 1e-6 * centroid);
+            assertEquals(Math.sqrt(variance), features.get(FeatureType.SPECTRAL_BANDWIDTH)[0][t], 1e-6 * Math.sqrt(variance));
+            assertEquals(rolloff, features.get(FeatureType.SPECTRAL_ROLLOFF)[0][t], 16000.0 / 512);
+            double flatness = Math.exp(logPower / nBins) / (power / nBins);
+            assertEquals(flatness, features.get(FeatureType.SPECTRAL_FLATNESS)[0][t], 1e-6 * flatness);
+        }
+    }
+
+    @Test
+    public void testTimeDomainFeatures() {
+        double[] y = new double[16000];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = Math.sin(2 * Math.PI * 1000 * (i + 0.5) / 16000);
+        }
+        CompositeFeature composite_extractor = extractor();
+        composite_extractor.setFeatures(EnumSet.of(FeatureType.RMS, FeatureType.ZERO_CROSSING_RATE));
+        composite_extractor.setLayout(Layout.FRAME_MAJOR);
+        double[][] features = composite_extractor.extract(y);
+
+        assertEquals(101, features.length);
+        for (int t = 2; t < features.length - 2; t++) {
+            assertEquals(Math.sqrt(0.5), features[t][0], 1e-9, "Frame " + t + " does not match");
+            // 1 kHz crosses zero twice per 16 samples; 511 sample pairs hold 63 or 64 crossings
+            assertEquals(64.0 / 512, features[t][1], 1.0 / 512, "Frame " + t + " does not match");
+        }
+        // Edge padding adds no crossings
+        assertEquals(32.0 / 512, features[0][1], 1.0 / 512);
+    }
+}
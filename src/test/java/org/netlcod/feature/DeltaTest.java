@@ -0,0 +1,109 @@
+package org.netlcod.feature;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.netlcod.spectrum.ComplexSpectrogram;
+import org.netlcod.spectrum.Layout;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.netlcod.spectrum.Spectrum.stftSpectrogram;
+
+class DeltaTest {
+    private double[] inputData;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        inputData = objectMapper.readValue(new File("src/test/resources/input_data.json"), double[].class);
+    }
+
+    private static MfccFeature extractor() {
+        MfccFeature mfcc_extractor = new MfccFeature();
+        mfcc_extractor.setSampleRate(16000);
+        mfcc_extractor.setNFft(512);
+        mfcc_extractor.setHopLength(160);
+        mfcc_extractor.setFeatureSize(13);
+        return mfcc_extractor;
+    }
+
+    @Test
+    public void testCoefficients() {
+        // scipy.signal.savgol_coeffs(5, 1, deriv=1, use='dot') and savgol_coeffs(5, 2, deriv=2, use='dot')
+        assertArrayEquals(new double[]{-0.2, -0.1, 0, 0.1, 0.2}, Delta.coefficients(5, 1), 1e-15);
+        assertArrayEquals(new double[]{2.0 / 7, -1.0 / 7, -2.0 / 7, -1.0 / 7, 2.0 / 7}, Delta.coefficients(5, 2), 1e-15);
+        assertThrows(IllegalArgumentException.class, () -> Delta.coefficients(4, 1));
+        assertThrows(IllegalArgumentException.class, () -> Delta.coefficients(9, 3));
+    }
+
+    @Test
+    public void testPolynomials() {
+        double[][] data = new double[2][20];
+        for (int t = 0; t < 20; t++) {
+            data[0][t] = 3 * t - 5;
+            data[1][t] = 0.5 * t * t;
+        }
+        double[][] delta = Delta.delta(data, 9, 1);
+        double[][] delta2 = Delta.delta(data, 9, 2);
+        for (int t = 0; t < 20; t++) {
+            assertEquals(3, delta[0][t], 1e-12);
+            assertEquals(0, delta2[0][t], 1e-12);
+            assertEquals(1, delta2[1][t], 1e-12);
+            // Interior frames see the exact slope, the edges that of the nearest full window
+            assertEquals(Math.min(Math.max(t, 4), 15), delta[1][t], 1e-12);
+        }
+        assertThrows(IllegalArgumentException.class, () -> Delta.delta(data, 21, 1));
+    }
+
+    @Test
+    public void testStackedMfcc() {
+        double[][] mfcc = extractor().extract(inputData);
+        double[][] delta = Delta.delta(mfcc, 9, 1);
+        double[][] delta2 = Delta.delta(mfcc, 9, 2);
+
+        MfccFeature mfcc_extractor = extractor();
+        mfcc_extractor.setDeltaOrder(2);
+        double[][] stacked = mfcc_extractor.extract(inputData);
+        assertEquals(39, stacked.length);
+        for (int i = 0; i < 13; i++) {
+            assertArrayEquals(mfcc[i], stacked[i], 0.0, "Row " + i + " does not match");
+            assertArrayEquals(delta[i], stacked[13 + i], 0.0, "Row " + i + " does not match");
+            assertArrayEquals(delta2[i], stacked[26 + i], 0.0, "Row " + i + " does not match");
+        }
+
+        mfcc_extractor.setLayout(Layout.FRAME_MAJOR);
+        double[][] frameMajor = mfcc_extractor.extract(inputData);
+        for (int t = 0; t < frameMajor.length; t++) {
+            for (int i = 0; i < stacked.length; i++) {
+                assertEquals(stacked[i][t], frameMajor[t][i], 0.0, "Frame " + t + " does not match");
+            }
+        }
+
+        mfcc_extractor.setLayout(Layout.FREQUENCY_MAJOR);
+        mfcc_extractor.setPrecision(Precision.FLOAT);
+        double[][] single = mfcc_extractor.extract(inputData);
+        for (int i = 0; i < stacked.length; i++) {
+            assertArrayEquals(stacked[i], single[i], 1e-2, "Row " + i + " does not match");
+        }
+    }
+
+    @Test
+    public void testSpectrogramInput() {
+        MfccFeature mfcc_extractor = extractor();
+        mfcc_extractor.setDeltaOrder(1);
+        mfcc_extractor.setDeltaWidth(5);
+        ComplexSpectrogram spectrogram = stftSpectrogram(inputData, 512, 160, "hann", 512, true);
+        double[][] stacked = mfcc_extractor.extract(spectrogram);
+        double[][] expected = mfcc_extractor.extract(inputData);
+
+        assertEquals(26, stacked.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], stacked[i], 1e-9, "Row " + i + " does not match");
+        }
+    }
+}
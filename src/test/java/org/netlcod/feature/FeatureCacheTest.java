@@ -0,0 +1,90 @@
+package org.netlcod.feature;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeatureCacheTest {
+    @TempDir
+    Path directory;
+
+    private static double[] signal(long seed) {
+        Random random = new Random(seed);
+        double[] y = new double[8000];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = random.nextGaussian();
+        }
+        return y;
+    }
+
+    private static MfccFeature extractor() {
+        MfccFeature mfcc_extractor = new MfccFeature();
+        mfcc_extractor.setSampleRate(16000);
+        mfcc_extractor.setNFft(512);
+        mfcc_extractor.setHopLength(160);
+        mfcc_extractor.setFeatureSize(13);
+        return mfcc_extractor;
+    }
+
+    private static void assertMatrixEquals(double[][] expected, double[][] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], 0.0, "Row " + i + " does not match");
+        }
+    }
+
+    @Test
+    public void testTiers() throws IOException {
+        MfccFeature mfcc_extractor = extractor();
+        double[] y = signal(1);
+        double[][] expected = mfcc_extractor.extract(y);
+
+        FeatureCache cache = new FeatureCache(directory, 1 << 20, 1 << 20);
+        double[][] first = cache.extract(mfcc_extractor, y);
+        assertMatrixEquals(expected, first);
+        first[0][0] = 42;
+        assertMatrixEquals(expected, cache.extract(mfcc_extractor, y));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getMemoryHits());
+
+        // A new instance finds the result on disk
+        FeatureCache reopened = new FeatureCache(directory, 1 << 20, 1 << 20);
+        assertTrue(reopened.getDiskBytes() > 0);
+        assertMatrixEquals(expected, reopened.extract(mfcc_extractor, y));
+        assertEquals(1, reopened.getDiskHits());
+        assertEquals(0, reopened.getMisses());
+
+        // Any configuration change is a different key
+        mfcc_extractor.setFeatureSize(20);
+        assertEquals(20, reopened.extract(mfcc_extractor, y).length);
+        assertEquals(1, reopened.getMisses());
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        MfccFeature mfcc_extractor = extractor();
+        FeatureCache probe = new FeatureCache(directory.resolve("probe"), 1 << 20, 0);
+        probe.extract(mfcc_extractor, signal(0));
+        long entry = probe.getDiskBytes();
+
+        FeatureCache cache = new FeatureCache(directory.resolve("cache"), 2 * entry, 0);
+        for (int i = 0; i < 3; i++) {
+            cache.extract(mfcc_extractor, signal(i));
+        }
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2 * entry, cache.getDiskBytes());
+
+        // The oldest signal was evicted, the newest ones are still cached
+        cache.extract(mfcc_extractor, signal(2));
+        assertEquals(1, cache.getDiskHits());
+        cache.extract(mfcc_extractor, signal(0));
+        assertEquals(4, cache.getMisses());
+        assertEquals(0, cache.getMemoryBytes());
+    }
+}
@@ -2,13 +2,26 @@ package org.netlcod.feature;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.apache.commons.math3.complex.Complex;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.netlcod.io.SampleSource;
+import org.netlcod.spectrum.ComplexSpectrogram;
+import org.netlcod.spectrum.Layout;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.netlcod.spectrum.Spectrum.stft;
+import static org.netlcod.spectrum.Spectrum.stftSpectrogram;
 
 class FeatureTest {
     private static final double EPS = 1e-4;
@@ -64,6 +77,145 @@ class FeatureTest {
         }
     }
 
+    @Test
+    public void testFusedMatchesStaged() {
+        MfccFeature mfcc_extractor = new MfccFeature();
+        mfcc_extractor.setSampleRate(featureConfig.sampleRate);
+        mfcc_extractor.setNFft(featureConfig.nFft);
+        mfcc_extractor.setHopLength(featureConfig.hopLength);
+        mfcc_extractor.setFeatureSize(featureConfig.nMfcc);
+
+        double[][] fused = mfcc_extractor.extract(inputData);
+        double[][] staged = mfcc_extractor.extract(
+                stftSpectrogram(inputData, featureConfig.nFft, featureConfig.hopLength, "hann", featureConfig.nFft, true)
+        );
+
+        for (int i = 0; i < fused.length; i++) {
+            assertArrayEquals(staged[i], fused[i], 1e-9, "Row " + i + " does not match");
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSequential() throws InterruptedException {
+        MelFeature mel_extractor = new MelFeature();
+        mel_extractor.setSampleRate(featureConfig.sampleRate);
+        mel_extractor.setNFft(featureConfig.nFft);
+        mel_extractor.setHopLength(32);
+        mel_extractor.setFeatureSize(featureConfig.nMels);
+
+        MfccFeature mfcc_extractor = new MfccFeature();
+        mfcc_extractor.setSampleRate(featureConfig.sampleRate);
+        mfcc_extractor.setNFft(featureConfig.nFft);
+        mfcc_extractor.setHopLength(32);
+        mfcc_extractor.setFeatureSize(featureConfig.nMfcc);
+
+        double[][] expectedMel = mel_extractor.extract(inputData);
+        double[][] expectedMfcc = mfcc_extractor.extract(inputData);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (Executor parallel : new Executor[]{ForkJoinPool.commonPool(), executor}) {
+                mel_extractor.setExecutor(parallel);
+                mfcc_extractor.setExecutor(parallel);
+                double[][] mel = mel_extractor.extract(inputData);
+                double[][] mfcc = mfcc_extractor.extract(inputData);
+
+                for (int i = 0; i < expectedMel.length; i++) {
+                    assertArrayEquals(expectedMel[i], mel[i], 0.0, "Row " + i + " does not match");
+                }
+                for (int i = 0; i < expectedMfcc.length; i++) {
+                    assertArrayEquals(expectedMfcc[i], mfcc[i], 0.0, "Row " + i + " does not match");
+                }
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    @Test
+    public void testFloatPrecision() {
+        MelFeature mel_extractor = new MelFeature();
+        mel_extractor.setSampleRate(featureConfig.sampleRate);
+        mel_extractor.setNFft(featureConfig.nFft);
+        mel_extractor.setHopLength(featureConfig.hopLength);
+        mel_extractor.setFeatureSize(featureConfig.nMels);
+        mel_extractor.setPrecision(Precision.FLOAT);
+
+        MfccFeature mfcc_extractor = new MfccFeature();
+        mfcc_extractor.setSampleRate(featureConfig.sampleRate);
+        mfcc_extractor.setNFft(featureConfig.nFft);
+        mfcc_extractor.setHopLength(featureConfig.hopLength);
+        mfcc_extractor.setFeatureSize(featureConfig.nMfcc);
+        mfcc_extractor.setPrecision(Precision.FLOAT);
+
+        float[] input = new float[inputData.length];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (float) inputData[i];
+        }
+
+        float[][] mel = mel_extractor.extract(input);
+        float[][] mfcc = mfcc_extractor.extract(input);
+
+        for (int i = 0; i < mel.length; i++) {
+            for (int t = 0; t < mel[i].length; t++) {
+                double tolerance = 1e-5 * Math.abs(etalonMelData[i][t]) + 1e-7;
+                assertEquals(etalonMelData[i][t], mel[i][t], tolerance, "Row " + i + " does not match");
+            }
+        }
+        for (int i = 0; i < mfcc.length; i++) {
+            for (int t = 0; t < mfcc[i].length; t++) {
+                assertEquals(etalonMfccData[i][t], mfcc[i][t], 1e-3, "Row " + i + " does not match");
+            }
+        }
+    }
+
+    @Test
+    public void testFrameMajorLayout() {
+        MelFeature mel_extractor = new MelFeature();
+        mel_extractor.setSampleRate(featureConfig.sampleRate);
+        mel_extractor.setNFft(featureConfig.nFft);
+        mel_extractor.setHopLength(featureConfig.hopLength);
+        mel_extractor.setFeatureSize(featureConfig.nMels);
+
+        MfccFeature mfcc_extractor = new MfccFeature();
+        mfcc_extractor.setSampleRate(featureConfig.sampleRate);
+        mfcc_extractor.setNFft(featureConfig.nFft);
+        mfcc_extractor.setHopLength(featureConfig.hopLength);
+        mfcc_extractor.setFeatureSize(featureConfig.nMfcc);
+
+        ComplexSpectrogram spectrogram = stftSpectrogram(inputData, featureConfig.nFft, featureConfig.hopLength, "hann", featureConfig.nFft, true);
+        double[][] expectedMel = mel_extractor.extract(inputData);
+        double[][] expectedMfcc = mfcc_extractor.extract(inputData);
+        double[][] expectedStagedMfcc = mfcc_extractor.extract(spectrogram);
+
+        mel_extractor.setLayout(Layout.FRAME_MAJOR);
+        mfcc_extractor.setLayout(Layout.FRAME_MAJOR);
+        double[][] mel = mel_extractor.extract(inputData);
+        double[][] mfcc = mfcc_extractor.extract(inputData);
+        double[][] stagedMfcc = mfcc_extractor.extract(spectrogram);
+
+        assertEquals(expectedMel[0].length, mel.length);
+        assertEquals(expectedMfcc[0].length, mfcc.length);
+        for (int t = 0; t < mel.length; t++) {
+            for (int i = 0; i < expectedMel.length; i++) {
+                assertEquals(expectedMel[i][t], mel[t][i], 0.0, "Frame " + t + " does not match");
+            }
+            for (int i = 0; i < expectedMfcc.length; i++) {
+                assertEquals(expectedMfcc[i][t], mfcc[t][i], 0.0, "Frame " + t + " does not match");
+                assertEquals(expectedStagedMfcc[i][t], stagedMfcc[t][i], 0.0, "Frame " + t + " does not match");
+            }
+        }
+
+        Complex[][] stft = stft(inputData, featureConfig.nFft, featureConfig.hopLength, "hann", featureConfig.nFft, true);
+        Complex[][] frames = stft(inputData, featureConfig.nFft, featureConfig.hopLength, "hann", featureConfig.nFft, true, Layout.FRAME_MAJOR);
+        for (int t = 0; t < frames.length; t++) {
+            for (int f = 0; f < stft.length; f++) {
+                assertEquals(stft[f][t], frames[t][f], "Frame " + t + " does not match");
+            }
+        }
+    }
+
     @JsonIgnoreProperties(ignoreUnknown = true)
     private static class FeatureConfig {
         public int sampleRate;
@@ -72,4 +224,18 @@ class FeatureTest {
         public int nMels;
         public int nMfcc;
     }
+
+    @Test
+    public void testLegacySubclass() {
+        // Subclasses that only override the array overload still compile and work
+        AudioFeatureConfiguration legacy = new AudioFeatureConfiguration() {
+            @Override
+            public double[][] extract(double[] y) {
+                return new double[][]{y};
+            }
+        };
+        double[] y = {1, 2, 3};
+        assertArrayEquals(y, legacy.extract(y)[0], 0.0);
+        assertThrows(UnsupportedOperationException.class, () -> legacy.extract(SampleSource.of(y)));
+    }
 }
@@ -0,0 +1,152 @@
+package org.netlcod.feature;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipelineMetricsTest {
+
+    private static double[] signal() {
+        Random random = new Random(7);
+        double[] y = new double[16000];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = random.nextGaussian();
+        }
+        return y;
+    }
+
+    private static MfccFeature extractor() {
+        MfccFeature mfcc_extractor = new MfccFeature();
+        mfcc_extractor.setSampleRate(16000);
+        mfcc_extractor.setNFft(512);
+        mfcc_extractor.setHopLength(160);
+        mfcc_extractor.setFeatureSize(13);
+        return mfcc_extractor;
+    }
+
+    @Test
+    public void testStages() {
+        double[] y = signal();
+        MfccFeature mfcc_extractor = extractor();
+        mfcc_extractor.setDeltaOrder(1);
+        double[][] expected = mfcc_extractor.extract(y);
+
+        PipelineMetrics metrics = new PipelineMetrics();
+        mfcc_extractor.setListener(metrics);
+        double[][] actual = mfcc_extractor.extract(y);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], 0.0, "Row " + i + " does not match");
+        }
+
+        Map<String, Map<Stage, Histogram>> snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.size());
+        Map<Stage, Histogram> stages = snapshot.values().iterator().next();
+        assertEquals(EnumSet.allOf(Stage.class), stages.keySet());
+        for (Map.Entry<Stage, Histogram> entry : stages.entrySet()) {
+            Histogram histogram = entry.getValue();
+            assertEquals(1, histogram.getCount(), entry.getKey().name());
+            assertEquals(expected[0].length, histogram.getTotalFrames(), entry.getKey().name());
+            assertTrue(histogram.getP50() > 0, entry.getKey().name());
+        }
+        assertEquals(stages.get(Stage.TOTAL), metrics.get(mfcc_extractor, Stage.TOTAL));
+
+        // A mel extractor with the plan of the MFCC extractor keeps its own histograms
+        MelFeature mel_extractor = new MelFeature();
+        mel_extractor.setSampleRate(16000);
+        mel_extractor.setNFft(512);
+        mel_extractor.setHopLength(160);
+        mel_extractor.setFeatureSize(MfccFeature.N_MELS);
+        mel_extractor.setListener(metrics);
+        mel_extractor.extract(y);
+        assertEquals(2, metrics.snapshot().size());
+        assertEquals(1, metrics.get(mfcc_extractor, Stage.TOTAL).getCount());
+        assertEquals(1, metrics.get(mel_extractor, Stage.TOTAL).getCount());
+    }
+
+    @Test
+    public void testParallel() {
+        double[] y = new double[160 * 2000];
+        System.arraycopy(signal(), 0, y, 0, 16000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            MelFeature mel_extractor = new MelFeature();
+            mel_extractor.setSampleRate(16000);
+            mel_extractor.setNFft(512);
+            mel_extractor.setHopLength(160);
+            mel_extractor.setFeatureSize(40);
+            mel_extractor.setExecutor(executor);
+            double[][] expected = mel_extractor.extract(y);
+
+            PipelineMetrics metrics = new PipelineMetrics();
+            mel_extractor.setListener(metrics);
+            double[][] actual = mel_extractor.extract(y);
+            mel_extractor.extract(y);
+            for (int i = 0; i < expected.length; i++) {
+                assertArrayEquals(expected[i], actual[i], 0.0, "Row " + i + " does not match");
+            }
+
+            Set<Stage> stages = metrics.snapshot().values().iterator().next().keySet();
+            assertEquals(EnumSet.of(Stage.STFT, Stage.POWER, Stage.MEL, Stage.TOTAL), stages);
+            Histogram total = metrics.snapshot().values().iterator().next().get(Stage.TOTAL);
+            assertEquals(2, total.getCount());
+            assertEquals(2L * expected[0].length, total.getTotalFrames());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testComposite() {
+        double[] y = signal();
+        CompositeFeature composite_extractor = new CompositeFeature();
+        composite_extractor.setSampleRate(16000);
+        composite_extractor.setNFft(512);
+        composite_extractor.setHopLength(160);
+        composite_extractor.setFeatureSize(13);
+        composite_extractor.setFeatures(EnumSet.of(FeatureType.MFCC, FeatureType.SPECTRAL_CENTROID));
+        double[][] expected = composite_extractor.extract(y);
+
+        PipelineMetrics metrics = new PipelineMetrics();
+        composite_extractor.setListener(metrics);
+        double[][] actual = composite_extractor.extract(y);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], 0.0, "Row " + i + " does not match");
+        }
+
+        Map<Stage, Histogram> stages = metrics.snapshot().values().iterator().next();
+        assertEquals(EnumSet.complementOf(EnumSet.of(Stage.DELTA)), stages.keySet());
+        assertEquals(expected[0].length, metrics.get(composite_extractor, Stage.TOTAL).getTotalFrames());
+    }
+
+    @Test
+    public void testPercentiles() {
+        Histogram histogram = new Histogram();
+        for (long nanos = 1; nanos <= 1000; nanos++) {
+            histogram.record(nanos * 1000, 1, -1);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(-1, histogram.getAllocatedBytes());
+        assertEquals(500000, histogram.getP50(), 500000 / 16.0);
+        assertEquals(990000, histogram.getP99(), 990000 / 16.0);
+        assertTrue(histogram.getP50() >= 500000);
+        assertTrue(histogram.getP99() >= 990000);
+
+        for (long value = 0; value < 100000; value += 7) {
+            int bucket = Histogram.bucket(value);
+            assertTrue(Histogram.upperBound(bucket) >= value);
+            assertTrue(bucket == 0 || Histogram.upperBound(bucket - 1) < value);
+        }
+        assertNotNull(histogram.toString());
+    }
+}
@@ -1,11 +1,21 @@
 package org.netlcod.feature;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.apache.commons.math3.complex.Complex;
 import org.junit.jupiter.api.Test;
+import org.netlcod.io.SampleSource;
+import org.netlcod.spectrum.ComplexSpectrogram;
+import org.netlcod.spectrum.FloatRealFFT;
+import org.netlcod.spectrum.Layout;
+import org.netlcod.spectrum.Spectrum;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.netlcod.spectrum.Spectrum.istft;
 import static org.netlcod.spectrum.Spectrum.stft;
+import static org.netlcod.spectrum.Spectrum.stftSpectrogram;
 
 
 public class SpectrumTest {
@@ -91,4 +101,94 @@ public class SpectrumTest {
         }
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testComplexSpectrogram() {
+        double[] originalSignal = generateSineWave(440, 16000, 1.0);
+
+        int nFft = 1024;
+        int hopLength = 256;
+        int winLength = 1024;
+        boolean center = true;
+        String windowName = "hann";
+
+        ComplexSpectrogram spectrogram = stftSpectrogram(
+                originalSignal,
+                nFft,
+                hopLength,
+                windowName,
+                winLength,
+                center
+        );
+        Complex[][] stftMatrix = spectrogram.toComplex();
+
+        for (int f = 0; f < spectrogram.getBins(); f++) {
+            for (int t = 0; t < spectrogram.getFrames(); t++) {
+                assertEquals(stftMatrix[f][t].abs(), spectrogram.getMagnitude(f, t), EPS);
+                assertEquals(stftMatrix[f][t].getArgument(), spectrogram.getPhase(f, t), EPS);
+            }
+        }
+
+        double[] reconstructedSignal = istft(
+                spectrogram,
+                nFft,
+                hopLength,
+                windowName,
+                winLength,
+                center
+        );
+
+        for (int i = 1; i < reconstructedSignal.length; i++) {
+            assertEquals(originalSignal[i], reconstructedSignal[i], EPS, "Value " + i + " does not match");
+        }
+    }
+
+    @Test
+    public void testFloatPower() {
+        double[] originalSignal = generateSineWave(440, 16000, 4.0);
+        float[] y = new float[originalSignal.length];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = (float) originalSignal[i];
+        }
+
+        int nFft = 512;
+        int hopLength = 160;
+        double[] window = Spectrum.window("hann", nFft, nFft);
+        float[] floatWindow = new float[nFft];
+        for (int i = 0; i < nFft; i++) {
+            floatWindow[i] = (float) window[i];
+        }
+
+        ComplexSpectrogram spectrogram = stftSpectrogram(originalSignal, nFft, hopLength, "hann", nFft, true);
+        float[][] power = Spectrum.stftPower(y, floatWindow, new FloatRealFFT(nFft), hopLength, true);
+        assertEquals(spectrogram.getBins(), power.length);
+        assertEquals(spectrogram.getFrames(), power[0].length);
+        double peak = 0;
+        for (float[] row : power) {
+            for (float value : row) {
+                peak = Math.max(peak, value);
+            }
+        }
+        for (int f = 0; f < power.length; f++) {
+            for (int t = 0; t < power[f].length; t++) {
+                double magnitude = spectrogram.getMagnitude(f, t);
+                assertEquals(magnitude * magnitude, power[f][t], 1e-6 * peak, "Bin " + f + " of frame " + t);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            float[][] transposed = Spectrum.stftPower(SampleSource.of(y), floatWindow, new FloatRealFFT(nFft), hopLength, true,
+                    executor, Layout.FRAME_MAJOR);
+            for (int t = 0; t < transposed.length; t++) {
+                float[] column = new float[power.length];
+                for (int f = 0; f < column.length; f++) {
+                    column[f] = power[f][t];
+                }
+                assertArrayEquals(column, transposed[t], 0.0f, "Frame " + t + " does not match");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
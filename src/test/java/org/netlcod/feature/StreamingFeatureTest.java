@@ -0,0 +1,154 @@
+package org.netlcod.feature;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.netlcod.filter.Resample;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamingFeatureTest {
+    private static final int CHUNK = 160;
+    private double[] inputData;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        inputData = objectMapper.readValue(new File("src/test/resources/input_data.json"), double[].class);
+    }
+
+    private static double[][] stream(StreamingFeature extractor, double[] y) {
+        final List<double[]> columns = new ArrayList<>();
+        FeatureConsumer consumer = column -> columns.add(column.clone());
+        for (int i = 0; i < y.length; i += CHUNK) {
+            extractor.push(y, i, Math.min(CHUNK, y.length - i), consumer);
+        }
+        extractor.flush(consumer);
+
+        double[][] result = new double[columns.get(0).length][columns.size()];
+        for (int t = 0; t < columns.size(); t++) {
+            for (int i = 0; i < result.length; i++) {
+                result[i][t] = columns.get(t)[i];
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testStreamingMel() {
+        MelFeature mel_extractor = new MelFeature();
+        mel_extractor.setSampleRate(16000);
+        mel_extractor.setNFft(1024);
+        mel_extractor.setHopLength(160);
+        mel_extractor.setFeatureSize(64);
+
+        double[][] expected = mel_extractor.extract(inputData);
+        double[][] result = stream(new StreamingMelFeature(mel_extractor), inputData);
+
+        assertEquals(expected.length, result.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], result[i], 0.0, "Row " + i + " does not match");
+        }
+    }
+
+    @Test
+    public void testStreamingMfccFixedReference() {
+        MfccFeature mfcc_extractor = new MfccFeature();
+        mfcc_extractor.setSampleRate(16000);
+        mfcc_extractor.setNFft(512);
+        mfcc_extractor.setHopLength(160);
+        mfcc_extractor.setFeatureSize(13);
+
+        double[][] expected = mfcc_extractor.extract(inputData);
+
+        StreamingMfccFeature streaming = new StreamingMfccFeature(mfcc_extractor);
+        streaming.setTopDbPolicy(TopDbPolicy.FIXED_REFERENCE);
+        streaming.setReferenceDB(maxDB(inputData));
+        double[][] result = stream(streaming, inputData);
+
+        assertEquals(expected.length, result.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], result[i], 1e-9, "Row " + i + " does not match");
+        }
+        assertThrows(IllegalArgumentException.class, () -> streaming.setTopDbPolicy(null));
+    }
+
+    @Test
+    public void testStreamingMfccDeltas() {
+        MfccFeature mfcc_extractor = new MfccFeature();
+        mfcc_extractor.setSampleRate(16000);
+        mfcc_extractor.setNFft(512);
+        mfcc_extractor.setHopLength(160);
+        mfcc_extractor.setFeatureSize(13);
+        mfcc_extractor.setDeltaOrder(2);
+
+        double[][] expected = mfcc_extractor.extract(inputData);
+
+        StreamingMfccFeature streaming = new StreamingMfccFeature(mfcc_extractor);
+        streaming.setTopDbPolicy(TopDbPolicy.FIXED_REFERENCE);
+        streaming.setReferenceDB(maxDB(inputData));
+        double[][] result = stream(streaming, inputData);
+
+        assertEquals(39, result.length);
+        assertEquals(expected[0].length, streaming.getFrameCount());
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], result[i], 1e-9, "Row " + i + " does not match");
+        }
+
+        // Output lags input by deltaWidth / 2 frames
+        streaming.reset();
+        final List<double[]> columns = new ArrayList<>();
+        streaming.push(inputData, 0, 160 * 10, column -> columns.add(column.clone()));
+        mfcc_extractor.setDeltaOrder(0);
+        StreamingMfccFeature plain = new StreamingMfccFeature(mfcc_extractor);
+        plain.push(inputData, 0, 160 * 10, column -> { });
+        assertEquals(plain.getFrameCount() - 4, columns.size());
+        assertEquals(columns.size(), streaming.getFrameCount());
+    }
+
+    /**
+     * Maximum of the dB mel spectrogram, the clipping reference of the batch MFCC.
+     */
+    private static double maxDB(double[] y) {
+        MelFeature mel_extractor = new MelFeature();
+        mel_extractor.setSampleRate(16000);
+        mel_extractor.setNFft(512);
+        mel_extractor.setHopLength(160);
+        mel_extractor.setFeatureSize(MfccFeature.N_MELS);
+        double maxDB = Double.NEGATIVE_INFINITY;
+        for (double[] row : mel_extractor.extract(y)) {
+            for (double value : row) {
+                maxDB = Math.max(maxDB, 10 * Math.log10(Math.max(1e-10, value)));
+            }
+        }
+        return maxDB;
+    }
+
+    @Test
+    public void testStreamingResampledMel() {
+        MelFeature mel_extractor = new MelFeature();
+        mel_extractor.setSampleRate(16000);
+        mel_extractor.setNFft(512);
+        mel_extractor.setHopLength(160);
+        mel_extractor.setFeatureSize(40);
+
+        // The input data is treated as a 44.1 kHz recording
+        double[][] reference = mel_extractor.extract(Resample.resample(inputData, 44100, 16000));
+        mel_extractor.setInputSampleRate(44100);
+        double[][] expected = mel_extractor.extract(inputData);
+        double[][] result = stream(new StreamingMelFeature(mel_extractor), inputData);
+
+        assertEquals(expected.length, result.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(reference[i], expected[i], 0.0, "Row " + i + " does not match");
+            assertArrayEquals(expected[i], result[i], 0.0, "Row " + i + " does not match");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.netlcod.filter;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.netlcod.spectrum.Layout;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.netlcod.filter.Filter.applyMelFilters;
+import static org.netlcod.filter.Filter.mel;
+import static org.netlcod.filter.Filter.melSparse;
+
+class FilterTest {
+
+    @Test
+    public void testSparseMelMatchesDense() {
+        int sr = 22050;
+        int nFft = 2048;
+        int nMels = 128;
+        int nFrames = 50;
+
+        double[][] dense = mel(sr, nFft, nMels, 0.0, sr / 2.0, false);
+        SparseMelFilter sparse = melSparse(sr, nFft, nMels, 0.0, sr / 2.0, false);
+
+        int stored = 0;
+        for (int i = 0; i < nMels; i++) {
+            assertArrayEquals(dense[i], sparse.toDense()[i], 0.0, "Band " + i + " does not match");
+            stored += sparse.getEnd(i) - sparse.getStart(i);
+        }
+        assertTrue(stored * 10 < nMels * (nFft / 2 + 1), "Filter bank is not sparse: " + stored);
+
+        Random random = new Random(0);
+        double[][] spectrogram = new double[nFft / 2 + 1][nFrames];
+        for (double[] row : spectrogram) {
+            for (int t = 0; t < nFrames; t++) {
+                row[t] = random.nextDouble();
+            }
+        }
+
+        double[][] expected = applyMelFilters(spectrogram, dense, nMels, nFft);
+        double[][] result = applyMelFilters(spectrogram, sparse);
+
+        for (int i = 0; i < nMels; i++) {
+            assertArrayEquals(expected[i], result[i], 0.0, "Row " + i + " does not match");
+        }
+
+        // The per-frame projection, used by the frame-major layout and the fused pipeline
+        double[][] expectedFrames = applyMelFilters(transpose(spectrogram), dense, nMels, nFft, Layout.FRAME_MAJOR);
+        double[][] frames = applyMelFilters(transpose(spectrogram), sparse, Layout.FRAME_MAJOR);
+        for (int t = 0; t < nFrames; t++) {
+            assertArrayEquals(expectedFrames[t], frames[t], 0.0, "Frame " + t + " does not match");
+            for (int i = 0; i < nMels; i++) {
+                assertEquals(expected[i][t], frames[t][i], 0.0, "Frame " + t + " does not match");
+            }
+        }
+    }
+
+    private static double[][] transpose(double[][] x) {
+        double[][] result = new double[x[0].length][x.length];
+        for (int i = 0; i < x.length; i++) {
+            for (int j = 0; j < x[i].length; j++) {
+                result[j][i] = x[i][j];
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,181 @@
+package org.netlcod.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.netlcod.io.SampleSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResampleTest {
+
+    private static double[] sine(double frequency, int sampleRate, int length) {
+        double[] y = new double[length];
+        for (int i = 0; i < length; i++) {
+            y[i] = Math.sin(2 * Math.PI * frequency * i / sampleRate);
+        }
+        return y;
+    }
+
+    private static double maxInteriorError(double[] actual, double[] expected, int margin) {
+        double error = 0;
+        for (int i = margin; i < expected.length - margin; i++) {
+            error = Math.max(error, Math.abs(actual[i] - expected[i]));
+        }
+        return error;
+    }
+
+    @Test
+    public void testDownsample() {
+        double[] y = sine(440, 44100, 44100);
+        double[] expected = sine(440, 16000, 16000);
+
+        double[] best = Resample.resample(y, 44100, 16000);
+        assertEquals(16000, best.length);
+        assertTrue(maxInteriorError(best, expected, 100) < 1e-3);
+
+        double[] fast = Resample.resample(y, 44100, 16000, ResampleType.KAISER_FAST);
+        assertEquals(16000, fast.length);
+        assertTrue(maxInteriorError(fast, expected, 100) < 1e-2);
+    }
+
+    @Test
+    public void testUpsample() {
+        double[] y = sine(1000, 16000, 16000);
+        double[] expected = sine(1000, 48000, 48000);
+
+        double[] result = Resample.resample(y, 16000, 48000);
+        assertEquals(48000, result.length);
+        assertTrue(maxInteriorError(result, expected, 300) < 1e-3);
+    }
+
+    @Test
+    public void testStopBand() {
+        // 10 kHz is above the Nyquist frequency of 16 kHz and must not alias to 6 kHz
+        double[] y = sine(10000, 48000, 48000);
+        double[] result = Resample.resample(y, 48000, 16000);
+        assertTrue(maxInteriorError(result, new double[result.length], 100) < 1e-3);
+    }
+
+    @Test
+    public void testLength() {
+        ResampleFilter filter = ResampleFilter.of(44100, 16000, ResampleType.KAISER_BEST);
+        assertEquals(160, filter.getUp());
+        assertEquals(441, filter.getDown());
+        assertEquals(363, filter.outputLength(1000));
+        assertEquals(362, filter.filteredLength(1000));
+
+        // As librosa, the last sample is padding
+        double[] y = new double[1000];
+        Arrays.fill(y, 1.0);
+        double[] result = Resample.resample(y, 44100, 16000);
+        assertEquals(363, result.length);
+        assertEquals(0.0, result[362], 0.0);
+        assertEquals(1.0, result[181], 1e-3);
+    }
+
+    @Test
+    public void testIdentity() {
+        double[] y = sine(440, 16000, 1000);
+        assertSame(y, Resample.resample(y, 16000, 16000));
+        assertThrows(IllegalArgumentException.class, () -> Resample.resample(y, 0, 16000));
+    }
+
+    @Test
+    public void testCache() {
+        assertSame(ResampleFilter.of(48000, 16000, ResampleType.KAISER_BEST),
+                ResampleFilter.of(48000, 16000, ResampleType.KAISER_BEST));
+        ResampleFilter filter = ResampleFilter.of(96000, 32000, ResampleType.KAISER_FAST);
+        assertEquals(1, filter.getUp());
+        assertEquals(3, filter.getDown());
+    }
+
+    @Test
+    public void testLazy() {
+        Random random = new Random(4);
+        double[] y = new double[20000];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = random.nextGaussian();
+        }
+
+        int[][] rates = {{44100, 16000}, {16000, 22050}, {48000, 16000}};
+        for (int[] rate : rates) {
+            double[] expected = Resample.resample(y, rate[0], rate[1]);
+            SampleSource source = Resample.lazy(SampleSource.of(y), rate[0], rate[1], ResampleType.KAISER_BEST);
+            assertEquals(expected.length, source.getLength());
+            for (int read = 0; read < 50; read++) {
+                int start = random.nextInt(expected.length + 2000) - 1000;
+                double[] frame = new double[1 + random.nextInt(2048)];
+                source.read(start, frame);
+                for (int i = 0; i < frame.length; i++) {
+                    long t = (long) start + i;
+                    double value = t < 0 || t >= expected.length ? 0 : expected[(int) t];
+                    assertEquals(value, frame[i], 0.0, rate[0] + " -> " + rate[1] + " at " + t);
+                }
+            }
+
+            // Overlapping STFT frames reuse the samples of the previous frame
+            double[] frame = new double[1024];
+            float[] floatFrame = new float[1024];
+            for (long start = -512; start < expected.length; start += 256) {
+                source.read(start, frame);
+                for (int i = 0; i < frame.length; i++) {
+                    long t = start + i;
+                    double value = t < 0 || t >= expected.length ? 0 : expected[(int) t];
+                    assertEquals(value, frame[i], 0.0, rate[0] + " -> " + rate[1] + " at " + t);
+                }
+                source.read(start, floatFrame);
+                for (int i = 0; i < frame.length; i++) {
+                    assertEquals((float) frame[i], floatFrame[i], 0.0f, rate[0] + " -> " + rate[1] + " at " + (start + i));
+                }
+            }
+        }
+        SampleSource identity = SampleSource.of(y);
+        assertSame(identity, Resample.lazy(identity, 16000, 16000, ResampleType.KAISER_BEST));
+    }
+
+    @Test
+    public void testStreaming() {
+        Random random = new Random(3);
+        double[] y = new double[20000];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = random.nextGaussian();
+        }
+
+        int[][] rates = {{44100, 16000}, {16000, 22050}, {48000, 16000}, {16000, 16000}};
+        for (int[] rate : rates) {
+            double[] expected = Resample.resample(y, rate[0], rate[1]);
+            StreamingResampler resampler = new StreamingResampler(rate[0], rate[1]);
+            for (int pass = 0; pass < 2; pass++) {
+                final List<Double> samples = new ArrayList<>();
+                StreamingResampler.SampleConsumer consumer = (buffer, offset, length) -> {
+                    for (int i = 0; i < length; i++) {
+                        samples.add(buffer[offset + i]);
+                    }
+                };
+                int position = 0;
+                while (position < y.length) {
+                    int length = Math.min(y.length - position, 1 + random.nextInt(3000));
+                    resampler.push(y, position, length, consumer);
+                    position += length;
+                }
+                resampler.flush(consumer);
+
+                double[] actual = new double[samples.size()];
+                for (int i = 0; i < actual.length; i++) {
+                    actual[i] = samples.get(i);
+                }
+                assertArrayEquals(expected, actual, 0.0, rate[0] + " -> " + rate[1] + " does not match");
+                assertEquals(expected.length, resampler.getOutputCount());
+                resampler.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package org.netlcod.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.netlcod.feature.FeatureConsumer;
+import org.netlcod.feature.MfccFeature;
+import org.netlcod.feature.StreamingMfccFeature;
+import org.netlcod.spectrum.Layout;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NpyTest {
+    @TempDir
+    Path directory;
+
+    private static double[][] matrix(int rows, int columns) {
+        Random random = new Random(9);
+        double[][] x = new double[rows][columns];
+        for (double[] row : x) {
+            for (int j = 0; j < columns; j++) {
+                row[j] = random.nextGaussian();
+            }
+        }
+        return x;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        double[][] x = matrix(7, 5);
+        Path file = directory.resolve("x.npy");
+
+        NpyWriter.write(file, x, NpyType.FLOAT64);
+        byte[] bytes = Files.readAllBytes(file);
+        String header = new String(bytes, 10, 118, StandardCharsets.US_ASCII);
+        assertEquals("{'descr': '<f8', 'fortran_order': False, 'shape': (7, 5), }", header.trim());
+        assertEquals(128 + 7 * 5 * 8, bytes.length);
+
+        try (NpyReader reader = NpyReader.open(file)) {
+            assertArrayEquals(new long[]{7, 5}, reader.getShape());
+            assertEquals(NpyType.FLOAT64, reader.getType());
+            double[][] actual = reader.toArray();
+            for (int i = 0; i < x.length; i++) {
+                assertArrayEquals(x[i], actual[i], 0.0, "Row " + i + " does not match");
+            }
+            assertEquals(x[6][4], reader.get(6, 4), 0.0);
+        }
+
+        NpyWriter.write(file, x, NpyType.FLOAT32);
+        try (NpyReader reader = NpyReader.open(file)) {
+            assertEquals(NpyType.FLOAT32, reader.getType());
+            float[][] actual = reader.toFloatArray();
+            for (int i = 0; i < x.length; i++) {
+                for (int j = 0; j < x[i].length; j++) {
+                    assertEquals((float) x[i][j], actual[i][j], 0.0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStreamingAppend() throws IOException {
+        Random random = new Random(10);
+        double[] y = new double[16000];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = random.nextGaussian();
+        }
+        MfccFeature mfcc_extractor = new MfccFeature();
+        mfcc_extractor.setSampleRate(16000);
+        mfcc_extractor.setNFft(1024);
+        mfcc_extractor.setHopLength(512);
+        mfcc_extractor.setFeatureSize(13);
+
+        Path file = directory.resolve("mfcc.npy");
+        List<double[]> expected = new ArrayList<>();
+        try (NpyWriter writer = NpyWriter.create(file, NpyType.FLOAT64, 13)) {
+            StreamingMfccFeature streamingMfcc = new StreamingMfccFeature(mfcc_extractor);
+            FeatureConsumer consumer = writer.consumer();
+            streamingMfcc.push(y, column -> {
+                expected.add(column.clone());
+                consumer.accept(column);
+            });
+            assertEquals(expected.size(), writer.getRows());
+        }
+
+        try (NpyReader reader = NpyReader.open(file)) {
+            assertArrayEquals(new long[]{expected.size(), 13}, reader.getShape());
+            double[] row = new double[13];
+            for (int t = 0; t < expected.size(); t++) {
+                reader.readRow(t, row);
+                assertArrayEquals(expected.get(t), row, 0.0, "Row " + t + " does not match");
+            }
+        }
+    }
+
+    @Test
+    public void testOffHeapLayout() throws IOException {
+        double[][] x = matrix(7, 5);
+        Path file = directory.resolve("x.npy");
+        try (OffHeapMatrix matrix = OffHeapMatrix.allocate(7, 5)) {
+            for (int t = 0; t < 5; t++) {
+                for (int f = 0; f < 7; f++) {
+                    matrix.set(f, t, x[f][t]);
+                }
+            }
+
+            // The default layout keeps the shape of the matrix, as writing its heap copy does
+            NpyWriter.write(file, matrix, NpyType.FLOAT64);
+            try (NpyReader reader = NpyReader.open(file)) {
+                assertArrayEquals(new long[]{7, 5}, reader.getShape());
+                double[][] actual = reader.toArray();
+                for (int i = 0; i < x.length; i++) {
+                    assertArrayEquals(x[i], actual[i], 0.0, "Row " + i + " does not match");
+                }
+            }
+
+            NpyWriter.write(file, matrix, NpyType.FLOAT64, Layout.FRAME_MAJOR);
+            try (NpyReader reader = NpyReader.open(file)) {
+                assertArrayEquals(new long[]{5, 7}, reader.getShape());
+                double[] row = new double[7];
+                for (int t = 0; t < 5; t++) {
+                    reader.readRow(t, row);
+                    for (int f = 0; f < 7; f++) {
+                        assertEquals(x[f][t], row[f], 0.0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNpz() throws IOException {
+        double[][] mel = matrix(4, 3);
+        float[][] mfcc = {{1, 2}, {3, 4}};
+
+        for (boolean compressed : new boolean[]{false, true}) {
+            Path file = directory.resolve("features" + compressed + ".npz");
+            try (NpzWriter writer = new NpzWriter(file, compressed)) {
+                writer.add("mel", mel, NpyType.FLOAT64);
+                writer.add("mfcc", mfcc);
+            }
+
+            try (ZipFile zip = new ZipFile(file.toFile())) {
+                ZipEntry entry = zip.getEntry("mel.npy");
+                assertEquals(compressed ? ZipEntry.DEFLATED : ZipEntry.STORED, entry.getMethod());
+                Path extracted = directory.resolve("mel" + compressed + ".npy");
+                try (InputStream in = zip.getInputStream(entry)) {
+                    Files.copy(in, extracted);
+                }
+                try (NpyReader reader = NpyReader.open(extracted)) {
+                    double[][] actual = reader.toArray();
+                    for (int i = 0; i < mel.length; i++) {
+                        assertArrayEquals(mel[i], actual[i], 0.0, "Row " + i + " does not match");
+                    }
+                }
+                assertTrue(zip.getEntry("mfcc.npy").getSize() > 0);
+            }
+        }
+    }
+}
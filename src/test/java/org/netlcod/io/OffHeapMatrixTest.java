@@ -0,0 +1,97 @@
+package org.netlcod.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.netlcod.convert.Convert;
+import org.netlcod.feature.FeaturePipeline;
+import org.netlcod.feature.FeaturePlan;
+import org.netlcod.spectrum.RealFFT;
+import org.netlcod.spectrum.Spectrum;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapMatrixTest {
+    @TempDir
+    Path directory;
+
+    private static void assertMatrixEquals(double[][] expected, double[][] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], 0.0, "Row " + i + " does not match");
+        }
+    }
+
+    private static double[] signal(int length) {
+        Random random = new Random(8);
+        double[] y = new double[length];
+        for (int i = 0; i < length; i++) {
+            y[i] = 0.5 * Math.sin(2 * Math.PI * 440 * i / 16000.0) + 0.1 * random.nextGaussian();
+        }
+        return y;
+    }
+
+    @Test
+    public void testStorage() throws IOException {
+        try (OffHeapMatrix direct = OffHeapMatrix.allocate(3, 5);
+             OffHeapMatrix spilled = OffHeapMatrix.allocate(3, 5, 0)) {
+            assertFalse(direct.isFileBacked());
+            assertTrue(spilled.isFileBacked());
+            for (OffHeapMatrix matrix : new OffHeapMatrix[]{direct, spilled}) {
+                matrix.setColumn(4, new double[]{1, 2, 3});
+                matrix.set(1, 0, -1);
+                assertEquals(2.0, matrix.get(1, 4), 0.0);
+                assertMatrixEquals(new double[][]{{0, 0, 0, 0, 1}, {-1, 0, 0, 0, 2}, {0, 0, 0, 0, 3}}, matrix.toArray());
+                assertThrows(IndexOutOfBoundsException.class, () -> matrix.get(3, 0));
+                assertThrows(IllegalArgumentException.class, () -> matrix.setColumn(0, new double[2]));
+            }
+        }
+
+        Path file = directory.resolve("features.matrix");
+        try (OffHeapMatrix matrix = OffHeapMatrix.map(file, 2, 3)) {
+            matrix.setColumn(2, new double[]{5, 6});
+        }
+        assertEquals(48, Files.size(file));
+        try (OffHeapMatrix matrix = OffHeapMatrix.map(file, 2, 3)) {
+            assertArrayEquals(new double[]{0, 0, 5, 0, 0, 6}, new double[]{
+                    matrix.get(0, 0), matrix.get(0, 1), matrix.get(0, 2),
+                    matrix.get(1, 0), matrix.get(1, 1), matrix.get(1, 2)}, 0.0);
+        }
+    }
+
+    @Test
+    public void testMatchesHeap() throws IOException {
+        double[] y = signal(16000);
+        SampleSource source = SampleSource.of(y);
+        FeaturePlan plan = FeaturePlan.of(16000, 1024, 512, 64, 0, 8000, false);
+        FeaturePipeline pipeline = new FeaturePipeline(plan);
+        int nFrames = Spectrum.frameCount(y.length, 1024, 512, true);
+        double[] window = Spectrum.window("hann", 1024, 1024);
+
+        double[][] power = Spectrum.stftSpectrogram(source, window, new RealFFT(1024), 512, true, null).power();
+        try (OffHeapMatrix offHeapPower = OffHeapMatrix.allocate(513, nFrames, 0);
+             OffHeapMatrix mel = OffHeapMatrix.allocate(64, nFrames);
+             OffHeapMatrix mfcc = OffHeapMatrix.allocate(13, nFrames)) {
+            Spectrum.stftPower(source, window, new RealFFT(1024), 512, true, null, offHeapPower);
+            assertMatrixEquals(power, offHeapPower.toArray());
+
+            pipeline.melSpectrogram(source, mel);
+            double[][] expected = pipeline.melSpectrogram(y);
+            assertMatrixEquals(expected, mel.toArray());
+
+            Convert.powerToDB(mel, mel, 1.0, 1e-10, 80.0, null);
+            assertMatrixEquals(Convert.powerToDB(expected, 1.0, 1e-10, 80.0), mel.toArray());
+
+            pipeline.mfcc(source, 13, mfcc);
+            assertMatrixEquals(pipeline.mfcc(y, 13), mfcc.toArray());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.netlcod.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.netlcod.feature.MelFeature;
+import org.netlcod.feature.MfccFeature;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WavSourceTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testPcm16Stereo() throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        data.putShort((short) 16384).putShort((short) 0);
+        data.putShort((short) -32768).putShort((short) -32768);
+        data.putShort((short) 8192).putShort((short) 8192);
+        Path path = write("pcm16.wav", 1, 2, 16, data.array());
+
+        try (WavSource source = WavSource.open(path)) {
+            assertEquals(16000, source.getSampleRate());
+            assertEquals(2, source.getChannels());
+            assertEquals(3, source.getLength());
+
+            double[] frame = new double[6];
+            source.read(-2, frame);
+            assertArrayEquals(new double[]{0, 0, 0.25, -1, 0.25, 0}, frame, 0.0);
+        }
+    }
+
+    @Test
+    public void testPcm24() throws IOException {
+        byte[] data = {
+                (byte) 0x00, (byte) 0x00, (byte) 0x40,
+                (byte) 0x00, (byte) 0x00, (byte) 0xC0,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF
+        };
+        Path path = write("pcm24.wav", 1, 1, 24, data);
+
+        try (WavSource source = WavSource.open(path)) {
+            float[] frame = new float[3];
+            source.read(0, frame);
+            assertArrayEquals(new float[]{0.5f, -0.5f, (float) (-1 / 8388608.0)}, frame, 0.0f);
+        }
+    }
+
+    @Test
+    public void testShortFmtChunk() throws IOException {
+        ByteBuffer wav = ByteBuffer.allocate(36).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put("RIFF".getBytes()).putInt(28).put("WAVE".getBytes());
+        wav.put("fmt ".getBytes()).putInt(4).putShort((short) 1).putShort((short) 1);
+        wav.put("data".getBytes()).putInt(0);
+        Path path = directory.resolve("short_fmt.wav");
+        Files.write(path, wav.array());
+
+        assertThrows(IOException.class, () -> WavSource.open(path));
+    }
+
+    @Test
+    public void testFeaturesMatchDecodedSignal() throws IOException {
+        Random random = new Random(7);
+        double[] y = new double[20000];
+        ByteBuffer data = ByteBuffer.allocate(4 * y.length).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < y.length; i++) {
+            float sample = (float) (0.5 * Math.sin(2 * Math.PI * 440 * i / 16000.0) + 0.1 * random.nextGaussian());
+            y[i] = sample;
+            data.putFloat(sample);
+        }
+        Path path = write("float.wav", 3, 1, 32, data.array());
+
+        MelFeature mel_extractor = new MelFeature();
+        mel_extractor.setSampleRate(16000);
+        mel_extractor.setNFft(1024);
+        mel_extractor.setHopLength(256);
+        mel_extractor.setFeatureSize(64);
+
+        MfccFeature mfcc_extractor = new MfccFeature();
+        mfcc_extractor.setSampleRate(16000);
+        mfcc_extractor.setNFft(1024);
+        mfcc_extractor.setHopLength(256);
+        mfcc_extractor.setFeatureSize(13);
+
+        try (WavSource source = WavSource.open(path)) {
+            double[][] expectedMel = mel_extractor.extract(y);
+            double[][] mel = mel_extractor.extract(source);
+            for (int i = 0; i < expectedMel.length; i++) {
+                assertArrayEquals(expectedMel[i], mel[i], 0.0, "Row " + i + " does not match");
+            }
+
+            double[][] expectedMfcc = mfcc_extractor.extract(y);
+            double[][] mfcc = mfcc_extractor.extract(source);
+            for (int i = 0; i < expectedMfcc.length; i++) {
+                assertArrayEquals(expectedMfcc[i], mfcc[i], 0.0, "Row " + i + " does not match");
+            }
+        }
+    }
+
+    private Path write(String name, int format, int channels, int bitsPerSample, byte[] data) throws IOException {
+        int blockAlign = channels * bitsPerSample / 8;
+        ByteBuffer wav = ByteBuffer.allocate(44 + data.length + 10).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put("RIFF".getBytes()).putInt(36 + 10 + data.length).put("WAVE".getBytes());
+        wav.put("fmt ".getBytes()).putInt(16)
+                .putShort((short) format)
+                .putShort((short) channels)
+                .putInt(16000)
+                .putInt(16000 * blockAlign)
+                .putShort((short) blockAlign)
+                .putShort((short) bitsPerSample);
+        // Unknown chunks before the data must be skipped
+        wav.put("LIST".getBytes()).putInt(2).putShort((short) 0);
+        wav.put("data".getBytes()).putInt(data.length).put(data);
+        Path path = directory.resolve(name);
+        Files.write(path, wav.array());
+        return path;
+    }
+}
@@ -0,0 +1,80 @@
+package org.netlcod.kernel;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class KernelsTest {
+    private static final double EPS = 1e-12;
+
+    private static double[] random(Random random, int length) {
+        double[] x = new double[length];
+        for (int i = 0; i < length; i++) {
+            x[i] = random.nextGaussian();
+        }
+        return x;
+    }
+
+    @Test
+    public void testSelection() {
+        boolean vectorModule = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        boolean vectorCompiled = Kernels.class.getResource("VectorKernels.class") != null;
+        String expected = vectorModule && vectorCompiled ? "vector" : "scalar";
+        assertEquals(expected, Kernels.get().getName());
+        assertEquals("scalar", Kernels.scalar().getName());
+    }
+
+    @Test
+    public void testMatchesScalar() {
+        Kernels kernels = Kernels.get();
+        Kernels scalar = Kernels.scalar();
+        Random random = new Random(5);
+
+        for (int length : new int[]{1, 3, 8, 31, 513, 1024}) {
+            double[] a = random(random, length);
+            double[] b = random(random, length);
+
+            double[] expected = a.clone();
+            double[] actual = a.clone();
+            scalar.multiply(expected, b, length);
+            kernels.multiply(actual, b, length);
+            assertArrayEquals(expected, actual, 0.0);
+
+            expected = new double[length];
+            actual = new double[length];
+            scalar.power(a, b, expected, length);
+            kernels.power(a, b, actual, length);
+            assertArrayEquals(expected, actual, 0.0);
+
+            expected = b.clone();
+            actual = b.clone();
+            scalar.axpy(0.37, a, expected, length);
+            kernels.axpy(0.37, a, actual, length);
+            assertArrayEquals(expected, actual, 0.0);
+
+            double dot = scalar.dot(a, 0, b, 0, length);
+            assertEquals(dot, kernels.dot(a, 0, b, 0, length), EPS * length);
+
+            double[] power = new double[length];
+            scalar.power(a, b, power, length);
+            power[0] = 0;
+            expected = new double[length];
+            actual = new double[length];
+            scalar.powerToDB(power, expected, length, 1.0, 1e-10);
+            kernels.powerToDB(power, actual, length, 1.0, 1e-10);
+            assertArrayEquals(expected, actual, 0.0);
+        }
+
+        for (int n : new int[]{2, 16, 64, 1024}) {
+            double[] packed = random(random, n);
+            double[] expected = new double[n / 2 + 1];
+            double[] actual = new double[n / 2 + 1];
+            scalar.power(packed, expected);
+            kernels.power(packed, actual);
+            assertArrayEquals(expected, actual, 0.0);
+        }
+    }
+}
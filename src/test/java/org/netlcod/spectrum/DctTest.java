@@ -0,0 +1,57 @@
+package org.netlcod.spectrum;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DctTest {
+    private static final double EPS = 1e-9;
+
+    private static double[] naiveDct(double[] x) {
+        int n = x.length;
+        double[] result = new double[n];
+        for (int k = 0; k < n; k++) {
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += x[i] * Math.cos(Math.PI * k * (2 * i + 1) / (2.0 * n));
+            }
+            result[k] = sum * (k == 0 ? Math.sqrt(1.0 / n) : Math.sqrt(2.0 / n));
+        }
+        return result;
+    }
+
+    @Test
+    public void testStrategiesMatchDefinition() {
+        Random random = new Random(0);
+        for (int n : new int[]{2, 8, 40, 128}) {
+            double[] x = new double[n];
+            for (int i = 0; i < n; i++) {
+                x[i] = random.nextGaussian();
+            }
+            double[] expected = naiveDct(x);
+
+            for (int k : new int[]{1, n / 2, n}) {
+                for (Dct.Strategy strategy : Dct.Strategy.values()) {
+                    if (strategy == Dct.Strategy.FFT && Integer.bitCount(n) != 1) {
+                        continue;
+                    }
+                    Dct dct = new Dct(n, Math.max(1, k), strategy);
+                    double[] result = new double[dct.getCoefficients()];
+                    dct.transform(x, result, new double[n]);
+                    for (int i = 0; i < result.length; i++) {
+                        assertEquals(expected[i], result[i], EPS, strategy + " n=" + n + " k=" + k + " coefficient " + i);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStrategySelection() {
+        assertEquals(Dct.Strategy.BASIS, Dct.cheaperStrategy(128, 13));
+        assertEquals(Dct.Strategy.FFT, Dct.cheaperStrategy(128, 128));
+        assertEquals(Dct.Strategy.BASIS, Dct.cheaperStrategy(40, 40));
+    }
+}
@@ -0,0 +1,99 @@
+package org.netlcod.spectrum;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.netlcod.spectrum.Spectrum.stftSpectrogram;
+
+class IstftTest {
+    private static final double EPS = 1e-9;
+
+    private static double[] signal(int length) {
+        Random random = new Random(11);
+        double[] y = new double[length];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = Math.sin(2 * Math.PI * 330 * i / 16000.0) + 0.1 * random.nextGaussian();
+        }
+        return y;
+    }
+
+    private static double[] direct(ComplexSpectrogram spectrogram, double[] window, int nFft, int hopLength, boolean center) {
+        int nFrames = spectrogram.getFrames();
+        double[] sum = new double[nFft + hopLength * (nFrames - 1)];
+        double[] y = new double[sum.length];
+        RealFFT fft = new RealFFT(nFft);
+        double[] real = new double[nFft / 2 + 1];
+        double[] imag = new double[nFft / 2 + 1];
+        double[] frame = new double[nFft];
+        for (int t = 0; t < nFrames; t++) {
+            spectrogram.getFrame(t, real, imag);
+            fft.inverse(real, imag, frame);
+            for (int i = 0; i < nFft; i++) {
+                y[t * hopLength + i] += frame[i] * window[i];
+                sum[t * hopLength + i] += window[i] * window[i];
+            }
+        }
+        for (int i = 0; i < y.length; i++) {
+            if (sum[i] > 1e-15) {
+                y[i] /= sum[i];
+            }
+        }
+        int offset = center ? nFft / 2 : 0;
+        double[] result = new double[y.length - 2 * offset];
+        System.arraycopy(y, offset, result, 0, result.length);
+        return result;
+    }
+
+    private static void check(int length, int nFft, int hopLength, boolean center) {
+        double[] y = signal(length);
+        double[] window = Spectrum.window("hann", nFft, nFft);
+        ComplexSpectrogram spectrogram = stftSpectrogram(y, window, new RealFFT(nFft), hopLength, center);
+
+        double[] expected = direct(spectrogram, window, nFft, hopLength, center);
+        double[] batch = new Istft(window, new RealFFT(nFft), hopLength, center).inverse(spectrogram);
+        assertArrayEquals(expected, batch, 0.0);
+
+        StreamingIstft streaming = new StreamingIstft(window, new RealFFT(nFft), hopLength, center);
+        double[] streamed = new double[batch.length + 1];
+        int[] count = new int[1];
+        StreamingIstft.SampleConsumer consumer = (samples, n) -> {
+            System.arraycopy(samples, 0, streamed, count[0], n);
+            count[0] += n;
+        };
+        double[] real = new double[nFft / 2 + 1];
+        double[] imag = new double[nFft / 2 + 1];
+        for (int t = 0; t < spectrogram.getFrames(); t++) {
+            spectrogram.getFrame(t, real, imag);
+            streaming.push(real, imag, consumer);
+        }
+        streaming.flush(consumer);
+
+        assertEquals(batch.length, count[0]);
+        for (int i = 0; i < batch.length; i++) {
+            assertEquals(batch[i], streamed[i], 0.0, "Sample " + i + " does not match");
+        }
+    }
+
+    @Test
+    public void testMatchesDirectOverlapAdd() {
+        check(5000, 256, 64, true);
+        check(5000, 256, 64, false);
+        check(5000, 256, 192, true);
+        check(5000, 256, 100, false);
+        check(300, 256, 64, true);
+        check(5000, 256, 512, false);
+    }
+
+    @Test
+    public void testRoundTrip() {
+        double[] y = signal(16000);
+        double[] reconstructed = Spectrum.istft(
+                stftSpectrogram(y, 1024, 256, "hann", 1024, true), 1024, 256, "hann", 1024, true);
+        for (int i = 0; i < reconstructed.length; i++) {
+            assertEquals(y[i], reconstructed[i], EPS, "Sample " + i + " does not match");
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.netlcod.spectrum;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class ParallelFramesTest {
+
+    @Test
+    public void testNestedOnBoundedPool() throws Exception {
+        // A range task running on the only worker must not wait for ranges queued behind it
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            AtomicIntegerArray visits = new AtomicIntegerArray(10000);
+            Future<?> outer = executor.submit(() -> ParallelFrames.forEach(visits.length(), executor, 16, (from, to) -> {
+                for (int t = from; t < to; t++) {
+                    visits.incrementAndGet(t);
+                }
+            }));
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> outer.get());
+            for (int t = 0; t < visits.length(); t++) {
+                assertEquals(1, visits.get(t), "Frame " + t);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRejectedExecution() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            AtomicInteger accepted = new AtomicInteger();
+            AtomicInteger running = new AtomicInteger();
+            assertThrows(RejectedExecutionException.class, () -> ParallelFrames.forEach(10000, command -> {
+                if (accepted.incrementAndGet() > 1) {
+                    throw new RejectedExecutionException();
+                }
+                executor.execute(command);
+            }, 16, (from, to) -> {
+                running.incrementAndGet();
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                }
+            }));
+            // Every submitted range has ended or will never start
+            assertEquals(0, running.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
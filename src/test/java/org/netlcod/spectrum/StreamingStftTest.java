@@ -0,0 +1,64 @@
+package org.netlcod.spectrum;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.netlcod.spectrum.Spectrum.stftSpectrogram;
+
+class StreamingStftTest {
+
+    private static void assertMatchesBatch(int nFft, int hopLength, boolean center) {
+        Random random = new Random(nFft + hopLength);
+        double[] y = new double[10000 + random.nextInt(1000)];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = random.nextGaussian();
+        }
+
+        ComplexSpectrogram expected = stftSpectrogram(y, nFft, hopLength, "hann", nFft, center);
+
+        final List<double[]> realFrames = new ArrayList<>();
+        final List<double[]> imagFrames = new ArrayList<>();
+        StreamingStft.FrameConsumer consumer = (real, imag) -> {
+            realFrames.add(real.clone());
+            imagFrames.add(imag.clone());
+        };
+
+        StreamingStft stft = new StreamingStft(nFft, hopLength, "hann", nFft, center);
+        int position = 0;
+        while (position < y.length) {
+            int length = Math.min(y.length - position, random.nextInt(3 * hopLength));
+            stft.push(y, position, length, consumer);
+            position += length;
+        }
+        stft.flush(consumer);
+
+        assertEquals(expected.getFrames(), realFrames.size());
+        double[] real = new double[expected.getBins()];
+        double[] imag = new double[expected.getBins()];
+        for (int t = 0; t < expected.getFrames(); t++) {
+            expected.getFrame(t, real, imag);
+            assertArrayEquals(real, realFrames.get(t), 0.0, "Frame " + t + " does not match");
+            assertArrayEquals(imag, imagFrames.get(t), 0.0, "Frame " + t + " does not match");
+        }
+    }
+
+    @Test
+    public void testStreamingWCenter() {
+        assertMatchesBatch(1024, 256, true);
+    }
+
+    @Test
+    public void testStreamingWOCenter() {
+        assertMatchesBatch(512, 160, false);
+    }
+
+    @Test
+    public void testStreamingHopLongerThanFrame() {
+        assertMatchesBatch(256, 400, true);
+    }
+}